@@ -0,0 +1,177 @@
+package com.github.javiersantos.appupdate;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Comparator;
+
+import okhttp3.CacheControl;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Size-capped directory of prefetched APKs, one file per download url. <br/>
+ * Files are written as .part and renamed once complete, so a file without that suffix is always a full download.
+ * The .part of a server that answers Range requests is kept when the download fails, and resumed the next time.
+ * When there is no room, the least recently used APKs are deleted first.
+ */
+class ApkCache {
+    private static final String SUFFIX = ".apk";
+    private static final String SUFFIX_PART = ".part";
+
+    private File dir;
+    private long maxSize;
+
+    public ApkCache(Context context) {
+        this(context, Config.APK_CACHE_MAX_SIZE);
+    }
+
+    public ApkCache(Context context, long maxSize) {
+        this.dir = new File(new File(context.getCacheDir(), Config.CACHE_DIR), Config.APK_CACHE_DIR);
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * @return the downloaded APK, or null if it hasn't been prefetched
+     */
+    @Nullable
+    public File get(URL url) {
+        File file = getFile(url);
+        if (!file.exists()) {
+            return null;
+        }
+        file.setLastModified(System.currentTimeMillis());
+        return file;
+    }
+
+    /**
+     * Downloads the APK unless it is already there.
+     *
+     * @param size      expected size in bytes, or null if unknown
+     * @param resumable true if the server answers Range requests: an interrupted download is kept and resumed
+     * @return the APK, or null if it doesn't fit in the cache
+     */
+    @Nullable
+    public File download(Context context, URL url, @Nullable Long size, boolean resumable) throws IOException {
+        File file = get(url);
+        if (file != null) {
+            return file;
+        }
+        if (size != null && size > maxSize) {
+            Log.e("AppUpdater", "The APK is bigger than the prefetch cache, it won't be downloaded ahead of time.");
+            return null;
+        }
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Can't create " + dir);
+        }
+
+        file = getFile(url);
+        evict(size != null ? size : 0, file);
+
+        File part = new File(dir, file.getName() + SUFFIX_PART);
+        long offset = resumable && part.exists() && (size == null || part.length() < size) ? part.length() : 0;
+        Request.Builder request = new Request.Builder()
+                .url(url)
+                .cacheControl(new CacheControl.Builder().noStore().build());
+        if (offset > 0) {
+            request.header("Range", "bytes=" + offset + "-");
+        }
+        Response response = UtilsLibrary.getHttpClient(context).newCall(request.build()).execute();
+        if (!response.isSuccessful()) {
+            response.close();
+            // E.g. 416 once the file on the server changed, the next download starts over
+            part.delete();
+            throw new IOException("HTTP " + response.code() + " for " + url);
+        }
+        try {
+            // A server that ignores the Range header sends the whole file again
+            boolean append = offset > 0 && response.code() == 206;
+            InputStream in = new BoundedInputStream(response.body().byteStream(), maxSize - (append ? offset : 0));
+            OutputStream out = new FileOutputStream(part, append);
+            try {
+                byte[] buffer = new byte[64 * 1024];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, read);
+                }
+            } finally {
+                out.close();
+            }
+        } catch (IOException e) {
+            if (!resumable) {
+                part.delete();
+            }
+            throw e;
+        } finally {
+            response.close();
+        }
+
+        if (size != null && part.length() != size) {
+            part.delete();
+            throw new IOException("Downloaded " + part.length() + " bytes, expected " + size);
+        }
+        if (!part.renameTo(file)) {
+            part.delete();
+            throw new IOException("Can't rename " + part);
+        }
+        return file;
+    }
+
+    /**
+     * Deletes every APK but the one of the given url, e.g. after the update was installed (keep = null).
+     */
+    public void deleteOthers(@Nullable URL keep) {
+        String keepName = keep != null ? getFile(keep).getName() : null;
+        for (File file : listFiles()) {
+            if (!file.getName().equals(keepName)) {
+                file.delete();
+            }
+        }
+    }
+
+    /**
+     * Deletes the least recently used files until the new one fits.
+     */
+    private void evict(long needed, File target) {
+        File[] files = listFiles();
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                return a.lastModified() < b.lastModified() ? -1 : a.lastModified() == b.lastModified() ? 0 : 1;
+            }
+        });
+
+        long total = needed;
+        for (File file : files) {
+            total += file.length();
+        }
+        for (File file : files) {
+            if (total <= maxSize) {
+                break;
+            }
+            if (!file.getName().startsWith(target.getName())) {
+                total -= file.length();
+                file.delete();
+            }
+        }
+    }
+
+    private File[] listFiles() {
+        File[] files = dir.listFiles();
+        return files != null ? files : new File[0];
+    }
+
+    private File getFile(URL url) {
+        return new File(dir, Integer.toHexString(url.toString().hashCode()) + SUFFIX);
+    }
+
+}
@@ -0,0 +1,33 @@
+package com.github.javiersantos.appupdate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Destination of a streaming install. <br/>
+ * {@link PackageInstallerApkInstaller} writes into a PackageInstaller session. Keeping the session behind this interface
+ * leaves the copy and verification in {@link StreamingInstaller} free of Android classes, so they run on a plain JVM.
+ */
+interface ApkInstaller {
+
+    /**
+     * @param size size of the APK in bytes, or -1 if unknown
+     */
+    Session openSession(long size) throws IOException;
+
+    interface Session {
+        /**
+         * @param size size of the APK in bytes, or -1 if unknown
+         * @return stream for the APK, everything must be flushed to storage when it is closed
+         */
+        OutputStream openWrite(long size) throws IOException;
+
+        /**
+         * Hands the written APK to the system, once the stream is closed.
+         */
+        void commit() throws IOException;
+
+        void abandon();
+    }
+
+}
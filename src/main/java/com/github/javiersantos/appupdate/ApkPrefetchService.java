@@ -0,0 +1,111 @@
+package com.github.javiersantos.appupdate;
+
+import android.annotation.TargetApi;
+import android.app.job.JobInfo;
+import android.app.job.JobParameters;
+import android.app.job.JobScheduler;
+import android.app.job.JobService;
+import android.content.ComponentName;
+import android.content.Context;
+import android.os.AsyncTask;
+import android.os.Build;
+import android.os.PersistableBundle;
+import android.util.Log;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+
+/**
+ * Downloads the APK of an available update into the {@link ApkCache} while the device is charging on an unmetered
+ * network, so the "Update" button can install it right away. Requires API 24+.
+ */
+@TargetApi(Build.VERSION_CODES.N)
+public class ApkPrefetchService extends JobService {
+    private static final String EXTRA_URL = "url";
+    private static final String EXTRA_SIZE = "size";
+    private static final String EXTRA_RESUMABLE = "resumable";
+
+    private Download download;
+
+    /**
+     * @param resumable true if the server answers Range requests, see {@link com.github.javiersantos.appupdate.interfaces.UpdateSource#supportsRange()}
+     * @param jobId     JobScheduler id of the prefetch, replaces the job scheduled with it before
+     */
+    static void schedule(Context context, URL url, Long size, boolean resumable, int jobId) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.N || new ApkCache(context).get(url) != null) {
+            return;
+        }
+
+        PersistableBundle extras = new PersistableBundle();
+        extras.putString(EXTRA_URL, url.toString());
+        extras.putLong(EXTRA_SIZE, size != null ? size : -1);
+        extras.putInt(EXTRA_RESUMABLE, resumable ? 1 : 0);
+
+        JobInfo job = new JobInfo.Builder(jobId, new ComponentName(context, ApkPrefetchService.class))
+                .setRequiredNetworkType(JobInfo.NETWORK_TYPE_UNMETERED)
+                .setRequiresCharging(true)
+                .setExtras(extras)
+                .build();
+        JobScheduler scheduler = (JobScheduler) context.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+        if (scheduler != null && scheduler.schedule(job) != JobScheduler.RESULT_SUCCESS) {
+            Log.e("AppUpdater", "The APK prefetch can't be scheduled.");
+        }
+    }
+
+    @Override
+    public boolean onStartJob(JobParameters params) {
+        try {
+            URL url = new URL(params.getExtras().getString(EXTRA_URL));
+            long size = params.getExtras().getLong(EXTRA_SIZE, -1);
+            boolean resumable = params.getExtras().getInt(EXTRA_RESUMABLE, 0) == 1;
+            download = new Download(this, params, url, size >= 0 ? size : null, resumable);
+            download.execute();
+            return true;
+        } catch (MalformedURLException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public boolean onStopJob(JobParameters params) {
+        if (download != null) {
+            download.cancel(true);
+        }
+        // Retry once the constraints are met again
+        return true;
+    }
+
+    private static class Download extends AsyncTask<Void, Void, Boolean> {
+        private ApkPrefetchService service;
+        private JobParameters params;
+        private URL url;
+        private Long size;
+        private boolean resumable;
+
+        Download(ApkPrefetchService service, JobParameters params, URL url, Long size, boolean resumable) {
+            this.service = service;
+            this.params = params;
+            this.url = url;
+            this.size = size;
+            this.resumable = resumable;
+        }
+
+        @Override
+        protected Boolean doInBackground(Void... voids) {
+            try {
+                new ApkCache(service).download(service, url, size, resumable);
+                return true;
+            } catch (IOException e) {
+                Log.e("AppUpdater", "The APK can't be prefetched.", e);
+                return false;
+            }
+        }
+
+        @Override
+        protected void onPostExecute(Boolean success) {
+            service.jobFinished(params, !success);
+        }
+    }
+
+}
@@ -3,6 +3,7 @@ package com.github.javiersantos.appupdate;
 import android.app.Activity;
 import android.content.Context;
 import android.content.DialogInterface;
+import android.os.AsyncTask;
 import android.text.TextUtils;
 import android.util.Log;
 
@@ -16,10 +17,16 @@ import com.github.javiersantos.appupdate.enums.Display;
 import com.github.javiersantos.appupdate.enums.Duration;
 import com.github.javiersantos.appupdate.enums.UpdateFrom;
 import com.github.javiersantos.appupdate.interfaces.IAppUpdater;
+import com.github.javiersantos.appupdate.interfaces.UpdateSource;
+import com.github.javiersantos.appupdate.objects.DnsTxt;
+import com.github.javiersantos.appupdate.objects.FDroidRepo;
 import com.github.javiersantos.appupdate.objects.GitHub;
 import com.github.javiersantos.appupdate.objects.Update;
+import com.github.javiersantos.appupdate.objects.UpdateSelector;
 import com.google.android.material.snackbar.Snackbar;
 
+import java.net.URL;
+
 public class AppUpdate implements IAppUpdater {
     private Context context;
     private LibraryPreferences libraryPreferences;
@@ -27,13 +34,32 @@ public class AppUpdate implements IAppUpdater {
     private UpdateFrom updateFrom;
     private Duration duration;
     private GitHub gitHub;
+    private DnsTxt dnsTxt;
+    private FDroidRepo fDroidRepo;
     private String xmlOrJsonUrl;
+    private UpdateSource updateSource;
+    private UpdateSelector updateSelector;
     private Integer showEvery;
+    private Integer checkInterval;
+    private Boolean offlineFirst;
+    private Boolean prefetch;
+    private Integer prefetchJobId;
+    private Boolean streamingInstall;
+    private Long startDelay;
+    private Boolean prewarm;
+    private Long checkTimeout;
+    private Boolean headCheck;
     private Boolean showAppUpdated;
     private String titleUpdate, descriptionUpdate, btnDismiss, btnUpdate, btnDisable; // Update available
     private String titleNoUpdate, descriptionNoUpdate; // Update not available
+    // String resources are only resolved when shown, 0 if the text was set as a String
+    @StringRes
+    private int titleUpdateRes, btnDismissRes, btnUpdateRes, btnDisableRes, titleNoUpdateRes;
     private int iconResId;
     private UtilsAsync.LatestAppVersion latestAppVersion;
+    private UtilsAsync.LatestChangelog latestChangelog;
+    private NetworkWatcher networkWatcher;
+    private IdleStarter idleStarter;
     private DialogInterface.OnClickListener btnUpdateClickListener, btnDismissClickListener, btnDisableClickListener;
 
     private AlertDialog alertDialog;
@@ -42,20 +68,28 @@ public class AppUpdate implements IAppUpdater {
 
     public AppUpdate(Context context) {
         this.context = context;
-        this.libraryPreferences = new LibraryPreferences(context);
         this.display = Display.DIALOG;
         this.updateFrom = UpdateFrom.GOOGLE_PLAY;
         this.duration = Duration.NORMAL;
         this.showEvery = 1;
+        this.checkInterval = 0;
+        this.offlineFirst = false;
+        this.prefetch = false;
+        this.prefetchJobId = Config.PREFETCH_JOB_ID;
+        this.streamingInstall = false;
+        this.startDelay = 0L;
+        this.prewarm = false;
+        this.checkTimeout = Config.CHECK_TIMEOUT;
+        this.headCheck = false;
         this.showAppUpdated = false;
         this.iconResId = R.drawable.ic_stat_name;
 
         // Dialog
-        this.titleUpdate = context.getResources().getString(R.string.appupdater_update_available);
-        this.titleNoUpdate = context.getResources().getString(R.string.appupdater_update_not_available);
-        this.btnUpdate = context.getResources().getString(R.string.appupdater_btn_update);
-        this.btnDismiss = context.getResources().getString(R.string.appupdater_btn_dismiss);
-        this.btnDisable = context.getResources().getString(R.string.appupdater_btn_disable);
+        this.titleUpdateRes = R.string.appupdater_update_available;
+        this.titleNoUpdateRes = R.string.appupdater_update_not_available;
+        this.btnUpdateRes = R.string.appupdater_btn_update;
+        this.btnDismissRes = R.string.appupdater_btn_dismiss;
+        this.btnDisableRes = R.string.appupdater_btn_disable;
         this.isDialogCancelable = true;
     }
 
@@ -83,6 +117,79 @@ public class AppUpdate implements IAppUpdater {
         return this;
     }
 
+    @Override
+    public AppUpdate setGitHub(@NonNull GitHub gitHub) {
+        this.gitHub = gitHub;
+        return this;
+    }
+
+    @Override
+    public AppUpdate setDnsTxt(@NonNull DnsTxt dnsTxt) {
+        this.dnsTxt = dnsTxt;
+        return this;
+    }
+
+    @Override
+    public AppUpdate setFDroidRepo(@NonNull FDroidRepo fDroidRepo) {
+        this.fDroidRepo = fDroidRepo;
+        return this;
+    }
+
+    @Override
+    public AppUpdate setUpdateSource(@NonNull UpdateSource updateSource) {
+        this.updateSource = updateSource;
+        this.updateFrom = UpdateFrom.CUSTOM;
+        return this;
+    }
+
+    @Override
+    public AppUpdate setOfflineFirst(Boolean offlineFirst) {
+        this.offlineFirst = offlineFirst;
+        return this;
+    }
+
+    @Override
+    public AppUpdate setPrefetch(Boolean prefetch) {
+        this.prefetch = prefetch;
+        return this;
+    }
+
+    @Override
+    public AppUpdate setPrefetchJobId(Integer jobId) {
+        this.prefetchJobId = jobId;
+        return this;
+    }
+
+    @Override
+    public AppUpdate setStreamingInstall(Boolean streamingInstall) {
+        this.streamingInstall = streamingInstall;
+        return this;
+    }
+
+    @Override
+    public AppUpdate setStartDelay(Long millis) {
+        this.startDelay = millis;
+        return this;
+    }
+
+    @Override
+    public AppUpdate setPrewarm(Boolean prewarm) {
+        this.prewarm = prewarm;
+        return this;
+    }
+
+    @Override
+    public AppUpdate setCheckTimeout(Long millis) {
+        this.checkTimeout = millis;
+        return this;
+    }
+
+    @Override
+    public AppUpdate setHeadCheck(Boolean headCheck) {
+        this.headCheck = headCheck;
+        return this;
+    }
+
     @Override
     public AppUpdate setUpdateXML(@NonNull String xmlUrl) {
         this.xmlOrJsonUrl = xmlUrl;
@@ -95,6 +202,18 @@ public class AppUpdate implements IAppUpdater {
         return this;
     }
 
+    @Override
+    public AppUpdate setUpdateBinary(@NonNull String binaryUrl) {
+        this.xmlOrJsonUrl = binaryUrl;
+        return this;
+    }
+
+
+    @Override
+    public AppUpdate setUpdateSelector(@NonNull UpdateSelector selector) {
+        this.updateSelector = selector;
+        return this;
+    }
 
     @Override
     public AppUpdate showEvery(Integer times) {
@@ -102,6 +221,12 @@ public class AppUpdate implements IAppUpdater {
         return this;
     }
 
+    @Override
+    public AppUpdate setCheckInterval(Integer seconds) {
+        this.checkInterval = seconds;
+        return this;
+    }
+
     @Override
     public AppUpdate showAppUpdated(Boolean res) {
         this.showAppUpdated = res;
@@ -125,12 +250,13 @@ public class AppUpdate implements IAppUpdater {
     @Override
     public AppUpdate setTitleOnUpdateAvailable(@NonNull String title) {
         this.titleUpdate = title;
+        this.titleUpdateRes = 0;
         return this;
     }
 
     @Override
     public AppUpdate setTitleOnUpdateAvailable(@StringRes int textResource) {
-        this.titleUpdate = context.getString(textResource);
+        this.titleUpdateRes = textResource;
         return this;
     }
 
@@ -177,12 +303,13 @@ public class AppUpdate implements IAppUpdater {
     @Override
     public AppUpdate setTitleOnUpdateNotAvailable(@NonNull String title) {
         this.titleNoUpdate = title;
+        this.titleNoUpdateRes = 0;
         return this;
     }
 
     @Override
     public AppUpdate setTitleOnUpdateNotAvailable(@StringRes int textResource) {
-        this.titleNoUpdate = context.getString(textResource);
+        this.titleNoUpdateRes = textResource;
         return this;
     }
 
@@ -229,12 +356,13 @@ public class AppUpdate implements IAppUpdater {
     @Override
     public AppUpdate setButtonUpdate(@NonNull String text) {
         this.btnUpdate = text;
+        this.btnUpdateRes = 0;
         return this;
     }
 
     @Override
     public AppUpdate setButtonUpdate(@StringRes int textResource) {
-        this.btnUpdate = context.getString(textResource);
+        this.btnUpdateRes = textResource;
         return this;
     }
 
@@ -255,12 +383,13 @@ public class AppUpdate implements IAppUpdater {
     @Override
     public AppUpdate setButtonDismiss(@NonNull String text) {
         this.btnDismiss = text;
+        this.btnDismissRes = 0;
         return this;
     }
 
     @Override
     public AppUpdate setButtonDismiss(@StringRes int textResource) {
-        this.btnDismiss = context.getString(textResource);
+        this.btnDismissRes = textResource;
         return this;
     }
 
@@ -281,12 +410,13 @@ public class AppUpdate implements IAppUpdater {
     @Override
     public AppUpdate setButtonDoNotShowAgain(@NonNull String text) {
         this.btnDisable = text;
+        this.btnDisableRes = 0;
         return this;
     }
 
     @Override
     public AppUpdate setButtonDoNotShowAgain(@StringRes int textResource) {
-        this.btnDisable = context.getString(textResource);
+        this.btnDisableRes = textResource;
         return this;
     }
 
@@ -328,40 +458,49 @@ public class AppUpdate implements IAppUpdater {
 
     @Override
     public void start() {
-        latestAppVersion = new UtilsAsync.LatestAppVersion(context, false, updateFrom, gitHub, xmlOrJsonUrl, new LibraryListener() {
+        waitForNetwork();
+
+        latestAppVersion = new UtilsAsync.LatestAppVersion(context, false, getUpdateSource(), updateSelector, checkInterval, offlineFirst, checkTimeout, headCheck, new LibraryListener() {
             @Override
             public void onSuccess(Update update) {
                 if (context instanceof Activity && ((Activity) context).isFinishing()) {
                     return;
                 }
+                // The check made when the network came back doesn't show the update again
+                if ((alertDialog != null && alertDialog.isShowing()) || (snackbar != null && snackbar.isShown())) {
+                    return;
+                }
 
                 Update installedUpdate = new Update(UtilsLibrary.getAppInstalledVersion(context), UtilsLibrary.getAppInstalledVersionCode(context));
-                if (UtilsLibrary.isUpdateAvailable(installedUpdate, update)) {
-                    Integer successfulChecks = libraryPreferences.getSuccessfulChecks();
+                boolean isUpdateAvailable = UtilsLibrary.isUpdateAvailable(installedUpdate, update);
+                prefetchApk(isUpdateAvailable ? update : null);
+
+                if (isUpdateAvailable) {
+                    Integer successfulChecks = getLibraryPreferences().incrementSuccessfulChecks();
                     if (UtilsLibrary.isAbleToShow(successfulChecks, showEvery)) {
                         switch (display) {
                             case DIALOG:
-                                final DialogInterface.OnClickListener updateClickListener = btnUpdateClickListener == null ? new UpdateClickListener(context, updateFrom, update.getUrlToDownload()) : btnUpdateClickListener;
+                                final DialogInterface.OnClickListener updateClickListener = btnUpdateClickListener == null ? new UpdateClickListener(context, updateFrom, update.getUrlToDownload(), update.getSha256(), streamingInstall) : btnUpdateClickListener;
                                 final DialogInterface.OnClickListener disableClickListener = btnDisableClickListener == null ? new DisableClickListener(context) : btnDisableClickListener;
 
-                                alertDialog = UtilsDisplay.showUpdateAvailableDialog(context, titleUpdate, getDescriptionUpdate(context, update, Display.DIALOG), btnDismiss, btnUpdate, btnDisable, updateClickListener, btnDismissClickListener, disableClickListener);
+                                alertDialog = UtilsDisplay.showUpdateAvailableDialog(context, getText(titleUpdate, titleUpdateRes), getDescriptionUpdate(context, update, Display.DIALOG), getText(btnDismiss, btnDismissRes), getText(btnUpdate, btnUpdateRes), getText(btnDisable, btnDisableRes), updateClickListener, btnDismissClickListener, disableClickListener);
                                 alertDialog.setCancelable(isDialogCancelable);
                                 alertDialog.show();
+                                loadChangelog(update);
                                 break;
                             case SNACKBAR:
                                 snackbar = UtilsDisplay.showUpdateAvailableSnackbar(context, getDescriptionUpdate(context, update, Display.SNACKBAR), UtilsLibrary.getDurationEnumToBoolean(duration), updateFrom, update.getUrlToDownload());
                                 snackbar.show();
                                 break;
                             case NOTIFICATION:
-                                UtilsDisplay.showUpdateAvailableNotification(context, titleUpdate, getDescriptionUpdate(context, update, Display.NOTIFICATION), updateFrom, update.getUrlToDownload(), iconResId);
+                                UtilsDisplay.showUpdateAvailableNotification(context, getText(titleUpdate, titleUpdateRes), getDescriptionUpdate(context, update, Display.NOTIFICATION), updateFrom, update.getUrlToDownload(), iconResId);
                                 break;
                         }
                     }
-                    libraryPreferences.setSuccessfulChecks(successfulChecks + 1);
                 } else if (showAppUpdated) {
                     switch (display) {
                         case DIALOG:
-                            alertDialog = UtilsDisplay.showUpdateNotAvailableDialog(context, titleNoUpdate, getDescriptionNoUpdate(context));
+                            alertDialog = UtilsDisplay.showUpdateNotAvailableDialog(context, getText(titleNoUpdate, titleNoUpdateRes), getDescriptionNoUpdate(context));
                             alertDialog.setCancelable(isDialogCancelable);
                             alertDialog.show();
                             break;
@@ -370,7 +509,7 @@ public class AppUpdate implements IAppUpdater {
                             snackbar.show();
                             break;
                         case NOTIFICATION:
-                            UtilsDisplay.showUpdateNotAvailableNotification(context, titleNoUpdate, getDescriptionNoUpdate(context), iconResId);
+                            UtilsDisplay.showUpdateNotAvailableNotification(context, getText(titleNoUpdate, titleNoUpdateRes), getDescriptionNoUpdate(context), iconResId);
                             break;
                     }
                 }
@@ -386,6 +525,8 @@ public class AppUpdate implements IAppUpdater {
                     throw new IllegalArgumentException("XML file is not valid!");
                 } else if (error == AppUpdaterError.JSON_URL_MALFORMED) {
                     throw new IllegalArgumentException("JSON file is not valid!");
+                } else if (error == AppUpdaterError.BINARY_URL_MALFORMED) {
+                    throw new IllegalArgumentException("Binary file is not valid!");
                 }
             }
         });
@@ -393,11 +534,37 @@ public class AppUpdate implements IAppUpdater {
         latestAppVersion.execute();
     }
 
+    @Override
+    public void startWhenIdle() {
+        if (prewarm) {
+            UtilsLibrary.prewarm(context, getUpdateSource());
+        }
+
+        if (idleStarter == null) {
+            idleStarter = new IdleStarter(new Runnable() {
+                @Override
+                public void run() {
+                    start();
+                }
+            });
+        }
+        idleStarter.schedule(startDelay);
+    }
+
     @Override
     public void stop() {
+        if (idleStarter != null) {
+            idleStarter.cancel();
+        }
+        if (networkWatcher != null) {
+            networkWatcher.unregister();
+        }
         if (latestAppVersion != null && !latestAppVersion.isCancelled()) {
             latestAppVersion.cancel(true);
         }
+        if (latestChangelog != null && !latestChangelog.isCancelled()) {
+            latestChangelog.cancel(true);
+        }
     }
 
     @Override
@@ -410,6 +577,87 @@ public class AppUpdate implements IAppUpdater {
         }
     }
 
+    private LibraryPreferences getLibraryPreferences() {
+        if (libraryPreferences == null) {
+            libraryPreferences = new LibraryPreferences(context);
+        }
+        return libraryPreferences;
+    }
+
+    private UpdateSource getUpdateSource() {
+        return updateFrom == UpdateFrom.CUSTOM ? updateSource : UtilsLibrary.getUpdateSource(updateFrom, gitHub, dnsTxt, fDroidRepo, xmlOrJsonUrl);
+    }
+
+    private String getText(String text, @StringRes int textResource) {
+        return textResource != 0 ? context.getString(textResource) : text;
+    }
+
+    /**
+     * Schedules the download of the update, and removes the APKs that are no longer needed (e.g. once installed).
+     * The cache is listed from a background thread.
+     */
+    private void prefetchApk(final Update update) {
+        if (!prefetch) {
+            return;
+        }
+        final URL url = update != null && UtilsLibrary.isApkUrl(updateFrom, update.getUrlToDownload()) ? update.getUrlToDownload() : null;
+        if (update != null && url == null) {
+            return;
+        }
+
+        final Context appContext = context.getApplicationContext();
+        final boolean resumable = url != null && getUpdateSource().supportsRange();
+        final int jobId = prefetchJobId;
+        AsyncTask.THREAD_POOL_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                new ApkCache(appContext).deleteOthers(url);
+                if (url != null) {
+                    ApkPrefetchService.schedule(appContext, url, update.getDownloadSize(), resumable, jobId);
+                }
+            }
+        });
+    }
+
+    /**
+     * While offline, checks again once a working network is available.
+     */
+    private void waitForNetwork() {
+        if (!offlineFirst || UtilsLibrary.isNetworkAvailable(context)) {
+            return;
+        }
+
+        if (networkWatcher == null) {
+            networkWatcher = new NetworkWatcher(context, new Runnable() {
+                @Override
+                public void run() {
+                    start();
+                }
+            });
+        }
+        networkWatcher.register();
+    }
+
+    /**
+     * Replaces the release notes of the dialog with the changelog since the installed version, if the file provides one.
+     * It is only downloaded once the dialog is visible.
+     */
+    private void loadChangelog(Update update) {
+        if (update.getChangelogUrl() == null || !TextUtils.isEmpty(descriptionUpdate)) {
+            return;
+        }
+
+        latestChangelog = new UtilsAsync.LatestChangelog(context, update, new UtilsAsync.ChangelogListener() {
+            @Override
+            public void onSuccess(String changelog) {
+                if (alertDialog != null && alertDialog.isShowing()) {
+                    alertDialog.setMessage(changelog);
+                }
+            }
+        });
+        latestChangelog.execute();
+    }
+
     private String getDescriptionUpdate(Context context, Update update, Display display) {
         if (descriptionUpdate == null || TextUtils.isEmpty(descriptionUpdate)) {
             switch (display) {
@@ -0,0 +1,125 @@
+package com.github.javiersantos.appupdate;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+
+import com.github.javiersantos.appupdate.objects.Update;
+import com.github.javiersantos.appupdate.objects.UpdateSelector;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Checks the updates of several apps with a single request to a batch endpoint, instead of one AppUpdateUtils
+ * per app. The endpoint receives the package names with their installed versionCodes and answers:
+ * <pre>{"packages": {"com.example.app": {"latestVersion": "1.2.0", "latestVersionCode": 42, "url": "..."}, ...}}</pre>
+ * Each entry has the same fields as the JSON updater file.
+ */
+public class AppUpdateBatch {
+    private Context context;
+    private String batchUrl;
+    private Map<String, AppUpdateUtils.UpdateListener> listeners;
+    private UpdateSelector updateSelector;
+    private Long checkTimeout;
+    private Boolean deltaSync;
+    private UtilsAsync.LatestBatch latestBatch;
+
+    public AppUpdateBatch(Context context) {
+        this.context = context;
+        this.listeners = new LinkedHashMap<>();
+        this.checkTimeout = Config.CHECK_TIMEOUT;
+        this.deltaSync = false;
+    }
+
+    /**
+     * Set the url of the batch endpoint. <br/>
+     * The packages are sent as {@code ?packages=com.example.app:41,com.example.other:7}, so the response can be
+     * cached and revalidated with ETag or Last-Modified. Lists too long for a url are sent as a POST form instead.
+     *
+     * @param batchUrl url of the batch endpoint
+     * @return this
+     */
+    public AppUpdateBatch setUrl(@NonNull String batchUrl) {
+        this.batchUrl = batchUrl;
+        return this;
+    }
+
+    /**
+     * Add a package to check. The installed version of the package is sent, 0 if it isn't installed.
+     *
+     * @param packageName package name, also the key of its entry in the batch response
+     * @param listener    called with the update of this package, or BATCH_PACKAGE_MISSING if the response has no entry for it
+     * @return this
+     */
+    public AppUpdateBatch addPackage(@NonNull String packageName, @NonNull AppUpdateUtils.UpdateListener listener) {
+        this.listeners.put(packageName, listener);
+        return this;
+    }
+
+    /**
+     * Set the channel, ABIs and locale used to pick the artifact of each entry. Default: this device.
+     *
+     * @param selector properties of the device
+     * @return this
+     */
+    public AppUpdateBatch setUpdateSelector(@NonNull UpdateSelector selector) {
+        this.updateSelector = selector;
+        return this;
+    }
+
+    /**
+     * Set the time the whole batch can take. The packages not read by then fail with BATCH_ERROR, or all of them with
+     * CHECK_TIMEOUT if the delta sync of another process is still running. Default: 30 seconds.
+     *
+     * @param millis time in milliseconds, 0 for no limit
+     * @return this
+     */
+    public AppUpdateBatch setCheckTimeout(Long millis) {
+        this.checkTimeout = millis;
+        return this;
+    }
+
+    /**
+     * Only download the packages that changed since the last sync. Default: false. <br/>
+     * The result of each package and the {@code "syncToken"} of the response are kept, and the token is sent back as
+     * {@code since} in the next sync. When the server answers with {@code "delta": true} and only the packages whose
+     * latest version changed, only their listeners are called, the others keep the result returned by getLastUpdate().
+     * A full sync is done when the server doesn't know the token or a package has no result yet.
+     *
+     * @param deltaSync true to only download the changes
+     * @return this
+     */
+    public AppUpdateBatch setDeltaSync(Boolean deltaSync) {
+        this.deltaSync = deltaSync;
+        return this;
+    }
+
+    /**
+     * Last result of a package kept by the delta sync. Reads a small file, better called from a background thread.
+     *
+     * @param packageName package added with addPackage()
+     * @return the latest update of the package, or null if it hasn't been synced yet
+     */
+    public Update getLastUpdate(@NonNull String packageName) {
+        return batchUrl != null ? new BatchStore(context, batchUrl).get(packageName) : null;
+    }
+
+    /**
+     * Execute AppUpdateBatch in background.
+     */
+    public void start() {
+        latestBatch = new UtilsAsync.LatestBatch(context, batchUrl, listeners, updateSelector, checkTimeout, deltaSync);
+        latestBatch.execute();
+    }
+
+    /**
+     * Stops the execution of AppUpdateBatch.
+     */
+    public void stop() {
+        if (latestBatch != null && !latestBatch.isCancelled()) {
+            latestBatch.cancel(true);
+        }
+    }
+
+}
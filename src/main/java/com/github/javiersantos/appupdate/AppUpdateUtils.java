@@ -6,8 +6,12 @@ import androidx.annotation.NonNull;
 
 import com.github.javiersantos.appupdate.enums.AppUpdaterError;
 import com.github.javiersantos.appupdate.enums.UpdateFrom;
+import com.github.javiersantos.appupdate.interfaces.UpdateSource;
+import com.github.javiersantos.appupdate.objects.DnsTxt;
+import com.github.javiersantos.appupdate.objects.FDroidRepo;
 import com.github.javiersantos.appupdate.objects.GitHub;
 import com.github.javiersantos.appupdate.objects.Update;
+import com.github.javiersantos.appupdate.objects.UpdateSelector;
 
 public class AppUpdateUtils {
     private Context context;
@@ -15,7 +19,19 @@ public class AppUpdateUtils {
     private AppUpdaterListener appUpdaterListener;
     private UpdateFrom updateFrom;
     private GitHub gitHub;
+    private DnsTxt dnsTxt;
+    private FDroidRepo fDroidRepo;
     private String xmlOrJSONUrl;
+    private UpdateSource updateSource;
+    private UpdateSelector updateSelector;
+    private Integer checkInterval;
+    private Boolean offlineFirst;
+    private Long startDelay;
+    private Boolean prewarm;
+    private Long checkTimeout;
+    private Boolean headCheck;
+    private NetworkWatcher networkWatcher;
+    private IdleStarter idleStarter;
     private UtilsAsync.LatestAppVersion latestAppVersion;
 
     public interface UpdateListener {
@@ -49,6 +65,12 @@ public class AppUpdateUtils {
     public AppUpdateUtils(Context context) {
         this.context = context;
         this.updateFrom = UpdateFrom.GOOGLE_PLAY;
+        this.checkInterval = 0;
+        this.offlineFirst = false;
+        this.startDelay = 0L;
+        this.prewarm = false;
+        this.checkTimeout = Config.CHECK_TIMEOUT;
+        this.headCheck = false;
     }
 
     /**
@@ -76,6 +98,54 @@ public class AppUpdateUtils {
         return this;
     }
 
+    /**
+     * Set the GitHub repo where the releases are uploaded, with an optional token and API url (GitHub Enterprise or a local server).
+     *
+     * @param gitHub GitHub user, repo, token and API url
+     * @return this
+     */
+    public AppUpdateUtils setGitHub(GitHub gitHub) {
+        this.gitHub = gitHub;
+        return this;
+    }
+
+    /**
+     * Set the DNS TXT record with the latest version and the update file to read when there is an update.
+     * Use it with UpdateFrom.DNS_TXT.
+     *
+     * @param dnsTxt name of the record, format and url of the update file
+     * @return this
+     */
+    public AppUpdateUtils setDnsTxt(DnsTxt dnsTxt) {
+        this.dnsTxt = dnsTxt;
+        return this;
+    }
+
+    /**
+     * Set the F-Droid repository whose index has the latest version. Use it with UpdateFrom.FDROID_REPO.
+     * The first check downloads the whole index. If it takes longer than the check timeout, the check fails but the
+     * download goes on in the background for the next one. The repository must be served over HTTPS.
+     *
+     * @param fDroidRepo url of the repository, index format and package to check
+     * @return this
+     */
+    public AppUpdateUtils setFDroidRepo(FDroidRepo fDroidRepo) {
+        this.fDroidRepo = fDroidRepo;
+        return this;
+    }
+
+    /**
+     * Set a source implemented by the app, to read the latest update in its own way. Sets UpdateFrom.CUSTOM.
+     *
+     * @param updateSource source where the latest update is read from
+     * @return this
+     */
+    public AppUpdateUtils setUpdateSource(@NonNull UpdateSource updateSource) {
+        this.updateSource = updateSource;
+        this.updateFrom = UpdateFrom.CUSTOM;
+        return this;
+    }
+
     /**
      * Set the url to the xml with the latest version info.
      *
@@ -98,6 +168,107 @@ public class AppUpdateUtils {
         return this;
     }
 
+    /**
+     * Set the url to the binary file with the latest version info.
+     *
+     * @param binaryUrl file
+     * @return this
+     * @see com.github.javiersantos.appupdate.WriterBinary
+     */
+    public AppUpdateUtils setUpdateBinary(@NonNull String binaryUrl) {
+        this.xmlOrJSONUrl = binaryUrl;
+        return this;
+    }
+
+    /**
+     * Set which entry of a multi-variant XML/JSON file applies to this installation. Default: "stable" channel
+     * and the ABIs, SDK and locale of the device.
+     *
+     * @param selector channel and device properties to match
+     * @return this
+     * @see com.github.javiersantos.appupdate.objects.UpdateSelector
+     */
+    public AppUpdateUtils setUpdateSelector(@NonNull UpdateSelector selector) {
+        this.updateSelector = selector;
+        return this;
+    }
+
+    /**
+     * Set the minimum time between two checks. Calls to start() before it has elapsed are skipped. <br/>
+     * The server can raise it with a "checkInterval" field in the XML/JSON file or a Cache-Control max-age header,
+     * up to 7 days or this interval if it is longer, and each install adds its own fixed delay so that checks are spread out over time. Default: 0 (check every time).
+     *
+     * @param seconds minimum seconds between checks
+     * @return this
+     */
+    public AppUpdateUtils setCheckInterval(Integer seconds) {
+        this.checkInterval = seconds;
+        return this;
+    }
+
+    /**
+     * Keep the result of the last check and use it when the device is offline, instead of failing with NETWORK_NOT_AVAILABLE.
+     * A new check is made once, as soon as a working network is available again (API 21+). Default: false.
+     *
+     * @param offlineFirst true to use the last check while offline
+     * @return this
+     * @see Update#isCached()
+     */
+    public AppUpdateUtils setOfflineFirst(Boolean offlineFirst) {
+        this.offlineFirst = offlineFirst;
+        return this;
+    }
+
+    /**
+     * Set the time to wait, once the main thread is idle, before a check started with startWhenIdle() runs. Default: 0.
+     *
+     * @param millis delay in milliseconds
+     * @return this
+     */
+    public AppUpdateUtils setStartDelay(Long millis) {
+        this.startDelay = millis;
+        return this;
+    }
+
+    /**
+     * Open the connection to the update host (DNS and TLS) as soon as startWhenIdle() is called,
+     * so the deferred check doesn't have to wait for it. Default: false.
+     *
+     * @param prewarm true to connect ahead of time
+     * @return this
+     */
+    public AppUpdateUtils setPrewarm(Boolean prewarm) {
+        this.prewarm = prewarm;
+        return this;
+    }
+
+    /**
+     * Set the time a whole check can take: waiting for another process, DNS, connection, download and parsing of
+     * every request made through the library. Once it is over the check fails, or goes on without the release notes
+     * if the update was already read. If another process is still checking by then, the result of the previous check
+     * is returned, or CHECK_TIMEOUT if there is none. Default: 30 seconds, 0 for no limit.
+     *
+     * @param millis deadline in milliseconds
+     * @return this
+     */
+    public AppUpdateUtils setCheckTimeout(Long millis) {
+        this.checkTimeout = millis;
+        return this;
+    }
+
+    /**
+     * Ask the server for the latest version with a HEAD request first, and only download the update file if it is
+     * newer than the installed one. The server must answer the HEAD request to the XML, JSON or binary url with the
+     * X-AppUpdater-Version-Code (highest versionCode of all the variants) and X-AppUpdater-Version headers,
+     * otherwise the whole file is read as usual. Default: false.
+     *
+     * @param headCheck true to check the headers first
+     * @return this
+     */
+    public AppUpdateUtils setHeadCheck(Boolean headCheck) {
+        this.headCheck = headCheck;
+        return this;
+    }
 
     /**
      * Method to set the AppUpdaterListener for the AppUpdaterUtils actions
@@ -128,7 +299,19 @@ public class AppUpdateUtils {
      * Execute AppUpdaterUtils in background.
      */
     public void start() {
-        latestAppVersion = new UtilsAsync.LatestAppVersion(context, true, updateFrom, gitHub, xmlOrJSONUrl, new AppUpdate.LibraryListener() {
+        if (offlineFirst && !UtilsLibrary.isNetworkAvailable(context)) {
+            if (networkWatcher == null) {
+                networkWatcher = new NetworkWatcher(context, new Runnable() {
+                    @Override
+                    public void run() {
+                        start();
+                    }
+                });
+            }
+            networkWatcher.register();
+        }
+
+        latestAppVersion = new UtilsAsync.LatestAppVersion(context, true, getUpdateSource(), updateSelector, checkInterval, offlineFirst, checkTimeout, headCheck, new AppUpdate.LibraryListener() {
             @Override
             public void onSuccess(Update update) {
                 Update installedUpdate = new Update(UtilsLibrary.getAppInstalledVersion(context), UtilsLibrary.getAppInstalledVersionCode(context));
@@ -157,12 +340,42 @@ public class AppUpdateUtils {
         latestAppVersion.execute();
     }
 
+    /**
+     * Execute AppUpdaterUtils in background once the main thread is idle (after the first frame), plus the delay set
+     * with setStartDelay(). Must be called from the main thread.
+     */
+    public void startWhenIdle() {
+        if (prewarm) {
+            UtilsLibrary.prewarm(context, getUpdateSource());
+        }
+
+        if (idleStarter == null) {
+            idleStarter = new IdleStarter(new Runnable() {
+                @Override
+                public void run() {
+                    start();
+                }
+            });
+        }
+        idleStarter.schedule(startDelay);
+    }
+
     /**
      * Stops the execution of AppUpdater.
      */
     public void stop() {
+        if (idleStarter != null) {
+            idleStarter.cancel();
+        }
+        if (networkWatcher != null) {
+            networkWatcher.unregister();
+        }
         if (latestAppVersion != null && !latestAppVersion.isCancelled()) {
             latestAppVersion.cancel(true);
         }
     }
+
+    private UpdateSource getUpdateSource() {
+        return updateFrom == UpdateFrom.CUSTOM ? updateSource : UtilsLibrary.getUpdateSource(updateFrom, gitHub, dnsTxt, fDroidRepo, xmlOrJSONUrl);
+    }
 }
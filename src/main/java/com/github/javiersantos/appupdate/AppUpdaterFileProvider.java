@@ -0,0 +1,10 @@
+package com.github.javiersantos.appupdate;
+
+import androidx.core.content.FileProvider;
+
+/**
+ * Shares prefetched APKs with the package installer. <br/>
+ * A subclass, so it doesn't clash with a FileProvider declared by the app.
+ */
+public class AppUpdaterFileProvider extends FileProvider {
+}
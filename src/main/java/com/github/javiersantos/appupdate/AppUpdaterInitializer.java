@@ -0,0 +1,49 @@
+package com.github.javiersantos.appupdate;
+
+import android.content.Context;
+import android.os.AsyncTask;
+
+import androidx.annotation.NonNull;
+import androidx.startup.Initializer;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * App Startup initializer that prepares the first check in the background while the app starts:
+ * the HTTP client and its cache are created and the preferences file is loaded. <br/>
+ * It isn't enabled by default, add it to the InitializationProvider of the app manifest:
+ * <pre>
+ * &lt;provider android:name="androidx.startup.InitializationProvider"
+ *     android:authorities="${applicationId}.androidx-startup"
+ *     android:exported="false"
+ *     tools:node="merge"&gt;
+ *     &lt;meta-data android:name="com.github.javiersantos.appupdate.AppUpdaterInitializer"
+ *         android:value="androidx.startup" /&gt;
+ * &lt;/provider&gt;
+ * </pre>
+ * Then call {@link AppUpdate#startWhenIdle()} from the activity.
+ */
+public class AppUpdaterInitializer implements Initializer<Void> {
+
+    @NonNull
+    @Override
+    public Void create(@NonNull Context context) {
+        final Context applicationContext = context.getApplicationContext();
+        AsyncTask.THREAD_POOL_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                UtilsLibrary.getHttpClient(applicationContext);
+                new LibraryPreferences(applicationContext).getAppUpdaterShow();
+            }
+        });
+        return null;
+    }
+
+    @NonNull
+    @Override
+    public List<Class<? extends Initializer<?>>> dependencies() {
+        return Collections.emptyList();
+    }
+
+}
@@ -0,0 +1,86 @@
+package com.github.javiersantos.appupdate;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.github.javiersantos.appupdate.objects.Update;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Collection;
+
+/**
+ * Last result of each package of a batch endpoint and the sync token of the response it came from,
+ * for the delta sync of AppUpdateBatch. <br/>
+ * The packages are saved before the token, so a sync killed halfway is only repeated from the previous token.
+ * Kept in the cache dir: if some files are cleared, the next sync is a full one.
+ */
+class BatchStore {
+    private static final String SYNC_TOKEN_FILE = "sync_token";
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private File dir;
+
+    BatchStore(Context context, String batchUrl) {
+        String name = "batch_" + Integer.toHexString(batchUrl.hashCode());
+        this.dir = new File(new File(context.getCacheDir(), Config.CACHE_DIR), name);
+    }
+
+    /**
+     * @return the token to send, or null if a full sync is needed because some packages have no result yet
+     */
+    String getSyncToken(Collection<String> packageNames) {
+        for (String packageName : packageNames) {
+            if (!getFile(packageName).exists()) {
+                return null;
+            }
+        }
+
+        File file = new File(dir, SYNC_TOKEN_FILE);
+        if (!file.exists()) {
+            return null;
+        }
+        try {
+            return new String(UtilsLibrary.readAll(new FileInputStream(file), file.length()), UTF_8);
+        } catch (IOException e) {
+            Log.e("AppUpdater", "The sync token can't be read, doing a full sync.", e);
+            return null;
+        }
+    }
+
+    /**
+     * @param syncToken token of the response whose packages have all been saved, or null to forget it
+     */
+    void setSyncToken(String syncToken) {
+        File file = new File(dir, SYNC_TOKEN_FILE);
+        if (syncToken == null) {
+            file.delete();
+            return;
+        }
+        if (!(dir.isDirectory() || dir.mkdirs())) {
+            return;
+        }
+
+        try {
+            UtilsLibrary.writeFile(file, syncToken.getBytes(UTF_8));
+        } catch (IOException e) {
+            Log.e("AppUpdater", "The sync token can't be saved.", e);
+        }
+    }
+
+    Update get(String packageName) {
+        return UtilsLibrary.loadLastUpdate(getFile(packageName));
+    }
+
+    void put(String packageName, Update update) {
+        UtilsLibrary.saveLastUpdate(getFile(packageName), update);
+    }
+
+    private File getFile(String packageName) {
+        // Package names only have letters, digits, dots and underscores
+        return new File(dir, packageName + ".bin");
+    }
+
+}
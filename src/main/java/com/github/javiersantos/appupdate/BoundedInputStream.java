@@ -0,0 +1,61 @@
+package com.github.javiersantos.appupdate;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Fails the read with a {@link ResponseTooLargeException} once more than the given number of bytes have been read
+ * from the stream.
+ */
+class BoundedInputStream extends FilterInputStream {
+    private final long limit;
+    private long count;
+
+    BoundedInputStream(InputStream in, long limit) {
+        super(in);
+        this.limit = limit;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if (b != -1) {
+            count(1);
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int read = super.read(b, off, len);
+        if (read > 0) {
+            count(read);
+        }
+        return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = super.skip(n);
+        count(skipped);
+        return skipped;
+    }
+
+    private void count(long read) throws IOException {
+        count += read;
+        if (count > limit) {
+            throw tooLarge(limit);
+        }
+    }
+
+    static ResponseTooLargeException tooLarge(long limit) {
+        // The readers turn I/O errors into a null update, the check gets the reason from its session
+        FetchSession session = FetchSession.current();
+        if (session != null) {
+            session.setResponseTooLarge();
+        }
+        return new ResponseTooLargeException(limit);
+    }
+
+}
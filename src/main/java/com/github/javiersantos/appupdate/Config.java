@@ -3,11 +3,73 @@ package com.github.javiersantos.appupdate;
 class Config {
     static final String PLAY_STORE_URL = "https://play.google.com/store/apps/details?id=%s&hl=%s";
     static final String GITHUB_URL = "https://github.com/";
+    static final String GITHUB_API_URL = "https://api.github.com/";
     static final String AMAZON_URL = "http://www.amazon.com/gp/mas/dl/android?p=";
     static final String FDROID_URL = "https://f-droid.org/repository/browse/?fdid=";
 
-    static final String GITHUB_TAG_RELEASE = "/tree/";
     static final String AMAZON_TAG_RELEASE = "<strong>Version:</strong>";
     static final String FDROID_TAG_RELEASE = "<b>Version";
 
+    static final String PLAY_STORE_USER_AGENT = "Mozilla/5.0 (Windows; U; WindowsNT 5.1; en-US; rv1.8.1.6) Gecko/20070725 Firefox/2.0.0.6";
+
+    // Biggest response each reader accepts, counted after decompression. The check fails with RESPONSE_TOO_LARGE
+    // Store pages are around 1 MB, update files and API responses a few KB
+    static final long STORE_PAGE_MAX_BYTES = 3 * 1024 * 1024;
+    static final long UPDATE_FILE_MAX_BYTES = 256 * 1024;
+    static final long GITHUB_RELEASE_MAX_BYTES = 1024 * 1024;
+    static final long RELEASE_NOTES_MAX_BYTES = 64 * 1024;
+    static final long CHANGELOG_PAGE_MAX_BYTES = 256 * 1024;
+    static final long BATCH_MAX_BYTES = 1024 * 1024;
+    // F-Droid indexes are streamed into a small mirror, the one of f-droid.org is tens of MB
+    static final long FDROID_INDEX_MAX_BYTES = 128 * 1024 * 1024;
+    // Responses of unknown size are read in chunks of this size
+    static final int READ_BUFFER_SIZE = 8 * 1024;
+
+    // The server can raise the check interval up to this, or the interval of the app if longer,
+    // so a wrong max-age or checkInterval doesn't stop the checks for months
+    static final int MAX_SERVER_CHECK_INTERVAL = 7 * 24 * 60 * 60;
+
+    // Scheduled checks are delayed by up to this fraction of the interval, depending on the install
+    static final float CHECK_JITTER_RATIO = 0.25f;
+
+    // Headers with the latest version, answered to a HEAD request on the update file url
+    static final String HEADER_VERSION_CODE = "X-AppUpdater-Version-Code";
+    static final String HEADER_VERSION = "X-AppUpdater-Version";
+
+    // Longer batch urls are sent as a POST, most servers and proxies accept 2 KB urls
+    static final int BATCH_MAX_URL_LENGTH = 2000;
+
+    // Time to wait for the answer of each DNS server, for UpdateFrom.DNS_TXT
+    static final long DNS_TIMEOUT = 2 * 1000;
+
+    // Default time a whole check can take, from DNS to parsing the response
+    static final long CHECK_TIMEOUT = 30 * 1000;
+
+    // How often a check waiting for the check of another process tries to take its lock again
+    static final long CHECK_LOCK_POLL_INTERVAL = 50;
+
+    // A check made by another process of the app less than this ago is reused instead of checking again
+    static final long CHECK_SHARE_WINDOW = 60 * 1000;
+
+    // Directory inside the cache dir for changelogs and release notes
+    static final String CACHE_DIR = "appupdater";
+
+    // HTTP cache inside CACHE_DIR, keeps the ETag/Last-Modified of each response for conditional requests.
+    // The other processes of the app suffix it with their name
+    static final String HTTP_CACHE_DIR = "http";
+    static final long HTTP_CACHE_SIZE = 2 * 1024 * 1024;
+
+    // Prefetched APKs, inside CACHE_DIR. Older files are evicted first to stay under the size
+    static final String APK_CACHE_DIR = "apk";
+    static final long APK_CACHE_MAX_SIZE = 150 * 1024 * 1024;
+    // Default JobScheduler id of the prefetch, apps whose jobs already use it set another with setPrefetchJobId()
+    static final int PREFETCH_JOB_ID = 0x41555031;
+    static final String FILE_PROVIDER_AUTHORITY_SUFFIX = ".appupdater.fileprovider";
+
+    // On metered networks, cached responses are reused for up to a day after they expire
+    static final int LITE_MAX_STALE = 24 * 60 * 60;
+
+    // Pages of the changelog loaded when the update dialog is shown
+    static final int CHANGELOG_MAX_PAGES = 3;
+
 }
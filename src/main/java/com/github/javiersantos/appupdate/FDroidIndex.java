@@ -0,0 +1,524 @@
+package com.github.javiersantos.appupdate;
+
+import android.content.Context;
+import android.util.JsonReader;
+import android.util.JsonToken;
+import android.util.Log;
+
+import com.github.javiersantos.appupdate.enums.FetchProfile;
+import com.github.javiersantos.appupdate.objects.FDroidRepo;
+import com.github.javiersantos.appupdate.objects.UpdateSelector;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import okhttp3.CacheControl;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Local mirror of the index of an F-Droid repository, with the latest version of each package for this device. <br/>
+ * The index (index-v1.json or index-v2.json) is streamed: only the versions of each package are read, and only the
+ * best one is kept, the metadata, translations and screenshots are skipped without being built.
+ * The mirror is saved with the ETag and Last-Modified of the index and refreshed with a conditional request,
+ * so once it has been downloaded, checking any number of packages of the repository costs a 304. <br/>
+ * The index is downloaded on its own thread, outside of the deadline of the checks: a check that runs out of time
+ * stops waiting, but the download goes on and the next check finds the mirror up to date.
+ * On the LITE profile an existing mirror is used as it is, like the stale responses of the HTTP cache, and a
+ * repository without one fails the check until the device is on an unmetered network. The bytes of a download are
+ * added to the traffic of the check that started it.
+ */
+class FDroidIndex {
+    private static final int MIRROR_MAGIC = 0x41554649;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    // Mirrors of this process, one per index and device configuration
+    private static final Map<String, FDroidIndex> INSTANCES = new HashMap<>();
+
+    private String indexUrl;
+    private UpdateSelector selector;
+    private File mirrorFile;
+    private Map<String, Entry> entries;
+    private String etag;
+    private String lastModified;
+    private long refreshedAt;
+    // True once the entries come from a downloaded index or a saved mirror
+    private boolean hasMirror;
+    private boolean refreshing;
+    private IOException refreshError;
+
+    /**
+     * Latest version of a package.
+     */
+    static class Entry {
+        final int versionCode;
+        final String versionName;
+        // Path of the APK in the repository, starting with a slash
+        final String path;
+        final String sha256;
+
+        Entry(int versionCode, String versionName, String path, String sha256) {
+            this.versionCode = versionCode;
+            this.versionName = versionName;
+            this.path = path;
+            this.sha256 = sha256;
+        }
+    }
+
+    private FDroidIndex(Context context, String indexUrl, UpdateSelector selector, String key) {
+        this.indexUrl = indexUrl;
+        this.selector = selector;
+        String name = "fdroid_" + Integer.toHexString(key.hashCode()) + ".bin";
+        this.mirrorFile = new File(new File(context.getCacheDir(), Config.CACHE_DIR), name);
+    }
+
+    static synchronized FDroidIndex get(Context context, FDroidRepo fDroidRepo, UpdateSelector selector) {
+        // The best version depends on the SDK, ABIs and channel, so does the mirror
+        String key = fDroidRepo.getIndexUrl() + "|" + selector.getSdk() + "|" + Arrays.toString(selector.getAbis()) + "|" + selector.getChannel();
+        FDroidIndex index = INSTANCES.get(key);
+        if (index == null) {
+            index = new FDroidIndex(context.getApplicationContext(), fDroidRepo.getIndexUrl(), selector, key);
+            INSTANCES.put(key, index);
+        }
+        return index;
+    }
+
+    /**
+     * Refreshes the mirror, unless it was a moment ago, and looks the package up. Checks of the same repository wait
+     * for the same download, so the index is only downloaded once.
+     *
+     * @return the latest version of the package, or null if the repository doesn't have it for this device
+     * @throws IOException if the index can't be downloaded or read, or the check runs out of time waiting for it
+     */
+    synchronized Entry find(Context context, String packageName) throws IOException {
+        if (entries == null) {
+            loadMirror();
+        }
+        FetchSession session = FetchSession.current();
+        boolean lite = session != null && session.getProfile() == FetchProfile.LITE;
+        long age = System.currentTimeMillis() - refreshedAt;
+        if (age < 0 || age >= Config.CHECK_SHARE_WINDOW) {
+            if (!lite) {
+                awaitRefresh(context, session);
+            } else if (!hasMirror) {
+                throw new IOException("The F-Droid index is only downloaded on an unmetered network.");
+            }
+        }
+        return entries.get(packageName);
+    }
+
+    private void awaitRefresh(final Context context, final FetchSession session) throws IOException {
+        if (!refreshing) {
+            refreshing = true;
+            refreshError = null;
+            final String sentEtag = etag;
+            final String sentLastModified = lastModified;
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    IOException error = null;
+                    // Counts the download in the traffic of the check that started it, without its deadline
+                    FetchSession download = FetchSession.begin(FetchProfile.FULL, 0);
+                    try {
+                        refresh(context, sentEtag, sentLastModified);
+                    } catch (IOException e) {
+                        Log.e("AppUpdater", "The F-Droid index can't be downloaded.", e);
+                        error = e;
+                    } finally {
+                        FetchSession.end();
+                    }
+                    if (session != null) {
+                        session.add(download.getBytes());
+                    }
+                    synchronized (FDroidIndex.this) {
+                        refreshing = false;
+                        refreshError = error;
+                        FDroidIndex.this.notifyAll();
+                    }
+                }
+            }, "AppUpdater-fdroid").start();
+        }
+
+        try {
+            // Releases the lock while waiting, the other checks of the repository wait for the same download
+            while (refreshing) {
+                if (session == null) {
+                    wait();
+                } else if (session.getTimeLeft() > 0) {
+                    wait(session.getTimeLeft());
+                } else {
+                    throw new IOException("The F-Droid index is still being downloaded.");
+                }
+            }
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException("Stopped waiting for the F-Droid index.");
+        }
+        if (refreshError != null) {
+            throw refreshError;
+        }
+    }
+
+    /**
+     * Downloads and parses the index without holding the lock, then replaces the mirror.
+     */
+    private void refresh(Context context, String sentEtag, String sentLastModified) throws IOException {
+        // The index is bigger than the HTTP cache, the mirror is the cache
+        Request.Builder request = new Request.Builder()
+                .url(indexUrl)
+                .cacheControl(new CacheControl.Builder().noStore().build());
+        if (sentEtag != null) {
+            request.header("If-None-Match", sentEtag);
+        }
+        if (sentLastModified != null) {
+            request.header("If-Modified-Since", sentLastModified);
+        }
+
+        Response response = UtilsLibrary.getHttpClient(context).newCall(request.build()).execute();
+        try {
+            if (response.code() == 304) {
+                synchronized (this) {
+                    refreshedAt = System.currentTimeMillis();
+                }
+                return;
+            } else if (!response.isSuccessful()) {
+                throw new IOException("HTTP " + response.code() + " for " + indexUrl);
+            }
+
+            Map<String, Entry> newEntries = parse(UtilsLibrary.getBody(response, Config.FDROID_INDEX_MAX_BYTES));
+            synchronized (this) {
+                entries = newEntries;
+                etag = response.header("ETag");
+                lastModified = response.header("Last-Modified");
+                refreshedAt = System.currentTimeMillis();
+                hasMirror = true;
+                saveMirror();
+            }
+        } finally {
+            response.close();
+        }
+    }
+
+    Map<String, Entry> parse(InputStream in) throws IOException {
+        Map<String, Integer> suggestedVersionCodes = new HashMap<>();
+        Map<String, Entry> result = new HashMap<>();
+
+        JsonReader reader = new JsonReader(new InputStreamReader(in, UTF_8));
+        try {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if (name.equals("apps") && reader.peek() == JsonToken.BEGIN_ARRAY) {
+                    // index-v1 only, written before "packages"
+                    readSuggestedVersionCodes(reader, suggestedVersionCodes);
+                } else if (name.equals("packages")) {
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        String packageName = reader.nextName();
+                        // A list of versions in index-v1, an object with the metadata and the versions in index-v2
+                        Entry entry = reader.peek() == JsonToken.BEGIN_ARRAY
+                                ? readVersionsV1(reader, suggestedVersionCodes.get(packageName))
+                                : readPackageV2(reader);
+                        if (entry != null) {
+                            result.put(packageName, entry);
+                        }
+                    }
+                    reader.endObject();
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        } catch (IllegalStateException | NumberFormatException e) {
+            throw new IOException("Malformed F-Droid index: " + e.getMessage());
+        } finally {
+            reader.close();
+        }
+        return result;
+    }
+
+    private void readSuggestedVersionCodes(JsonReader reader, Map<String, Integer> suggestedVersionCodes) throws IOException {
+        reader.beginArray();
+        while (reader.hasNext()) {
+            String packageName = null;
+            String suggestedVersionCode = null;
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if (name.equals("packageName")) {
+                    packageName = nextString(reader);
+                } else if (name.equals("suggestedVersionCode")) {
+                    suggestedVersionCode = nextString(reader);
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+
+            if (packageName != null && suggestedVersionCode != null) {
+                suggestedVersionCodes.put(packageName, Integer.parseInt(suggestedVersionCode));
+            }
+        }
+        reader.endArray();
+    }
+
+    private Entry readVersionsV1(JsonReader reader, Integer suggestedVersionCode) throws IOException {
+        Entry best = null;
+
+        reader.beginArray();
+        while (reader.hasNext()) {
+            String versionCode = null, versionName = null, apkName = null, hash = null, hashType = null, minSdk = null;
+            boolean compatible = true;
+
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if (name.equals("versionCode")) {
+                    versionCode = nextString(reader);
+                } else if (name.equals("versionName")) {
+                    versionName = nextString(reader);
+                } else if (name.equals("apkName")) {
+                    apkName = nextString(reader);
+                } else if (name.equals("hash")) {
+                    hash = nextString(reader);
+                } else if (name.equals("hashType")) {
+                    hashType = nextString(reader);
+                } else if (name.equals("minSdkVersion")) {
+                    minSdk = nextString(reader);
+                } else if (name.equals("nativecode") && reader.peek() == JsonToken.BEGIN_ARRAY) {
+                    compatible = readAbis(reader);
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+
+            if (versionCode == null || apkName == null || !compatible || !isSdkSupported(minSdk)) {
+                continue;
+            }
+            int code = Integer.parseInt(versionCode);
+            // Versions above the suggested one are betas or haven't been tested yet
+            if (isStable() && suggestedVersionCode != null && code > suggestedVersionCode) {
+                continue;
+            }
+            if (best == null || code > best.versionCode) {
+                best = new Entry(code, versionName, "/" + apkName, "sha256".equals(hashType) ? hash : null);
+            }
+        }
+        reader.endArray();
+
+        return best;
+    }
+
+    private Entry readPackageV2(JsonReader reader) throws IOException {
+        Entry best = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (!reader.nextName().equals("versions")) {
+                reader.skipValue();
+                continue;
+            }
+            reader.beginObject();
+            while (reader.hasNext()) {
+                reader.nextName();
+                Entry entry = readVersionV2(reader);
+                if (entry != null && (best == null || entry.versionCode > best.versionCode)) {
+                    best = entry;
+                }
+            }
+            reader.endObject();
+        }
+        reader.endObject();
+
+        return best;
+    }
+
+    private Entry readVersionV2(JsonReader reader) throws IOException {
+        String path = null, sha256 = null, versionCode = null, versionName = null, minSdk = null;
+        boolean compatible = true;
+        boolean beta = false;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (name.equals("file")) {
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    String fileName = reader.nextName();
+                    if (fileName.equals("name")) {
+                        path = nextString(reader);
+                    } else if (fileName.equals("sha256")) {
+                        sha256 = nextString(reader);
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                reader.endObject();
+            } else if (name.equals("manifest")) {
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    String manifestName = reader.nextName();
+                    if (manifestName.equals("versionCode")) {
+                        versionCode = nextString(reader);
+                    } else if (manifestName.equals("versionName")) {
+                        versionName = nextString(reader);
+                    } else if (manifestName.equals("usesSdk") && reader.peek() == JsonToken.BEGIN_OBJECT) {
+                        reader.beginObject();
+                        while (reader.hasNext()) {
+                            if (reader.nextName().equals("minSdkVersion")) {
+                                minSdk = nextString(reader);
+                            } else {
+                                reader.skipValue();
+                            }
+                        }
+                        reader.endObject();
+                    } else if (manifestName.equals("nativecode") && reader.peek() == JsonToken.BEGIN_ARRAY) {
+                        compatible = readAbis(reader);
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                reader.endObject();
+            } else if (name.equals("releaseChannels") && reader.peek() == JsonToken.BEGIN_ARRAY) {
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    reader.skipValue();
+                    beta = true;
+                }
+                reader.endArray();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        if (path == null || versionCode == null || !compatible || !isSdkSupported(minSdk) || (beta && isStable())) {
+            return null;
+        }
+        return new Entry(Integer.parseInt(versionCode), versionName, path.startsWith("/") ? path : "/" + path, sha256);
+    }
+
+    /**
+     * @return true if one of the ABIs of the version is supported by the device, or it has no native code
+     */
+    private boolean readAbis(JsonReader reader) throws IOException {
+        boolean empty = true;
+        boolean compatible = false;
+        reader.beginArray();
+        while (reader.hasNext()) {
+            String abi = nextString(reader);
+            empty = false;
+            if (selector.getAbis() == null || Arrays.asList(selector.getAbis()).contains(abi)) {
+                compatible = true;
+            }
+        }
+        reader.endArray();
+        // Without native code, every ABI is supported
+        return empty || compatible;
+    }
+
+    private boolean isSdkSupported(String minSdk) {
+        return minSdk == null || selector.getSdk() == null || Integer.parseInt(minSdk) <= selector.getSdk();
+    }
+
+    private boolean isStable() {
+        return selector.getChannel() == null || selector.getChannel().equals(UpdateSelector.CHANNEL_STABLE);
+    }
+
+    /**
+     * Numbers are quoted in some versions of the index, read both as strings.
+     */
+    private static String nextString(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        return reader.nextString();
+    }
+
+    private void loadMirror() {
+        entries = new HashMap<>();
+        if (!mirrorFile.exists()) {
+            return;
+        }
+
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(mirrorFile)));
+            if (in.readInt() != MIRROR_MAGIC) {
+                return;
+            }
+            String savedEtag = in.readUTF();
+            String savedLastModified = in.readUTF();
+            int count = in.readInt();
+            Map<String, Entry> savedEntries = new HashMap<>(count * 2);
+            for (int i = 0; i < count; i++) {
+                String packageName = in.readUTF();
+                int versionCode = in.readInt();
+                String versionName = in.readUTF();
+                String path = in.readUTF();
+                String sha256 = in.readUTF();
+                savedEntries.put(packageName, new Entry(versionCode, versionName.isEmpty() ? null : versionName, path, sha256.isEmpty() ? null : sha256));
+            }
+
+            // Only used once the whole mirror has been read, a broken one is downloaded again
+            entries = savedEntries;
+            hasMirror = true;
+            etag = savedEtag.isEmpty() ? null : savedEtag;
+            lastModified = savedLastModified.isEmpty() ? null : savedLastModified;
+        } catch (IOException e) {
+            Log.e("AppUpdater", "The F-Droid index mirror can't be read, downloading it again.", e);
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    private void saveMirror() {
+        File dir = mirrorFile.getParentFile();
+        if (dir == null || !(dir.isDirectory() || dir.mkdirs())) {
+            return;
+        }
+
+        try {
+            UtilsLibrary.writeFile(mirrorFile, new UtilsLibrary.FileContent() {
+                @Override
+                public void write(OutputStream stream) throws IOException {
+                    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+                    out.writeInt(MIRROR_MAGIC);
+                    out.writeUTF(etag != null ? etag : "");
+                    out.writeUTF(lastModified != null ? lastModified : "");
+                    out.writeInt(entries.size());
+                    for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+                        out.writeUTF(entry.getKey());
+                        out.writeInt(entry.getValue().versionCode);
+                        out.writeUTF(entry.getValue().versionName != null ? entry.getValue().versionName : "");
+                        out.writeUTF(entry.getValue().path);
+                        out.writeUTF(entry.getValue().sha256 != null ? entry.getValue().sha256 : "");
+                    }
+                    out.flush();
+                }
+            });
+        } catch (IOException e) {
+            Log.e("AppUpdater", "The F-Droid index mirror can't be saved.", e);
+        }
+    }
+
+}
@@ -0,0 +1,202 @@
+package com.github.javiersantos.appupdate;
+
+import com.github.javiersantos.appupdate.enums.FetchProfile;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Call;
+import okhttp3.CacheControl;
+import okhttp3.EventListener;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Profile, traffic and deadline of the check running on the current thread. <br/>
+ * Every request of the shared client made between begin() and end() follows the profile and adds the bytes
+ * that went over the network (headers and bodies, not responses served from the cache).
+ * Once the deadline passes, the calls of the session are cancelled, which also stops the reading and parsing of
+ * their body, and the new ones fail right away.
+ */
+class FetchSession {
+    private static final ThreadLocal<FetchSession> CURRENT = new ThreadLocal<>();
+    private static Timer timer;
+
+    private final FetchProfile profile;
+    private final long deadline;
+    private final List<Call> calls = new ArrayList<>();
+    private TimerTask expiry;
+    private boolean expired;
+    private boolean responseTooLarge;
+    private long bytes;
+
+    private FetchSession(FetchProfile profile, long timeoutMillis) {
+        this.profile = profile;
+        this.deadline = timeoutMillis > 0 ? System.currentTimeMillis() + timeoutMillis : Long.MAX_VALUE;
+    }
+
+    /**
+     * @param timeoutMillis time the whole check can take, 0 for no deadline
+     */
+    static FetchSession begin(FetchProfile profile, long timeoutMillis) {
+        final FetchSession session = new FetchSession(profile, timeoutMillis);
+        if (timeoutMillis > 0) {
+            session.expiry = new TimerTask() {
+                @Override
+                public void run() {
+                    session.expire();
+                }
+            };
+            getTimer().schedule(session.expiry, timeoutMillis);
+        }
+        CURRENT.set(session);
+        return session;
+    }
+
+    static void end() {
+        FetchSession session = CURRENT.get();
+        if (session != null && session.expiry != null) {
+            session.expiry.cancel();
+        }
+        CURRENT.remove();
+    }
+
+    /**
+     * @return the session of the check running on the current thread, or null
+     */
+    static FetchSession current() {
+        return CURRENT.get();
+    }
+
+    private static synchronized Timer getTimer() {
+        if (timer == null) {
+            timer = new Timer("AppUpdater-deadline", true);
+        }
+        return timer;
+    }
+
+    FetchProfile getProfile() {
+        return profile;
+    }
+
+    synchronized long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * @return milliseconds left before the deadline, 0 once it has passed
+     */
+    long getTimeLeft() {
+        return Math.max(0, deadline - System.currentTimeMillis());
+    }
+
+    synchronized boolean isExpired() {
+        return expired || deadline <= System.currentTimeMillis();
+    }
+
+    /**
+     * @return true if a response of the check was bigger than its reader accepts
+     */
+    synchronized boolean isResponseTooLarge() {
+        return responseTooLarge;
+    }
+
+    synchronized void setResponseTooLarge() {
+        responseTooLarge = true;
+    }
+
+    private synchronized void expire() {
+        expired = true;
+        for (Call call : calls) {
+            call.cancel();
+        }
+        calls.clear();
+    }
+
+    private synchronized void register(Call call) {
+        if (isExpired()) {
+            call.cancel();
+        } else {
+            calls.add(call);
+        }
+    }
+
+    private synchronized void unregister(Call call) {
+        calls.remove(call);
+    }
+
+    synchronized void add(long count) {
+        if (count > 0) {
+            bytes += count;
+        }
+    }
+
+    /**
+     * Counts the traffic of the calls made while a session is running, and cancels them at its deadline.
+     */
+    static final EventListener.Factory EVENT_LISTENER_FACTORY = new EventListener.Factory() {
+        @Override
+        public EventListener create(Call call) {
+            final FetchSession session = CURRENT.get();
+            if (session == null) {
+                return EventListener.NONE;
+            }
+            session.register(call);
+
+            return new EventListener() {
+                @Override
+                public void requestHeadersEnd(Call call, Request request) {
+                    session.add(request.headers().byteCount());
+                }
+
+                @Override
+                public void requestBodyEnd(Call call, long byteCount) {
+                    session.add(byteCount);
+                }
+
+                @Override
+                public void responseHeadersEnd(Call call, Response response) {
+                    session.add(response.headers().byteCount());
+                }
+
+                @Override
+                public void responseBodyEnd(Call call, long byteCount) {
+                    session.add(byteCount);
+                }
+
+                @Override
+                public void callEnd(Call call) {
+                    session.unregister(call);
+                }
+
+                @Override
+                public void callFailed(Call call, IOException ioe) {
+                    session.unregister(call);
+                }
+            };
+        }
+    };
+
+    /**
+     * On the LITE profile, lets the cache answer with a stale response instead of going to the network.
+     */
+    static final Interceptor PROFILE_INTERCEPTOR = new Interceptor() {
+        @Override
+        public Response intercept(Chain chain) throws IOException {
+            FetchSession session = CURRENT.get();
+            Request request = chain.request();
+            if (session != null && session.profile == FetchProfile.LITE) {
+                request = request.newBuilder()
+                        .cacheControl(new CacheControl.Builder().maxStale(Config.LITE_MAX_STALE, TimeUnit.SECONDS).build())
+                        .build();
+            }
+            return chain.proceed(request);
+        }
+    };
+
+}
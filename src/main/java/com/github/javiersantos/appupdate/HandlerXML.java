@@ -1,6 +1,8 @@
 package com.github.javiersantos.appupdate;
 
+import com.github.javiersantos.appupdate.objects.Artifact;
 import com.github.javiersantos.appupdate.objects.Update;
+import com.github.javiersantos.appupdate.objects.UpdateSelector;
 
 import org.xml.sax.Attributes;
 import org.xml.sax.SAXException;
@@ -8,10 +10,28 @@ import org.xml.sax.helpers.DefaultHandler;
 
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.ArrayList;
 
+/**
+ * Reads one or more &lt;update&gt; elements. When there are several, the channel, abi, minSdk and locale
+ * attributes are matched against the selector and only the content of a better candidate is read.
+ */
 class HandlerXML extends DefaultHandler {
+    private UpdateSelector selector;
     private Update update;
+    private Update current;
+    private Integer currentScore;
+    private Integer bestScore;
     private StringBuilder builder;
+    private String artifactAbi, artifactDensity, artifactSize, artifactSha256;
+
+    public HandlerXML() {
+        this(null);
+    }
+
+    public HandlerXML(UpdateSelector selector) {
+        this.selector = UtilsLibrary.getUpdateSelector(selector);
+    }
 
     public Update getUpdate() {
         return update;
@@ -21,7 +41,7 @@ class HandlerXML extends DefaultHandler {
     public void characters(char[] ch, int start, int length) throws SAXException {
         super.characters(ch, start, length);
 
-        if (this.update != null) {
+        if (this.current != null) {
             builder.append(ch, start, length);
         }
     }
@@ -30,19 +50,47 @@ class HandlerXML extends DefaultHandler {
     public void endElement(String uri, String localName, String name) throws SAXException {
         super.endElement(uri, localName, name);
 
-        if (this.update != null) {
+        if (this.current != null) {
             if (localName.equals("latestVersion")) {
-                update.setLatestVersion(builder.toString().trim());
+                current.setLatestVersion(builder.toString().trim());
             } else if (localName.equals("latestVersionCode")) {
-                update.setLatestVersionCode(Integer.valueOf(builder.toString().trim()));
+                current.setLatestVersionCode(Integer.valueOf(builder.toString().trim()));
+            } else if (localName.equals("checkInterval")) {
+                current.setCheckInterval(Integer.valueOf(builder.toString().trim()));
             } else if (localName.equals("releaseNotes")) {
-                update.setReleaseNotes(builder.toString().trim());
+                current.setReleaseNotes(builder.toString().trim());
             } else if (localName.equals("url")) {
                 try {
-                    update.setUrlToDownload(new URL(builder.toString().trim()));
+                    current.setUrlToDownload(new URL(builder.toString().trim()));
+                } catch (MalformedURLException e) {
+                    throw new RuntimeException(e);
+                }
+            } else if (localName.equals("sha256")) {
+                current.setSha256(builder.toString().trim());
+            } else if (localName.equals("releaseNotesUrl")) {
+                current.setReleaseNotesUrl(builder.toString().trim());
+            } else if (localName.equals("changelogUrl")) {
+                try {
+                    current.setChangelogUrl(new URL(builder.toString().trim()));
                 } catch (MalformedURLException e) {
                     throw new RuntimeException(e);
                 }
+            } else if (localName.equals("artifact")) {
+                try {
+                    if (current.getArtifacts() == null) {
+                        current.setArtifacts(new ArrayList<Artifact>());
+                    }
+                    Artifact artifact = new Artifact(artifactAbi, artifactDensity, new URL(builder.toString().trim()),
+                            artifactSize == null ? null : Long.valueOf(artifactSize.trim()));
+                    artifact.setSha256(artifactSha256);
+                    current.getArtifacts().add(artifact);
+                } catch (MalformedURLException e) {
+                    throw new RuntimeException(e);
+                }
+            } else if (localName.equals("update")) {
+                update = current;
+                bestScore = currentScore;
+                current = null;
             }
 
             builder.setLength(0);
@@ -54,6 +102,7 @@ class HandlerXML extends DefaultHandler {
         super.startDocument();
 
         builder = new StringBuilder();
+        bestScore = -1;
     }
 
     @Override
@@ -62,7 +111,19 @@ class HandlerXML extends DefaultHandler {
         super.startElement(uri, localName, name, attributes);
 
         if (localName.equals("update")) {
-            update = new Update();
+            String minSdk = attributes.getValue("minSdk");
+            currentScore = UtilsLibrary.getVariantScore(selector, attributes.getValue("channel"), attributes.getValue("abi"),
+                    minSdk == null ? null : Integer.valueOf(minSdk.trim()), attributes.getValue("locale"));
+
+            // Entries that can't beat the current one are skipped without being read
+            current = currentScore > bestScore ? new Update() : null;
+            builder.setLength(0);
+        } else if (localName.equals("artifact")) {
+            artifactAbi = attributes.getValue("abi");
+            artifactDensity = attributes.getValue("density");
+            artifactSize = attributes.getValue("size");
+            artifactSha256 = attributes.getValue("sha256");
+            builder.setLength(0);
         }
     }
 
@@ -0,0 +1,47 @@
+package com.github.javiersantos.appupdate;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.MessageQueue;
+
+import androidx.annotation.MainThread;
+
+/**
+ * Runs a task once the main thread has nothing else to do, e.g. after the first frame of the activity has been drawn,
+ * plus an optional delay. Used to keep startup checks from competing with the app's own startup work.
+ */
+class IdleStarter {
+    private Runnable task;
+    private Handler handler;
+    private MessageQueue.IdleHandler idleHandler;
+
+    public IdleStarter(Runnable task) {
+        this.task = task;
+        this.handler = new Handler(Looper.getMainLooper());
+    }
+
+    @MainThread
+    public void schedule(final long delayMillis) {
+        cancel();
+
+        idleHandler = new MessageQueue.IdleHandler() {
+            @Override
+            public boolean queueIdle() {
+                idleHandler = null;
+                handler.postDelayed(task, delayMillis);
+                return false;
+            }
+        };
+        Looper.myQueue().addIdleHandler(idleHandler);
+    }
+
+    @MainThread
+    public void cancel() {
+        if (idleHandler != null) {
+            Looper.myQueue().removeIdleHandler(idleHandler);
+            idleHandler = null;
+        }
+        handler.removeCallbacks(task);
+    }
+
+}
@@ -0,0 +1,228 @@
+package com.github.javiersantos.appupdate;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.net.Uri;
+import android.util.Log;
+
+import com.github.javiersantos.appupdate.objects.Update;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Version of every installed package, read with a single getInstalledPackages call instead of one
+ * getPackageInfo call per package. <br/>
+ * The index is an open-addressing table of parallel arrays, kept up to date by the package broadcasts:
+ * installed or replaced packages are only marked as stale and read again the next time they are looked up,
+ * removed ones are dropped. From Android 11 only the packages visible to the app are listed,
+ * catalog apps need a {@code <queries>} element or QUERY_ALL_PACKAGES.
+ */
+class InstalledPackages {
+    // Version code of the packages that changed since they were read
+    private static final int STALE = -1;
+    // Key of the removed entries, so the probing of the other keys goes on past them
+    private static final String REMOVED = new String("");
+    private static final int MIN_CAPACITY = 16;
+
+    private static InstalledPackages instance;
+
+    private Context context;
+    private String[] packageNames;
+    private int[] versionCodes;
+    private String[] versionNames;
+    private int size;
+    // Entries plus removed entries, the table grows or is cleaned up when it reaches half of the capacity
+    private int used;
+    // Packages changed by a broadcast while the snapshot is being listed, null the rest of the time
+    private Set<String> changedWhileLoading;
+
+    InstalledPackages(Context context) {
+        this.context = context.getApplicationContext();
+        // Usable right away, a broadcast can arrive before the snapshot is loaded
+        allocate(0);
+    }
+
+    /**
+     * Builds the index on the first call, from a background thread.
+     */
+    static synchronized InstalledPackages get(Context context) {
+        if (instance == null) {
+            instance = new InstalledPackages(context);
+            // Registered before the snapshot, the changes made while it is listed are applied over it
+            instance.register();
+            instance.load();
+        }
+        return instance;
+    }
+
+    private void register() {
+        IntentFilter filter = new IntentFilter();
+        filter.addAction(Intent.ACTION_PACKAGE_ADDED);
+        filter.addAction(Intent.ACTION_PACKAGE_REPLACED);
+        filter.addAction(Intent.ACTION_PACKAGE_REMOVED);
+        filter.addDataScheme("package");
+        context.registerReceiver(new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                Uri data = intent.getData();
+                if (data != null) {
+                    onPackageChanged(data.getSchemeSpecificPart(), intent.getAction(), intent.getBooleanExtra(Intent.EXTRA_REPLACING, false));
+                }
+            }
+        }, filter);
+    }
+
+    private void load() {
+        beginLoad();
+        List<PackageInfo> packages;
+        try {
+            // Not holding the lock, the broadcasts received meanwhile don't wait for it
+            packages = context.getPackageManager().getInstalledPackages(0);
+        } catch (RuntimeException e) {
+            // The list is sent in pages, but the package manager can still die while sending them
+            Log.e("AppUpdater", "The installed packages can't be listed.", e);
+            packages = null;
+        }
+        endLoad(packages);
+    }
+
+    synchronized void beginLoad() {
+        changedWhileLoading = new HashSet<>();
+    }
+
+    /**
+     * Adds the snapshot to the table, except the packages changed since beginLoad(): the snapshot may have been
+     * taken before their broadcast, the table already has their latest state.
+     */
+    synchronized void endLoad(List<PackageInfo> packages) {
+        if (packages != null) {
+            rehash(size + packages.size());
+            for (PackageInfo packageInfo : packages) {
+                if (!changedWhileLoading.contains(packageInfo.packageName)) {
+                    put(packageInfo.packageName, packageInfo.versionCode, packageInfo.versionName);
+                }
+            }
+        }
+        changedWhileLoading = null;
+    }
+
+    synchronized void onPackageChanged(String packageName, String action, boolean replacing) {
+        if (changedWhileLoading != null) {
+            changedWhileLoading.add(packageName);
+        }
+        if (Intent.ACTION_PACKAGE_REMOVED.equals(action)) {
+            // An update is a removal followed by ACTION_PACKAGE_REPLACED
+            if (!replacing) {
+                remove(packageName);
+            }
+        } else {
+            put(packageName, STALE, null);
+        }
+    }
+
+    /**
+     * @return version and versionCode of the package, 0.0.0.0 and 0 if it isn't installed
+     */
+    synchronized Update getInstalledUpdate(String packageName) {
+        int index = indexOf(packageName);
+        if (index >= 0 && versionCodes[index] == STALE) {
+            try {
+                PackageInfo packageInfo = context.getPackageManager().getPackageInfo(packageName, 0);
+                versionCodes[index] = packageInfo.versionCode;
+                versionNames[index] = packageInfo.versionName;
+            } catch (PackageManager.NameNotFoundException e) {
+                remove(packageName);
+                index = -1;
+            }
+        }
+        if (index < 0) {
+            return new Update("0.0.0.0", 0);
+        }
+        return new Update(versionNames[index] != null ? versionNames[index] : "0.0.0.0", versionCodes[index]);
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    private void allocate(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < expectedSize * 2) {
+            capacity <<= 1;
+        }
+        packageNames = new String[capacity];
+        versionCodes = new int[capacity];
+        versionNames = new String[capacity];
+        size = 0;
+        used = 0;
+    }
+
+    private int indexOf(String packageName) {
+        int mask = packageNames.length - 1;
+        for (int i = hash(packageName) & mask; packageNames[i] != null; i = (i + 1) & mask) {
+            if (packageNames[i] != REMOVED && packageNames[i].equals(packageName)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void put(String packageName, int versionCode, String versionName) {
+        int index = indexOf(packageName);
+        if (index < 0) {
+            if ((used + 1) * 2 > packageNames.length) {
+                rehash(size * 2);
+            }
+            int mask = packageNames.length - 1;
+            index = hash(packageName) & mask;
+            while (packageNames[index] != null && packageNames[index] != REMOVED) {
+                index = (index + 1) & mask;
+            }
+            if (packageNames[index] == null) {
+                used++;
+            }
+            packageNames[index] = packageName;
+            size++;
+        }
+        versionCodes[index] = versionCode;
+        versionNames[index] = versionName;
+    }
+
+    private void remove(String packageName) {
+        int index = indexOf(packageName);
+        if (index >= 0) {
+            packageNames[index] = REMOVED;
+            versionNames[index] = null;
+            size--;
+        }
+    }
+
+    /**
+     * Copies the entries into a new table with room for expectedSize entries, dropping the removed ones.
+     */
+    private void rehash(int expectedSize) {
+        String[] oldPackageNames = packageNames;
+        int[] oldVersionCodes = versionCodes;
+        String[] oldVersionNames = versionNames;
+
+        allocate(Math.max(size, expectedSize));
+        for (int i = 0; i < oldPackageNames.length; i++) {
+            if (oldPackageNames[i] != null && oldPackageNames[i] != REMOVED) {
+                put(oldPackageNames[i], oldVersionCodes[i], oldVersionNames[i]);
+            }
+        }
+    }
+
+    private static int hash(String key) {
+        int h = key.hashCode();
+        // Package names share long prefixes, the high bits are mixed into the low ones used by the mask
+        return h ^ (h >>> 16);
+    }
+
+}
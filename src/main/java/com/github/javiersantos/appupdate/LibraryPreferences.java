@@ -1,37 +1,107 @@
 package com.github.javiersantos.appupdate;
 
 import android.content.Context;
-import android.content.SharedPreferences;
-import android.preference.PreferenceManager;
 
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+/**
+ * Values kept by the library between checks. <br/>
+ * They are stored in {@link SharedState} so that all the processes of the app share them,
+ * the keys are only used to import the values of the default SharedPreferences.
+ */
 class LibraryPreferences {
-    private SharedPreferences sharedPreferences;
-    private SharedPreferences.Editor editor;
+    private Context context;
 
     static final String KeyAppUpdaterShow = "prefAppUpdaterShow";
     static final String KeySuccessfulChecks = "prefSuccessfulChecks";
+    static final String KeyNextCheck = "prefNextCheck";
+    static final String KeyCheckJitter = "prefCheckJitter";
 
     public LibraryPreferences(Context context) {
-        this.sharedPreferences = PreferenceManager.getDefaultSharedPreferences(context);
-        this.editor = sharedPreferences.edit();
+        this.context = context;
     }
 
     public Boolean getAppUpdaterShow() {
-        return sharedPreferences.getBoolean(KeyAppUpdaterShow, true);
+        return SharedState.transact(context, new SharedState.Transaction<Boolean>() {
+            @Override
+            public Boolean run(ByteBuffer state) {
+                return (state.getInt(SharedState.OFFSET_FLAGS) & SharedState.FLAG_HIDDEN) == 0;
+            }
+        });
     }
 
-    public void setAppUpdaterShow(Boolean res) {
-        editor.putBoolean(KeyAppUpdaterShow, res);
-        editor.commit();
+    public void setAppUpdaterShow(final Boolean res) {
+        SharedState.transact(context, new SharedState.Transaction<Void>() {
+            @Override
+            public Void run(ByteBuffer state) {
+                int flags = state.getInt(SharedState.OFFSET_FLAGS);
+                state.putInt(SharedState.OFFSET_FLAGS, res ? flags & ~SharedState.FLAG_HIDDEN : flags | SharedState.FLAG_HIDDEN);
+                return null;
+            }
+        });
     }
 
     public Integer getSuccessfulChecks() {
-        return sharedPreferences.getInt(KeySuccessfulChecks, 0);
+        return SharedState.transact(context, new SharedState.Transaction<Integer>() {
+            @Override
+            public Integer run(ByteBuffer state) {
+                return state.getInt(SharedState.OFFSET_SUCCESSFUL_CHECKS);
+            }
+        });
+    }
+
+    /**
+     * Increments the number of successful checks in a single step, so no check is lost when several processes
+     * finish at the same time.
+     *
+     * @return the number of successful checks before this one
+     */
+    public Integer incrementSuccessfulChecks() {
+        return SharedState.transact(context, new SharedState.Transaction<Integer>() {
+            @Override
+            public Integer run(ByteBuffer state) {
+                int checks = state.getInt(SharedState.OFFSET_SUCCESSFUL_CHECKS);
+                state.putInt(SharedState.OFFSET_SUCCESSFUL_CHECKS, checks + 1);
+                return checks;
+            }
+        });
+    }
+
+    public Long getNextCheck() {
+        return SharedState.transact(context, new SharedState.Transaction<Long>() {
+            @Override
+            public Long run(ByteBuffer state) {
+                return state.getLong(SharedState.OFFSET_NEXT_CHECK);
+            }
+        });
+    }
+
+    public void setNextCheck(final Long timeMillis) {
+        SharedState.transact(context, new SharedState.Transaction<Void>() {
+            @Override
+            public Void run(ByteBuffer state) {
+                state.putLong(SharedState.OFFSET_NEXT_CHECK, timeMillis);
+                return null;
+            }
+        });
     }
 
-    public void setSuccessfulChecks(Integer checks) {
-        editor.putInt(KeySuccessfulChecks, checks);
-        editor.commit();
+    /**
+     * Random value in [0, 1) generated once per install, used to spread scheduled checks over time.
+     */
+    public Float getCheckJitter() {
+        return SharedState.transact(context, new SharedState.Transaction<Float>() {
+            @Override
+            public Float run(ByteBuffer state) {
+                int flags = state.getInt(SharedState.OFFSET_FLAGS);
+                if ((flags & SharedState.FLAG_JITTER_SET) == 0) {
+                    state.putFloat(SharedState.OFFSET_CHECK_JITTER, new Random().nextFloat());
+                    state.putInt(SharedState.OFFSET_FLAGS, flags | SharedState.FLAG_JITTER_SET);
+                }
+                return state.getFloat(SharedState.OFFSET_CHECK_JITTER);
+            }
+        });
     }
 
 }
@@ -0,0 +1,101 @@
+package com.github.javiersantos.appupdate;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import android.net.NetworkRequest;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+/**
+ * Runs a task once, on the main thread, as soon as a network with working Internet access is available. <br/>
+ * On API 23+ the network must have been validated by the system, not only connected.
+ * Does nothing below API 21, where there are no network callbacks.
+ */
+class NetworkWatcher {
+    private Context context;
+    private Runnable task;
+    private Handler handler;
+    private ConnectivityManager.NetworkCallback callback;
+
+    public NetworkWatcher(Context context, Runnable task) {
+        this.context = context.getApplicationContext();
+        this.task = task;
+        this.handler = new Handler(Looper.getMainLooper());
+    }
+
+    public boolean isRegistered() {
+        return callback != null;
+    }
+
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    public void register() {
+        if (callback != null || Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP) {
+            return;
+        }
+
+        ConnectivityManager cm = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        if (cm == null) {
+            return;
+        }
+
+        callback = new ConnectivityManager.NetworkCallback() {
+            @Override
+            public void onAvailable(Network network) {
+                if (Build.VERSION.SDK_INT < Build.VERSION_CODES.M) {
+                    onOnline();
+                }
+            }
+
+            @Override
+            public void onCapabilitiesChanged(Network network, NetworkCapabilities capabilities) {
+                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M && capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_VALIDATED)) {
+                    onOnline();
+                }
+            }
+        };
+
+        try {
+            cm.registerNetworkCallback(new NetworkRequest.Builder()
+                    .addCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET)
+                    .build(), callback);
+        } catch (RuntimeException e) {
+            // SecurityException without ACCESS_NETWORK_STATE, or too many callbacks registered by the app
+            Log.e("AppUpdater", "Can't wait for the network. AppUpdate won't check for updates when it comes back.", e);
+            callback = null;
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    public void unregister() {
+        if (callback == null) {
+            return;
+        }
+
+        ConnectivityManager cm = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        try {
+            cm.unregisterNetworkCallback(callback);
+        } catch (IllegalArgumentException ignore) {
+            // Already unregistered
+        }
+        callback = null;
+    }
+
+    private void onOnline() {
+        // Callbacks run on a ConnectivityThread
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (callback != null) {
+                    unregister();
+                    task.run();
+                }
+            }
+        });
+    }
+
+}
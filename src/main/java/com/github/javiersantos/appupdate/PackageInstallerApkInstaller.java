@@ -0,0 +1,74 @@
+package com.github.javiersantos.appupdate;
+
+import android.annotation.TargetApi;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.content.pm.PackageInstaller;
+import android.os.Build;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes the APK into a PackageInstaller session. The result is delivered to {@link InstallReceiver}.
+ */
+@TargetApi(Build.VERSION_CODES.LOLLIPOP)
+class PackageInstallerApkInstaller implements ApkInstaller {
+    // PendingIntent.FLAG_MUTABLE, required on API 31+ so the installer can add the status extras
+    private static final int FLAG_MUTABLE = 0x02000000;
+
+    private Context context;
+
+    public PackageInstallerApkInstaller(Context context) {
+        this.context = context.getApplicationContext();
+    }
+
+    @Override
+    public ApkInstaller.Session openSession(long size) throws IOException {
+        final PackageInstaller packageInstaller = context.getPackageManager().getPackageInstaller();
+        PackageInstaller.SessionParams params = new PackageInstaller.SessionParams(PackageInstaller.SessionParams.MODE_FULL_INSTALL);
+        params.setAppPackageName(context.getPackageName());
+        if (size > 0) {
+            params.setSize(size);
+        }
+
+        final int sessionId = packageInstaller.createSession(params);
+        final PackageInstaller.Session session = packageInstaller.openSession(sessionId);
+
+        return new ApkInstaller.Session() {
+            @Override
+            public OutputStream openWrite(long size) throws IOException {
+                final OutputStream out = session.openWrite("base.apk", 0, size);
+                return new FilterOutputStream(out) {
+                    @Override
+                    public void write(byte[] b, int off, int len) throws IOException {
+                        out.write(b, off, len);
+                    }
+
+                    @Override
+                    public void close() throws IOException {
+                        session.fsync(out);
+                        super.close();
+                    }
+                };
+            }
+
+            @Override
+            public void commit() {
+                int flags = PendingIntent.FLAG_UPDATE_CURRENT | (Build.VERSION.SDK_INT >= 31 ? FLAG_MUTABLE : 0);
+                Intent intent = new Intent(context, InstallReceiver.class);
+                PendingIntent pendingIntent = PendingIntent.getBroadcast(context, sessionId, intent, flags);
+                session.commit(pendingIntent.getIntentSender());
+                session.close();
+            }
+
+            @Override
+            public void abandon() {
+                session.abandon();
+            }
+        };
+    }
+
+}
@@ -0,0 +1,222 @@
+package com.github.javiersantos.appupdate;
+
+import android.content.Context;
+import android.util.JsonReader;
+import android.util.Log;
+
+import com.github.javiersantos.appupdate.objects.Update;
+import com.github.javiersantos.appupdate.objects.UpdateSelector;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.Map;
+import java.util.SortedMap;
+
+import okhttp3.FormBody;
+import okhttp3.HttpUrl;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Reads the updates of many packages from a single response:
+ * <pre>{"packages": {"com.example.app": {"latestVersion": "1.2.0", "url": "..."}, ...}}</pre>
+ * Each entry has the same fields as the JSON updater file. The installed versionCodes are sent as
+ * {@code packages=com.example.app:41,com.example.other:7}, sorted, in the query string so the whole batch is
+ * cached and revalidated as one response. Lists too long for a url are sent in a POST body, which is not cached.
+ * The entries are handed to the callback as they are read, only one entry at a time is held in memory.
+ * <p>
+ * For a delta sync the token of the previous response is sent as {@code since}. If the server knows it,
+ * the response has {@code "delta": true} and only the packages whose latest version changed since then.
+ * Either way the response can have a new {@code "syncToken"} for the next sync.
+ */
+class ParserBatch {
+    private static final String KEY_PACKAGES = "packages";
+    private static final String KEY_SINCE = "since";
+    private static final String KEY_DELTA = "delta";
+    private static final String KEY_SYNC_TOKEN = "syncToken";
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private Context context;
+    private URL batchUrl;
+    private SortedMap<String, Integer> installedVersionCodes;
+    private UpdateSelector selector;
+    private String since;
+    private boolean delta;
+    private String syncToken;
+
+    interface Callback {
+        void onPackage(String packageName, Update update);
+
+        void onPackageError(String packageName);
+    }
+
+    ParserBatch(Context context, URL batchUrl, SortedMap<String, Integer> installedVersionCodes, UpdateSelector selector) {
+        this.context = context;
+        this.batchUrl = batchUrl;
+        this.installedVersionCodes = installedVersionCodes;
+        this.selector = UtilsLibrary.getUpdateSelector(selector);
+    }
+
+    /**
+     * @param since token of the previous response, or null for a full sync
+     */
+    ParserBatch setSince(String since) {
+        this.since = since;
+        return this;
+    }
+
+    /**
+     * @return true if the response only has the packages that changed since the token sent
+     */
+    boolean isDelta() {
+        return delta;
+    }
+
+    /**
+     * @return token to send in the next sync, or null if the server has none
+     */
+    String getSyncToken() {
+        return syncToken;
+    }
+
+    /**
+     * @throws IOException   if the server can't be reached or the response is cut
+     * @throws JSONException if the response is not a batch response
+     */
+    void parse(Callback callback) throws IOException, JSONException {
+        Response response = UtilsLibrary.execute(context, getRequest());
+        JsonReader reader = null;
+        try {
+            reader = new JsonReader(new InputStreamReader(UtilsLibrary.getBody(response, Config.BATCH_MAX_BYTES), UTF_8));
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if (name.equals(KEY_PACKAGES)) {
+                    readPackages(reader, callback);
+                } else if (name.equals(KEY_DELTA)) {
+                    // Only a delta of the token that was sent
+                    delta = reader.nextBoolean() && since != null;
+                } else if (name.equals(KEY_SYNC_TOKEN)) {
+                    syncToken = reader.nextString();
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        } catch (IllegalStateException | NumberFormatException e) {
+            throw new JSONException("Malformed batch response: " + e.getMessage());
+        } finally {
+            if (reader != null) {
+                reader.close();
+            }
+            response.close();
+        }
+    }
+
+    private void readPackages(JsonReader reader, Callback callback) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String packageName = reader.nextName();
+            if (!installedVersionCodes.containsKey(packageName)) {
+                reader.skipValue();
+                continue;
+            }
+
+            // Copied as a whole before it is read, so a mal-formatted entry doesn't leave the reader in the middle of it
+            String entry = copyValue(reader, new StringBuilder()).toString();
+            Update update;
+            try {
+                update = ParserJSON.readUpdate(new JsonReader(new StringReader(entry)));
+            } catch (JSONException | IOException | IllegalStateException | NumberFormatException e) {
+                Log.e("AppUpdater", "The entry of " + packageName + " in the batch response is mal-formatted.");
+                callback.onPackageError(packageName);
+                continue;
+            }
+            UtilsLibrary.setBestArtifact(update, selector);
+            callback.onPackage(packageName, update);
+        }
+        reader.endObject();
+    }
+
+    /**
+     * Appends the next value of the reader as JSON, whatever its fields are.
+     */
+    private static StringBuilder copyValue(JsonReader reader, StringBuilder out) throws IOException {
+        switch (reader.peek()) {
+            case BEGIN_OBJECT:
+                reader.beginObject();
+                out.append('{');
+                while (reader.hasNext()) {
+                    if (out.charAt(out.length() - 1) != '{') {
+                        out.append(',');
+                    }
+                    out.append(JSONObject.quote(reader.nextName())).append(':');
+                    copyValue(reader, out);
+                }
+                reader.endObject();
+                return out.append('}');
+            case BEGIN_ARRAY:
+                reader.beginArray();
+                out.append('[');
+                while (reader.hasNext()) {
+                    if (out.charAt(out.length() - 1) != '[') {
+                        out.append(',');
+                    }
+                    copyValue(reader, out);
+                }
+                reader.endArray();
+                return out.append(']');
+            case STRING:
+                return out.append(JSONObject.quote(reader.nextString()));
+            case NUMBER:
+                // Kept as written, the entry reader parses it
+                return out.append(reader.nextString());
+            case BOOLEAN:
+                return out.append(reader.nextBoolean());
+            case NULL:
+                reader.nextNull();
+                return out.append("null");
+            default:
+                throw new IllegalStateException("Unexpected " + reader.peek());
+        }
+    }
+
+    private Request getRequest() {
+        String packages = getPackagesParameter();
+        HttpUrl.Builder url = HttpUrl.get(batchUrl.toString()).newBuilder().addQueryParameter(KEY_PACKAGES, packages);
+        if (since != null) {
+            url.addQueryParameter(KEY_SINCE, since);
+        }
+        HttpUrl getUrl = url.build();
+        if (getUrl.toString().length() <= Config.BATCH_MAX_URL_LENGTH) {
+            return new Request.Builder().url(getUrl).build();
+        }
+
+        FormBody.Builder form = new FormBody.Builder().add(KEY_PACKAGES, packages);
+        if (since != null) {
+            form.add(KEY_SINCE, since);
+        }
+        return new Request.Builder()
+                .url(batchUrl)
+                .post(form.build())
+                .build();
+    }
+
+    private String getPackagesParameter() {
+        StringBuilder builder = new StringBuilder();
+        for (Map.Entry<String, Integer> entry : installedVersionCodes.entrySet()) {
+            if (builder.length() > 0) {
+                builder.append(',');
+            }
+            builder.append(entry.getKey()).append(':').append(entry.getValue());
+        }
+        return builder.toString();
+    }
+
+}
@@ -0,0 +1,274 @@
+package com.github.javiersantos.appupdate;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import com.github.javiersantos.appupdate.objects.Artifact;
+import com.github.javiersantos.appupdate.objects.Update;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ConnectException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.UnknownHostException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+
+import okhttp3.Response;
+
+/**
+ * Reader for the binary update file written by {@link WriterBinary}. <br/>
+ * Layout: the "AUB" magic, a format version byte and a list of fields. Every field is a varint tag,
+ * a varint length and the payload, so unknown tags can be skipped by older readers.
+ */
+class ParserBinary {
+    static final byte[] MAGIC = {'A', 'U', 'B'};
+    static final int FORMAT_VERSION = 1;
+
+    static final int TAG_LATEST_VERSION = 1;
+    static final int TAG_LATEST_VERSION_CODE = 2;
+    static final int TAG_RELEASE_NOTES = 3;
+    static final int TAG_URL = 4;
+    static final int TAG_CHECK_INTERVAL = 5;
+    static final int TAG_ARTIFACT = 6;
+    static final int TAG_CHANGELOG_URL = 7;
+    static final int TAG_RELEASE_NOTES_URL = 8;
+    static final int TAG_SHA256 = 9;
+
+    // Fields of a TAG_ARTIFACT payload
+    static final int TAG_ARTIFACT_ABI = 1;
+    static final int TAG_ARTIFACT_DENSITY = 2;
+    static final int TAG_ARTIFACT_URL = 3;
+    static final int TAG_ARTIFACT_SIZE = 4;
+    static final int TAG_ARTIFACT_SHA256 = 5;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final int MAX_SIZE = (int) Config.UPDATE_FILE_MAX_BYTES;
+
+    private Context context;
+    private URL binaryUrl;
+
+    // Decoder state, only valid during decode()
+    private byte[] buffer;
+    private int position;
+    private int limit;
+
+    /**
+     * Only for decode(), e.g. of a file read from the disk cache.
+     */
+    ParserBinary() {}
+
+    public ParserBinary(Context context, String url) {
+        this.context = context;
+        try {
+            this.binaryUrl = new URL(url);
+        } catch (MalformedURLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Nullable
+    public Update parse() {
+        Response response = null;
+
+        try {
+            response = UtilsLibrary.get(context, binaryUrl);
+            int length = readFully(UtilsLibrary.getBody(response, MAX_SIZE), (int) response.body().contentLength());
+
+            Update update = decode(buffer, length);
+            Integer maxAge = UtilsLibrary.getMaxAge(response.header("Cache-Control"));
+            if (update != null && maxAge != null) {
+                update.setCheckInterval(UtilsLibrary.getCheckInterval(maxAge, update.getCheckInterval()));
+            }
+            return update;
+        } catch (FileNotFoundException | UnknownHostException | ConnectException e) {
+            Log.e("AppUpdater", "The binary updater file is invalid or is down. AppUpdate can't check for updates.");
+            return null;
+        } catch (IOException e) {
+            Log.e("AppUpdater", "I/O error. AppUpdate can't check for updates.", e);
+            return null;
+        } finally {
+            buffer = null;
+            if (response != null) {
+                response.close();
+            }
+        }
+    }
+
+    /**
+     * Decodes the fields straight from the buffer into an Update, without intermediate objects.
+     *
+     * @return the update, or null if the content is not a valid binary updater file
+     */
+    @Nullable
+    Update decode(byte[] data, int length) {
+        buffer = data;
+        position = 0;
+        limit = length;
+
+        if (limit < MAGIC.length + 1) {
+            Log.e("AppUpdater", "The binary updater file is mal-formatted. AppUpdate can't check for updates.");
+            return null;
+        }
+        for (byte b : MAGIC) {
+            if (buffer[position++] != b) {
+                Log.e("AppUpdater", "The binary updater file is mal-formatted. AppUpdate can't check for updates.");
+                return null;
+            }
+        }
+        if ((buffer[position++] & 0xFF) > FORMAT_VERSION) {
+            Log.e("AppUpdater", "The binary updater file uses a newer format. AppUpdate can't check for updates.");
+            return null;
+        }
+
+        try {
+            Update update = new Update();
+            while (position < limit) {
+                int tag = readVarint();
+                int size = readVarint();
+                // Compared to the bytes left, position + size overflows for huge sizes
+                if (size < 0 || size > limit - position) {
+                    throw new IllegalStateException("Field " + tag + " exceeds the file length");
+                }
+                int end = position + size;
+
+                switch (tag) {
+                    case TAG_LATEST_VERSION:
+                        update.setLatestVersion(new String(buffer, position, size, UTF_8).trim());
+                        break;
+                    case TAG_LATEST_VERSION_CODE:
+                        update.setLatestVersionCode(readVarint());
+                        break;
+                    case TAG_RELEASE_NOTES:
+                        update.setReleaseNotes(new String(buffer, position, size, UTF_8));
+                        break;
+                    case TAG_URL:
+                        update.setUrlToDownload(new URL(new String(buffer, position, size, UTF_8).trim()));
+                        break;
+                    case TAG_CHECK_INTERVAL:
+                        update.setCheckInterval(readVarint());
+                        break;
+                    case TAG_CHANGELOG_URL:
+                        update.setChangelogUrl(new URL(new String(buffer, position, size, UTF_8).trim()));
+                        break;
+                    case TAG_RELEASE_NOTES_URL:
+                        update.setReleaseNotesUrl(new String(buffer, position, size, UTF_8).trim());
+                        break;
+                    case TAG_SHA256:
+                        update.setSha256(new String(buffer, position, size, UTF_8).trim());
+                        break;
+                    case TAG_ARTIFACT:
+                        if (update.getArtifacts() == null) {
+                            update.setArtifacts(new ArrayList<Artifact>());
+                        }
+                        update.getArtifacts().add(readArtifact(end));
+                        break;
+                }
+                position = end;
+            }
+
+            if (update.getLatestVersion() == null) {
+                throw new IllegalStateException("Missing latest version");
+            }
+            return update;
+        } catch (MalformedURLException | IllegalStateException e) {
+            Log.e("AppUpdater", "The binary updater file is mal-formatted. AppUpdate can't check for updates.", e);
+            return null;
+        }
+    }
+
+    private Artifact readArtifact(int end) throws MalformedURLException {
+        String abi = null, density = null, sha256 = null;
+        URL url = null;
+        Long artifactSize = null;
+
+        while (position < end) {
+            int tag = readVarint();
+            int size = readVarint();
+            if (size < 0 || size > end - position) {
+                throw new IllegalStateException("Artifact field " + tag + " exceeds the artifact length");
+            }
+            int fieldEnd = position + size;
+
+            switch (tag) {
+                case TAG_ARTIFACT_ABI:
+                    abi = new String(buffer, position, size, UTF_8);
+                    break;
+                case TAG_ARTIFACT_DENSITY:
+                    density = new String(buffer, position, size, UTF_8);
+                    break;
+                case TAG_ARTIFACT_URL:
+                    url = new URL(new String(buffer, position, size, UTF_8).trim());
+                    break;
+                case TAG_ARTIFACT_SIZE:
+                    artifactSize = readVarintLong();
+                    break;
+                case TAG_ARTIFACT_SHA256:
+                    sha256 = new String(buffer, position, size, UTF_8).trim();
+                    break;
+            }
+            position = fieldEnd;
+        }
+
+        if (url == null) {
+            throw new IllegalStateException("Missing artifact url");
+        }
+        Artifact artifact = new Artifact(abi, density, url, artifactSize);
+        artifact.setSha256(sha256);
+        return artifact;
+    }
+
+    private int readVarint() {
+        return (int) readVarintLong();
+    }
+
+    private long readVarintLong() {
+        long result = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            if (position >= limit) {
+                throw new IllegalStateException("Truncated varint");
+            }
+            byte b = buffer[position++];
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+        throw new IllegalStateException("Malformed varint");
+    }
+
+    private int readFully(InputStream inputStream, int contentLength) throws IOException {
+        buffer = new byte[contentLength > 0 && contentLength <= MAX_SIZE ? contentLength : 512];
+        int length = 0;
+
+        while (true) {
+            if (length == buffer.length) {
+                // Only grow if there is really more data, the Content-Length is usually exact
+                int next = inputStream.read();
+                if (next == -1) {
+                    break;
+                }
+                if (buffer.length >= MAX_SIZE) {
+                    throw BoundedInputStream.tooLarge(MAX_SIZE);
+                }
+                byte[] grown = new byte[Math.min(buffer.length * 2, MAX_SIZE)];
+                System.arraycopy(buffer, 0, grown, 0, length);
+                buffer = grown;
+                buffer[length++] = (byte) next;
+            }
+
+            int read = inputStream.read(buffer, length, buffer.length - length);
+            if (read == -1) {
+                break;
+            }
+            length += read;
+        }
+
+        return length;
+    }
+
+}
@@ -0,0 +1,149 @@
+package com.github.javiersantos.appupdate;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import com.github.javiersantos.appupdate.objects.Update;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import okhttp3.Response;
+
+/**
+ * Reads one page of the changelog between the installed and the latest version. <br/>
+ * The request is {@code changelogUrl?from=<installed versionCode>&to=<latest versionCode>&page=<n>} and the response
+ * {@code {"entries": [{"version": "1.2", "versionCode": 12, "releaseNotes": ["..."]}], "nextPage": 2}}.
+ * Pages are cached on disk: the notes of released versions don't change, so they are only downloaded once.
+ */
+class ParserChangelog {
+    private static final String KEY_ENTRIES = "entries";
+    private static final String KEY_NEXT_PAGE = "nextPage";
+    private static final String KEY_VERSION = "version";
+    private static final String KEY_VERSION_CODE = "versionCode";
+    private static final String KEY_RELEASE_NOTES = "releaseNotes";
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private Context context;
+    private URL changelogUrl;
+    private File cacheDir;
+    private Integer from;
+    private Integer to;
+    private Integer nextPage;
+
+    public ParserChangelog(Context context, URL changelogUrl, Integer from, Integer to) {
+        this.context = context;
+        this.changelogUrl = changelogUrl;
+        this.cacheDir = new File(context.getCacheDir(), Config.CACHE_DIR);
+        this.from = from;
+        this.to = to;
+    }
+
+    /**
+     * @return the next page to request after the last parse(), or null if it was the last one
+     */
+    public Integer getNextPage() {
+        return nextPage;
+    }
+
+    @Nullable
+    public List<Update> parse(Integer page) {
+        nextPage = null;
+
+        File cached = new File(cacheDir, getCacheName(page));
+        try {
+            boolean fromCache = cached.exists();
+            byte[] content = fromCache ? UtilsLibrary.readAll(new FileInputStream(cached), cached.length()) : downloadPage(page);
+
+            // Validated before it is cached, a broken page is downloaded again on the next check
+            JSONObject json = new JSONObject(new String(content, UTF_8));
+            JSONArray entries = json.getJSONArray(KEY_ENTRIES);
+            List<Update> updates = new ArrayList<>(entries.length());
+            for (int i = 0; i < entries.length(); i++) {
+                JSONObject entry = entries.getJSONObject(i);
+                Update update = new Update(entry.getString(KEY_VERSION).trim(), entry.optInt(KEY_VERSION_CODE));
+                JSONArray releaseArr = entry.optJSONArray(KEY_RELEASE_NOTES);
+                if (releaseArr != null) {
+                    StringBuilder builder = new StringBuilder();
+                    for (int j = 0; j < releaseArr.length(); ++j) {
+                        builder.append(releaseArr.getString(j).trim());
+                        if (j != releaseArr.length() - 1)
+                            builder.append(System.getProperty("line.separator"));
+                    }
+                    update.setReleaseNotes(builder.toString());
+                }
+                updates.add(update);
+            }
+            if (json.has(KEY_NEXT_PAGE) && !json.isNull(KEY_NEXT_PAGE)) {
+                nextPage = json.getInt(KEY_NEXT_PAGE);
+            }
+
+            if (!fromCache) {
+                savePage(cached, content);
+            }
+            return updates;
+        } catch (IOException e) {
+            Log.e("AppUpdater", "The changelog can't be downloaded.", e);
+        } catch (JSONException e) {
+            Log.e("AppUpdater", "The changelog file is mal-formatted.");
+            cached.delete();
+        }
+
+        return null;
+    }
+
+    private byte[] downloadPage(Integer page) throws IOException {
+        String query = "from=" + from + (to != null && to > 0 ? "&to=" + to : "") + "&page=" + page;
+        URL url = new URL(changelogUrl.toString() + (changelogUrl.getQuery() == null ? "?" : "&") + query);
+        Response response = UtilsLibrary.get(context, url);
+        try {
+            return UtilsLibrary.readAll(UtilsLibrary.getBody(response, Config.CHANGELOG_PAGE_MAX_BYTES), response.body().contentLength());
+        } finally {
+            response.close();
+        }
+    }
+
+    private void savePage(File cached, byte[] content) {
+        // Only the pages of the current range are worth keeping
+        if (to == null || to <= 0 || !(cacheDir.isDirectory() || cacheDir.mkdirs())) {
+            return;
+        }
+
+        deleteOtherRanges();
+        try {
+            UtilsLibrary.writeFile(cached, content);
+        } catch (IOException e) {
+            Log.e("AppUpdater", "The changelog page can't be cached.", e);
+        }
+    }
+
+    private void deleteOtherRanges() {
+        File[] files = cacheDir.listFiles();
+        if (files == null) {
+            return;
+        }
+
+        String prefix = getCacheName(null);
+        for (File file : files) {
+            if (file.getName().startsWith("changelog_") && !file.getName().startsWith(prefix)) {
+                file.delete();
+            }
+        }
+    }
+
+    private String getCacheName(Integer page) {
+        return "changelog_" + Integer.toHexString(changelogUrl.toString().hashCode()) + "_" + from + "_" + to + "_" + (page == null ? "" : page + ".json");
+    }
+
+}
@@ -0,0 +1,140 @@
+package com.github.javiersantos.appupdate;
+
+import android.content.Context;
+import android.util.JsonReader;
+import android.util.JsonToken;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import com.github.javiersantos.appupdate.objects.GitHub;
+import com.github.javiersantos.appupdate.objects.Update;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.Locale;
+
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Reads the latest release from the GitHub API. <br/>
+ * The response is streamed and only tag_name, body, html_url and the url and size of the first APK asset are kept.
+ * Requests go through the shared HTTP cache, so repeated checks are conditional (If-None-Match) and a 304 doesn't
+ * count against the rate limit.
+ */
+class ParserGitHub {
+    private static final String KEY_TAG_NAME = "tag_name";
+    private static final String KEY_BODY = "body";
+    private static final String KEY_HTML_URL = "html_url";
+    private static final String KEY_ASSETS = "assets";
+    private static final String KEY_ASSET_NAME = "name";
+    private static final String KEY_ASSET_URL = "browser_download_url";
+    private static final String KEY_ASSET_SIZE = "size";
+
+    private Context context;
+    private GitHub gitHub;
+
+    public ParserGitHub(Context context, GitHub gitHub) {
+        this.context = context;
+        this.gitHub = gitHub;
+    }
+
+    @Nullable
+    public Update parse() {
+        Request.Builder builder = new Request.Builder()
+                .url((gitHub.getApiUrl() != null ? gitHub.getApiUrl() : Config.GITHUB_API_URL) + "repos/" + gitHub.getGitHubUser() + "/" + gitHub.getGitHubRepo() + "/releases/latest")
+                .header("Accept", "application/vnd.github.v3+json");
+        if (gitHub.getToken() != null) {
+            builder.header("Authorization", "token " + gitHub.getToken());
+        }
+
+        Response response = null;
+        try {
+            response = UtilsLibrary.getHttpClient(context).newCall(builder.build()).execute();
+            if (response.code() == 404) {
+                Log.e("AppUpdater", "App wasn't found in the provided source. Is it published?");
+                return null;
+            } else if (response.code() == 403) {
+                Log.e("AppUpdater", "GitHub API rate limit exceeded. Set a token to raise it.");
+                return null;
+            } else if (!response.isSuccessful()) {
+                Log.e("AppUpdater", "GitHub API returned HTTP " + response.code());
+                return null;
+            }
+
+            Update update = readRelease(new JsonReader(new InputStreamReader(UtilsLibrary.getBody(response, Config.GITHUB_RELEASE_MAX_BYTES), Charset.forName("UTF-8"))));
+            update.setCheckInterval(UtilsLibrary.getMaxAge(response.header("Cache-Control")));
+            return update;
+        } catch (IOException | IllegalStateException | NumberFormatException e) {
+            Log.e("AppUpdater", "The GitHub release can't be read. AppUpdate can't check for updates.", e);
+            return null;
+        } finally {
+            if (response != null) {
+                response.close();
+            }
+        }
+    }
+
+    private Update readRelease(JsonReader reader) throws IOException {
+        String tagName = null, body = null, htmlUrl = null, apkUrl = null;
+        Long apkSize = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.skipValue();
+            } else if (name.equals(KEY_TAG_NAME)) {
+                tagName = reader.nextString().trim();
+            } else if (name.equals(KEY_BODY)) {
+                body = reader.nextString().trim();
+            } else if (name.equals(KEY_HTML_URL)) {
+                htmlUrl = reader.nextString();
+            } else if (name.equals(KEY_ASSETS)) {
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    String assetName = null, assetUrl = null;
+                    Long assetSize = null;
+
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        String assetKey = reader.nextName();
+                        if (assetKey.equals(KEY_ASSET_NAME)) {
+                            assetName = reader.nextString();
+                        } else if (assetKey.equals(KEY_ASSET_URL)) {
+                            assetUrl = reader.nextString();
+                        } else if (assetKey.equals(KEY_ASSET_SIZE)) {
+                            assetSize = reader.nextLong();
+                        } else {
+                            reader.skipValue();
+                        }
+                    }
+                    reader.endObject();
+
+                    if (apkUrl == null && assetName != null && assetName.toLowerCase(Locale.ROOT).endsWith(".apk")) {
+                        apkUrl = assetUrl;
+                        apkSize = assetSize;
+                    }
+                }
+                reader.endArray();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        if (tagName == null) {
+            throw new IllegalStateException("Missing " + KEY_TAG_NAME);
+        }
+        // Some repos tag their releases as vX.X.X
+        String version = tagName.startsWith("v") ? tagName.substring(1).trim() : tagName;
+
+        Update update = new Update(version, body, new URL(apkUrl != null ? apkUrl : htmlUrl));
+        update.setDownloadSize(apkSize);
+        return update;
+    }
+
+}
@@ -0,0 +1,308 @@
+package com.github.javiersantos.appupdate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Minimal streaming HTML scanner to pick a single text node out of a store page. <br/>
+ * Only the open elements are tracked, nothing else is kept in memory, and reading stops as soon as the node is found.
+ * The content of script and style elements and comments is skipped.
+ */
+class ParserHTML {
+    private static final List<String> VOID_ELEMENTS = Arrays.asList("area", "base", "br", "col", "embed", "hr", "img",
+            "input", "link", "meta", "param", "source", "track", "wbr");
+
+    private Reader reader;
+    private int peeked = -1;
+
+    // Open elements and whether each one has the ancestor class
+    private List<String> openNames = new ArrayList<>();
+    private List<Boolean> openAncestors = new ArrayList<>();
+    private int ancestorDepth;
+
+    public ParserHTML(InputStream inputStream) {
+        this.reader = new BufferedReader(new InputStreamReader(inputStream, Charset.forName("UTF-8")), 8192);
+    }
+
+    /**
+     * Equivalent to Jsoup's {@code select(".ancestorClass .className").get(position).ownText()},
+     * except that only the text before the first child element is returned.
+     *
+     * @return the text, or null if there are not enough matching elements
+     */
+    public String findText(String ancestorClass, String className, int position) throws IOException {
+        int matches = 0;
+        int c;
+
+        while ((c = read()) != -1) {
+            if (c != '<') {
+                continue;
+            }
+
+            c = read();
+            if (c == '!' || c == '?') {
+                skipDeclaration(c);
+            } else if (c == '/') {
+                closeElement(readName(read()));
+            } else if (isLetter(c)) {
+                String name = readName(c);
+                String classes = readAttributes();
+                boolean selfClosing = peeked == '/';
+                peeked = -1;
+
+                if (name.equals("script") || name.equals("style")) {
+                    skipRawText(name);
+                    continue;
+                }
+
+                if (hasClass(classes, className) && (ancestorClass == null || ancestorDepth > 0)) {
+                    if (matches++ == position) {
+                        return readText();
+                    }
+                }
+
+                if (!selfClosing && !VOID_ELEMENTS.contains(name)) {
+                    boolean isAncestor = ancestorClass != null && hasClass(classes, ancestorClass);
+                    openNames.add(name);
+                    openAncestors.add(isAncestor);
+                    if (isAncestor) {
+                        ancestorDepth++;
+                    }
+                }
+            }
+        }
+
+        return null;
+    }
+
+    private void closeElement(String name) throws IOException {
+        skipUntil('>');
+
+        int index = openNames.lastIndexOf(name);
+        if (index == -1) {
+            return;
+        }
+        // Closing an element also closes the unclosed ones inside it
+        for (int i = openNames.size() - 1; i >= index; i--) {
+            openNames.remove(i);
+            if (openAncestors.remove(i)) {
+                ancestorDepth--;
+            }
+        }
+    }
+
+    private String readName(int c) throws IOException {
+        StringBuilder builder = new StringBuilder();
+        while (c != -1 && (isLetter(c) || Character.isDigit(c) || c == '-' || c == ':')) {
+            builder.append(Character.toLowerCase((char) c));
+            c = read();
+        }
+        peeked = c;
+        return builder.toString();
+    }
+
+    /**
+     * Reads the attributes up to the end of the start tag.
+     * On return, peeked is '/' if the tag was self-closing.
+     *
+     * @return value of the class attribute, or null
+     */
+    private String readAttributes() throws IOException {
+        String classes = null;
+        boolean selfClosing = false;
+        int c = read();
+
+        while (c != -1 && c != '>') {
+            if (Character.isWhitespace(c)) {
+                c = read();
+            } else if (c == '/') {
+                selfClosing = true;
+                c = read();
+            } else {
+                selfClosing = false;
+                StringBuilder name = new StringBuilder();
+                while (c != -1 && c != '=' && c != '>' && c != '/' && !Character.isWhitespace(c)) {
+                    name.append(Character.toLowerCase((char) c));
+                    c = read();
+                }
+                while (c != -1 && Character.isWhitespace(c)) {
+                    c = read();
+                }
+                if (c != '=') {
+                    continue;
+                }
+
+                c = read();
+                while (c != -1 && Character.isWhitespace(c)) {
+                    c = read();
+                }
+                StringBuilder value = new StringBuilder();
+                if (c == '"' || c == '\'') {
+                    int quote = c;
+                    while ((c = read()) != -1 && c != quote) {
+                        value.append((char) c);
+                    }
+                    c = read();
+                } else {
+                    while (c != -1 && c != '>' && !Character.isWhitespace(c)) {
+                        value.append((char) c);
+                        c = read();
+                    }
+                }
+                if (name.toString().equals("class")) {
+                    classes = value.toString();
+                }
+            }
+        }
+
+        peeked = selfClosing ? '/' : -1;
+        return classes;
+    }
+
+    private String readText() throws IOException {
+        StringBuilder builder = new StringBuilder();
+        int c;
+        while ((c = read()) != -1 && c != '<') {
+            builder.append((char) c);
+        }
+        return decodeEntities(builder.toString()).replaceAll("\\s+", " ").trim();
+    }
+
+    /**
+     * Decodes the numeric character references and the named ones found in store pages.
+     * Other references are kept as they are.
+     */
+    static String decodeEntities(String text) {
+        int ampersand = text.indexOf('&');
+        if (ampersand == -1) {
+            return text;
+        }
+
+        StringBuilder builder = new StringBuilder(text.length());
+        int start = 0;
+        while (ampersand != -1) {
+            int semicolon = text.indexOf(';', ampersand);
+            if (semicolon == -1) {
+                break;
+            }
+
+            String entity = text.substring(ampersand + 1, semicolon);
+            int codePoint = getCodePoint(entity);
+            if (codePoint != -1) {
+                builder.append(text, start, ampersand).appendCodePoint(codePoint);
+                start = semicolon + 1;
+                ampersand = text.indexOf('&', start);
+            } else {
+                ampersand = text.indexOf('&', ampersand + 1);
+            }
+        }
+        return builder.append(text, start, text.length()).toString();
+    }
+
+    /**
+     * @return the character of the reference without '&' and ';', or -1 if it isn't known
+     */
+    private static int getCodePoint(String entity) {
+        if (entity.startsWith("#")) {
+            try {
+                int codePoint = entity.startsWith("#x") || entity.startsWith("#X")
+                        ? Integer.parseInt(entity.substring(2), 16)
+                        : Integer.parseInt(entity.substring(1));
+                return Character.isValidCodePoint(codePoint) && codePoint != 0 ? codePoint : -1;
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+        }
+
+        switch (entity) {
+            case "amp":
+                return '&';
+            case "lt":
+                return '<';
+            case "gt":
+                return '>';
+            case "quot":
+                return '"';
+            case "apos":
+                return '\'';
+            case "nbsp":
+                return '\u00a0';
+            default:
+                return -1;
+        }
+    }
+
+    private void skipDeclaration(int c) throws IOException {
+        if (c == '!') {
+            int first = read();
+            int second = first == '-' ? read() : -1;
+            if (first == '-' && second == '-') {
+                // Comment, ends with -->
+                int dashes = 0;
+                while ((c = read()) != -1) {
+                    if (c == '>' && dashes >= 2) {
+                        return;
+                    }
+                    dashes = c == '-' ? dashes + 1 : 0;
+                }
+                return;
+            }
+        }
+        skipUntil('>');
+    }
+
+    private void skipRawText(String name) throws IOException {
+        String end = "</" + name;
+        int matched = 0;
+        int c;
+        while ((c = read()) != -1) {
+            if (Character.toLowerCase(c) == end.charAt(matched)) {
+                if (++matched == end.length()) {
+                    skipUntil('>');
+                    return;
+                }
+            } else {
+                matched = c == '<' ? 1 : 0;
+            }
+        }
+    }
+
+    private void skipUntil(int end) throws IOException {
+        int c;
+        while ((c = read()) != -1 && c != end) {
+        }
+    }
+
+    private int read() throws IOException {
+        if (peeked != -1) {
+            int c = peeked;
+            peeked = -1;
+            return c;
+        }
+        return reader.read();
+    }
+
+    private static boolean isLetter(int c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private static boolean hasClass(String classes, String className) {
+        if (classes == null) {
+            return false;
+        }
+        for (String item : classes.split("\\s+")) {
+            if (item.equals(className)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
@@ -1,86 +1,283 @@
 package com.github.javiersantos.appupdate;
 
+import android.content.Context;
+import android.util.JsonReader;
+import android.util.JsonToken;
 import android.util.Log;
 
+import com.github.javiersantos.appupdate.objects.Artifact;
 import com.github.javiersantos.appupdate.objects.Update;
+import com.github.javiersantos.appupdate.objects.UpdateSelector;
 
-import org.json.JSONArray;
 import org.json.JSONException;
-import org.json.JSONObject;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.Reader;
+import java.io.StringReader;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
 
+import okhttp3.Response;
+
+/**
+ * Reads either a single update or a multi-variant file with an "updates" array. <br/>
+ * For multi-variant files a first pass only reads the channel, abi, minSdk and locale of every entry,
+ * and the second pass skips straight to the best entry for the selector, so the others are never built.
+ */
 class ParserJSON {
+    private Context context;
     private URL jsonUrl;
+    private UpdateSelector selector;
+    private Integer maxAge;
 
     private static final String KEY_LATEST_VERSION = "latestVersion";
     private static final String KEY_LATEST_VERSION_CODE = "latestVersionCode";
     private static final String KEY_RELEASE_NOTES = "releaseNotes";
     private static final String KEY_URL = "url";
+    private static final String KEY_CHECK_INTERVAL = "checkInterval";
+    private static final String KEY_UPDATES = "updates";
+    private static final String KEY_CHANNEL = "channel";
+    private static final String KEY_ABI = "abi";
+    private static final String KEY_MIN_SDK = "minSdk";
+    private static final String KEY_LOCALE = "locale";
+    private static final String KEY_ARTIFACTS = "artifacts";
+    private static final String KEY_DENSITY = "density";
+    private static final String KEY_SIZE = "size";
+    private static final String KEY_SHA256 = "sha256";
+    private static final String KEY_CHANGELOG_URL = "changelogUrl";
+    private static final String KEY_RELEASE_NOTES_URL = "releaseNotesUrl";
+
+    public ParserJSON(Context context, String url) {
+        this(context, url, null);
+    }
 
-    public ParserJSON(String url) {
+    public ParserJSON(Context context, String url, UpdateSelector selector) {
+        this.context = context;
         try {
             this.jsonUrl = new URL(url);
         } catch (MalformedURLException e) {
             throw new RuntimeException(e);
         }
-
+        this.selector = UtilsLibrary.getUpdateSelector(selector);
     }
 
     public Update parse(){
 
         try {
-            JSONObject json = readJsonFromUrl();
-            Update update = new Update();
-            update.setLatestVersion(json.getString(KEY_LATEST_VERSION).trim());
-            update.setLatestVersionCode(json.optInt(KEY_LATEST_VERSION_CODE));
-            JSONArray releaseArr = json.optJSONArray(KEY_RELEASE_NOTES);
-            if (releaseArr != null) {
-                StringBuilder builder = new StringBuilder();
-                for (int i = 0; i < releaseArr.length(); ++i) {
-                    builder.append(releaseArr.getString(i).trim());
-                    if (i != releaseArr.length() - 1)
-                        builder.append(System.getProperty("line.separator"));
-                }
-                update.setReleaseNotes(builder.toString());
+            String jsonText = readJsonFromUrl();
+            Integer variant = findVariant(jsonText);
+            Update update;
+            if (variant == null) {
+                update = toUpdate(jsonText);
+            } else if (variant == -1) {
+                Log.e("AppUpdater", "No entry of the JSON updater file matches this device. AppUpdate can't check for updates.");
+                return null;
+            } else {
+                update = readVariant(jsonText, variant);
+            }
+            if (maxAge != null) {
+                update.setCheckInterval(UtilsLibrary.getCheckInterval(maxAge, update.getCheckInterval()));
             }
-            URL url = new URL(json.getString(KEY_URL).trim());
-            update.setUrlToDownload(url);
             return update;
         } catch (IOException e) {
             Log.e("AppUpdater", "The server is down or there isn't an active Internet connection.", e);
-        } catch (JSONException e) {
+        } catch (JSONException | IllegalStateException | NumberFormatException e) {
             Log.e("AppUpdater", "The JSON updater file is mal-formatted. AppUpdate can't check for updates.");
         }
 
         return null;
     }
 
+    /**
+     * @return index of the best entry in "updates", -1 if none can be used or null if it is a single update file
+     */
+    private Integer findVariant(String jsonText) throws IOException {
+        JsonReader reader = new JsonReader(new StringReader(jsonText));
+        try {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (!reader.nextName().equals(KEY_UPDATES)) {
+                    reader.skipValue();
+                    continue;
+                }
+
+                int best = -1;
+                int bestScore = -1;
+                reader.beginArray();
+                for (int i = 0; reader.hasNext(); i++) {
+                    int score = readVariantScore(reader);
+                    if (score > bestScore) {
+                        best = i;
+                        bestScore = score;
+                    }
+                }
+                return best;
+            }
+            return null;
+        } finally {
+            reader.close();
+        }
+    }
+
+    private Integer readVariantScore(JsonReader reader) throws IOException {
+        String channel = null, abi = null, locale = null;
+        Integer minSdk = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (name.equals(KEY_CHANNEL)) {
+                channel = reader.nextString();
+            } else if (name.equals(KEY_ABI)) {
+                abi = reader.nextString();
+            } else if (name.equals(KEY_MIN_SDK)) {
+                minSdk = reader.nextInt();
+            } else if (name.equals(KEY_LOCALE)) {
+                locale = reader.nextString();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        return UtilsLibrary.getVariantScore(selector, channel, abi, minSdk, locale);
+    }
 
-    private String readAll(Reader rd) throws IOException {
-        StringBuilder sb = new StringBuilder();
-        int cp;
-        while ((cp = rd.read()) != -1) {
-            sb.append((char) cp);
+    private Update readVariant(String jsonText, int variant) throws IOException, JSONException {
+        JsonReader reader = new JsonReader(new StringReader(jsonText));
+        try {
+            reader.beginObject();
+            while (!reader.nextName().equals(KEY_UPDATES)) {
+                reader.skipValue();
+            }
+            reader.beginArray();
+            for (int i = 0; i < variant; i++) {
+                reader.skipValue();
+            }
+            return readUpdate(reader);
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Reads a single update object, also used for each package of a batch response.
+     */
+    static Update readUpdate(JsonReader reader) throws IOException, JSONException {
+        Update update = new Update();
+        String url = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (name.equals(KEY_LATEST_VERSION)) {
+                update.setLatestVersion(reader.nextString().trim());
+            } else if (name.equals(KEY_LATEST_VERSION_CODE)) {
+                update.setLatestVersionCode(reader.nextInt());
+            } else if (name.equals(KEY_RELEASE_NOTES) && reader.peek() == JsonToken.BEGIN_ARRAY) {
+                StringBuilder builder = new StringBuilder();
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    if (builder.length() > 0)
+                        builder.append(System.getProperty("line.separator"));
+                    builder.append(reader.nextString().trim());
+                }
+                reader.endArray();
+                update.setReleaseNotes(builder.toString());
+            } else if (name.equals(KEY_URL)) {
+                url = reader.nextString().trim();
+            } else if (name.equals(KEY_CHECK_INTERVAL)) {
+                update.setCheckInterval(reader.nextInt());
+            } else if (name.equals(KEY_ARTIFACTS)) {
+                update.setArtifacts(readArtifacts(reader));
+            } else if (name.equals(KEY_CHANGELOG_URL)) {
+                update.setChangelogUrl(new URL(reader.nextString().trim()));
+            } else if (name.equals(KEY_RELEASE_NOTES_URL)) {
+                update.setReleaseNotesUrl(reader.nextString().trim());
+            } else if (name.equals(KEY_SHA256)) {
+                update.setSha256(reader.nextString().trim());
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        if (update.getLatestVersion() == null || (url == null && update.getArtifacts() == null)) {
+            throw new JSONException("Missing " + KEY_LATEST_VERSION + " or " + KEY_URL);
+        }
+        if (url != null) {
+            update.setUrlToDownload(new URL(url));
+        }
+        if (update.getLatestVersionCode() == null) {
+            update.setLatestVersionCode(0);
+        }
+        return update;
+    }
+
+    private static List<Artifact> readArtifacts(JsonReader reader) throws IOException {
+        List<Artifact> artifacts = new ArrayList<>();
+
+        reader.beginArray();
+        while (reader.hasNext()) {
+            String abi = null, density = null, url = null, sha256 = null;
+            Long size = null;
+
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if (name.equals(KEY_ABI)) {
+                    abi = reader.nextString();
+                } else if (name.equals(KEY_DENSITY)) {
+                    density = reader.nextString();
+                } else if (name.equals(KEY_URL)) {
+                    url = reader.nextString().trim();
+                } else if (name.equals(KEY_SIZE)) {
+                    size = reader.nextLong();
+                } else if (name.equals(KEY_SHA256)) {
+                    sha256 = reader.nextString().trim();
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+
+            if (url != null) {
+                Artifact artifact = new Artifact(abi, density, new URL(url), size);
+                artifact.setSha256(sha256);
+                artifacts.add(artifact);
+            }
+        }
+        reader.endArray();
+
+        return artifacts;
+    }
+
+    /**
+     * Reads a single update file, with the same mapping as the entries of multi-variant files and batch responses.
+     *
+     * @throws JSONException if the content is not an update
+     */
+    static Update toUpdate(String json) throws IOException, JSONException {
+        JsonReader reader = new JsonReader(new StringReader(json));
+        try {
+            return readUpdate(reader);
+        } catch (IllegalStateException | NumberFormatException e) {
+            throw new JSONException("Malformed update: " + e.getMessage());
+        } finally {
+            reader.close();
         }
-        return sb.toString();
     }
 
-    private JSONObject readJsonFromUrl() throws IOException, JSONException {
-        InputStream is = this.jsonUrl.openStream();
+    private String readJsonFromUrl() throws IOException {
+        Response response = UtilsLibrary.get(context, jsonUrl);
+        maxAge = UtilsLibrary.getMaxAge(response.header("Cache-Control"));
         try {
-            BufferedReader rd = new BufferedReader(new InputStreamReader(is, Charset.forName("UTF-8")));
-            String jsonText = readAll(rd);
-            return new JSONObject(jsonText);
+            byte[] content = UtilsLibrary.readAll(UtilsLibrary.getBody(response, Config.UPDATE_FILE_MAX_BYTES), response.body().contentLength());
+            return new String(content, Charset.forName("UTF-8"));
         } finally {
-            is.close();
+            response.close();
         }
     }
 
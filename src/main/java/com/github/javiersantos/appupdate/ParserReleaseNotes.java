@@ -0,0 +1,156 @@
+package com.github.javiersantos.appupdate;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.Charset;
+import java.util.Locale;
+
+import okhttp3.Response;
+
+/**
+ * Reads the release notes of a single language, so the core XML/JSON file doesn't have to carry every translation. <br/>
+ * The "releaseNotesUrl" of the file is a template: {locale} is replaced by a language tag, or a locale query parameter
+ * is added if it has no placeholder. Tags are tried from the most to the least specific (pt-BR, pt, en) until one exists.
+ * The response is {@code {"releaseNotes": ["..."]}} and, once parsed, is cached on disk for the latest versionCode.
+ */
+class ParserReleaseNotes {
+    private static final String KEY_RELEASE_NOTES = "releaseNotes";
+    private static final String PLACEHOLDER_LOCALE = "{locale}";
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private Context context;
+    private String releaseNotesUrl;
+    private Integer versionCode;
+    private File cacheDir;
+
+    public ParserReleaseNotes(Context context, String releaseNotesUrl, Integer versionCode) {
+        this.context = context;
+        this.releaseNotesUrl = releaseNotesUrl;
+        this.versionCode = versionCode;
+        this.cacheDir = new File(context.getCacheDir(), Config.CACHE_DIR);
+    }
+
+    @Nullable
+    public String parse(Locale locale) {
+        for (String tag : UtilsLibrary.getLocaleFallbacks(locale)) {
+            File cached = null;
+            try {
+                URL url = getUrl(tag);
+                cached = getCacheFile(url);
+                boolean fromCache = cached != null && cached.exists();
+                byte[] content = fromCache ? UtilsLibrary.readAll(new FileInputStream(cached), cached.length()) : download(url);
+                if (content == null) {
+                    continue;
+                }
+
+                // Parsed before it is cached, a broken response is downloaded again on the next check
+                String notes = toNotes(new String(content, UTF_8));
+                if (!fromCache && cached != null) {
+                    save(cached, content);
+                }
+                return notes;
+            } catch (IOException e) {
+                Log.e("AppUpdater", "The release notes can't be downloaded.", e);
+                return null;
+            } catch (JSONException e) {
+                Log.e("AppUpdater", "The release notes file is mal-formatted.");
+                if (cached != null) {
+                    cached.delete();
+                }
+                return null;
+            }
+        }
+
+        return null;
+    }
+
+    private static String toNotes(String content) throws JSONException {
+        JSONArray releaseArr = new JSONObject(content).getJSONArray(KEY_RELEASE_NOTES);
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < releaseArr.length(); ++i) {
+            builder.append(releaseArr.getString(i).trim());
+            if (i != releaseArr.length() - 1)
+                builder.append(System.getProperty("line.separator"));
+        }
+        return builder.toString();
+    }
+
+    private URL getUrl(String tag) throws IOException {
+        if (releaseNotesUrl.contains(PLACEHOLDER_LOCALE)) {
+            return new URL(releaseNotesUrl.replace(PLACEHOLDER_LOCALE, tag));
+        } else {
+            return new URL(releaseNotesUrl + (releaseNotesUrl.contains("?") ? "&" : "?") + "locale=" + URLEncoder.encode(tag, "UTF-8"));
+        }
+    }
+
+    /**
+     * @return the file of these notes, or null if they can't be cached because the latest versionCode is unknown
+     */
+    private File getCacheFile(URL url) {
+        // Without a versionCode the notes of a new release would be served from the cache of the previous one
+        if (versionCode == null || versionCode <= 0) {
+            return null;
+        }
+        return new File(cacheDir, getCachePrefix() + Integer.toHexString(url.toString().hashCode()) + ".json");
+    }
+
+    /**
+     * @return the content, or null if there are no notes for this language
+     */
+    private byte[] download(URL url) throws IOException {
+        try {
+            Response response = UtilsLibrary.get(context, url);
+            try {
+                return UtilsLibrary.readAll(UtilsLibrary.getBody(response, Config.RELEASE_NOTES_MAX_BYTES), response.body().contentLength());
+            } finally {
+                response.close();
+            }
+        } catch (FileNotFoundException e) {
+            return null;
+        }
+    }
+
+    private void save(File cached, byte[] content) {
+        if (!(cacheDir.isDirectory() || cacheDir.mkdirs())) {
+            return;
+        }
+
+        deleteOtherVersions();
+        try {
+            UtilsLibrary.writeFile(cached, content);
+        } catch (IOException e) {
+            Log.e("AppUpdater", "The release notes can't be cached.", e);
+        }
+    }
+
+    private void deleteOtherVersions() {
+        File[] files = cacheDir.listFiles();
+        if (files == null) {
+            return;
+        }
+
+        for (File file : files) {
+            if (file.getName().startsWith("notes_") && !file.getName().startsWith(getCachePrefix())) {
+                file.delete();
+            }
+        }
+    }
+
+    private String getCachePrefix() {
+        return "notes_" + versionCode + "_";
+    }
+
+}
@@ -1,10 +1,12 @@
 package com.github.javiersantos.appupdate;
 
+import android.content.Context;
 import android.util.Log;
 
 import androidx.annotation.Nullable;
 
 import com.github.javiersantos.appupdate.objects.Update;
+import com.github.javiersantos.appupdate.objects.UpdateSelector;
 
 import org.xml.sax.SAXException;
 
@@ -14,37 +16,51 @@ import java.io.InputStream;
 import java.net.ConnectException;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.net.URLConnection;
 import java.net.UnknownHostException;
 
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.parsers.SAXParser;
 import javax.xml.parsers.SAXParserFactory;
 
+import okhttp3.Response;
+
 class ParserXML {
+    private Context context;
     private URL xmlUrl;
+    private UpdateSelector selector;
+
+    public ParserXML(Context context, String url) {
+        this(context, url, null);
+    }
 
-    public ParserXML(String url) {
+    public ParserXML(Context context, String url, UpdateSelector selector) {
+        this.context = context;
         try {
             this.xmlUrl = new URL(url);
         } catch (MalformedURLException e) {
             throw new RuntimeException(e);
         }
+        this.selector = selector;
     }
 
     @Nullable
     public Update parse() {
         SAXParserFactory factory = SAXParserFactory.newInstance();
 
-        InputStream inputStream = null;
+        Response response = null;
 
         try {
-            URLConnection connection = xmlUrl.openConnection();
-            inputStream = connection.getInputStream();
+            response = UtilsLibrary.get(context, xmlUrl);
+            InputStream inputStream = UtilsLibrary.getBody(response, Config.UPDATE_FILE_MAX_BYTES);
             SAXParser parser = factory.newSAXParser();
-            HandlerXML handler = new HandlerXML();
+            HandlerXML handler = new HandlerXML(selector);
             parser.parse(inputStream, handler);
-            return handler.getUpdate();
+            Update update = handler.getUpdate();
+            Integer maxAge = UtilsLibrary.getMaxAge(response.header("Cache-Control"));
+            if (update != null && maxAge != null) {
+                update.setCheckInterval(UtilsLibrary.getCheckInterval(maxAge, update.getCheckInterval()));
+            }
+            return update;
         } catch (ParserConfigurationException | SAXException e) {
             Log.e("AppUpdater", "The XML updater file is mal-formatted. AppUpdate can't check for updates.", e);
             return null;
@@ -58,12 +74,8 @@ class ParserXML {
             Log.e("AppUpdater", "The server is down or there isn't an active Internet connection.", e);
             return null;
         } finally {
-            if (inputStream != null) {
-                try {
-                    inputStream.close();
-                } catch (IOException e) {
-                    Log.e("AppUpdater", "Error closing input stream", e);
-                }
+            if (response != null) {
+                response.close();
             }
         }
 
@@ -0,0 +1,178 @@
+package com.github.javiersantos.appupdate;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.SocketTimeoutException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Minimal DNS client for TXT records, a single UDP query without recursion on the client side. <br/>
+ * Truncated answers are not retried over TCP, the caller falls back to the update file.
+ */
+class ResolverTxt {
+    private static final int TYPE_TXT = 16;
+    private static final int CLASS_IN = 1;
+    private static final int MAX_PACKET_SIZE = 1232;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private byte[] buffer;
+    private int position;
+    private int length;
+
+    /**
+     * @return the text of each TXT record of the name, the character-strings of a record joined together
+     * @throws IOException if the server doesn't answer in time or the answer can't be used
+     */
+    List<String> query(String name, InetAddress server, int port, int timeoutMillis) throws IOException {
+        int id = new Random().nextInt(0x10000);
+        byte[] query = buildQuery(id, name);
+
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        DatagramSocket socket = new DatagramSocket();
+        try {
+            socket.send(new DatagramPacket(query, query.length, server, port));
+
+            buffer = new byte[MAX_PACKET_SIZE];
+            DatagramPacket response = new DatagramPacket(buffer, buffer.length);
+            while (true) {
+                // The timeout is for the whole query, so packets that are ignored don't extend it
+                long timeLeft = deadline - System.currentTimeMillis();
+                if (timeLeft <= 0) {
+                    throw new SocketTimeoutException("No DNS response in " + timeoutMillis + " ms");
+                }
+                socket.setSoTimeout((int) timeLeft);
+                response.setLength(buffer.length);
+                socket.receive(response);
+                length = response.getLength();
+                // Answers to other queries or from other hosts are ignored
+                if (length >= 12 && readUnsignedShort(0) == id && response.getAddress().equals(server)) {
+                    break;
+                }
+            }
+            addBytes(query.length + length);
+        } finally {
+            socket.close();
+        }
+
+        return parseAnswer();
+    }
+
+    private static byte[] buildQuery(int id, String name) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(32 + name.length());
+        writeShort(out, id);
+        writeShort(out, 0x0100); // Recursion desired
+        writeShort(out, 1);
+        writeShort(out, 0);
+        writeShort(out, 0);
+        writeShort(out, 0);
+
+        for (String label : name.split("\\.")) {
+            if (label.isEmpty()) {
+                continue;
+            }
+            byte[] bytes = label.getBytes(UTF_8);
+            if (bytes.length > 63) {
+                throw new IOException("DNS label too long: " + label);
+            }
+            out.write(bytes.length);
+            out.write(bytes);
+        }
+        out.write(0);
+        writeShort(out, TYPE_TXT);
+        writeShort(out, CLASS_IN);
+        return out.toByteArray();
+    }
+
+    private List<String> parseAnswer() throws IOException {
+        int flags = readUnsignedShort(2);
+        if ((flags & 0x8000) == 0) {
+            throw new IOException("Not a DNS response");
+        }
+        if ((flags & 0x0200) != 0) {
+            throw new IOException("Truncated DNS response");
+        }
+        int rcode = flags & 0x000F;
+        if (rcode != 0) {
+            throw new IOException("DNS error " + rcode);
+        }
+
+        int questions = readUnsignedShort(4);
+        int answers = readUnsignedShort(6);
+        position = 12;
+        for (int i = 0; i < questions; i++) {
+            skipName();
+            position += 4;
+        }
+
+        List<String> records = new ArrayList<>();
+        for (int i = 0; i < answers; i++) {
+            skipName();
+            int type = readUnsignedShort(position);
+            int recordClass = readUnsignedShort(position + 2);
+            int dataLength = readUnsignedShort(position + 8);
+            position += 10;
+            int end = position + dataLength;
+            if (end > length) {
+                throw new IOException("Malformed DNS response");
+            }
+
+            // Other types are the CNAME records followed to get to the TXT ones
+            if (type == TYPE_TXT && recordClass == CLASS_IN) {
+                StringBuilder text = new StringBuilder();
+                while (position < end) {
+                    int size = buffer[position++] & 0xFF;
+                    if (position + size > end) {
+                        throw new IOException("Malformed DNS response");
+                    }
+                    text.append(new String(buffer, position, size, UTF_8));
+                    position += size;
+                }
+                records.add(text.toString());
+            }
+            position = end;
+        }
+        return records;
+    }
+
+    private void skipName() throws IOException {
+        while (position < length) {
+            int size = buffer[position] & 0xFF;
+            if ((size & 0xC0) == 0xC0) {
+                // Compression pointer, the name ends here
+                position += 2;
+                return;
+            }
+            position += size + 1;
+            if (size == 0) {
+                return;
+            }
+        }
+        throw new IOException("Malformed DNS response");
+    }
+
+    private int readUnsignedShort(int offset) throws IOException {
+        if (offset + 2 > length) {
+            throw new IOException("Malformed DNS response");
+        }
+        return ((buffer[offset] & 0xFF) << 8) | (buffer[offset + 1] & 0xFF);
+    }
+
+    private static void writeShort(ByteArrayOutputStream out, int value) {
+        out.write((value >> 8) & 0xFF);
+        out.write(value & 0xFF);
+    }
+
+    private static void addBytes(long count) {
+        FetchSession session = FetchSession.current();
+        if (session != null) {
+            session.add(count);
+        }
+    }
+
+}
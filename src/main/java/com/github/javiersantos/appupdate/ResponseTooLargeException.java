@@ -0,0 +1,14 @@
+package com.github.javiersantos.appupdate;
+
+import java.io.IOException;
+
+/**
+ * A response is bigger than what its reader accepts.
+ */
+class ResponseTooLargeException extends IOException {
+
+    ResponseTooLargeException(long limit) {
+        super("Response is bigger than " + limit + " bytes");
+    }
+
+}
@@ -0,0 +1,203 @@
+package com.github.javiersantos.appupdate;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.preference.PreferenceManager;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * State of the library shared by all the processes of the app. <br/>
+ * The values live in a small memory-mapped file and are only read or written while holding a lock on it,
+ * so the counters stay consistent when several processes check for updates at the same time.
+ * A second lock file is held for the whole duration of a network check, see {@link #lockCheck(Context, long)}.
+ */
+class SharedState {
+    private static final int MAGIC = 0x41555331;
+    private static final int SIZE = 64;
+
+    static final int OFFSET_FLAGS = 4;
+    static final int OFFSET_SUCCESSFUL_CHECKS = 8;
+    static final int OFFSET_CHECK_JITTER = 12;
+    static final int OFFSET_NEXT_CHECK = 16;
+
+    static final int FLAG_HIDDEN = 1;
+    static final int FLAG_JITTER_SET = 2;
+
+    private static final String STATE_FILE = "state";
+    private static final String CHECK_LOCK_FILE = "check.lock";
+
+    // FileChannel locks are held by the whole process, threads are serialized in memory first
+    private static final ReentrantLock CHECK_LOCK = new ReentrantLock();
+    private static FileChannel channel;
+    private static ByteBuffer buffer;
+
+    interface Transaction<T> {
+        T run(ByteBuffer state);
+    }
+
+    /**
+     * Runs the transaction while holding the lock of the state file.
+     * If the file can't be used, the state is only kept in memory for this process.
+     */
+    static synchronized <T> T transact(Context context, Transaction<T> transaction) {
+        FileLock lock = null;
+        try {
+            if (buffer == null) {
+                open(context);
+            }
+            if (channel != null) {
+                lock = channel.lock();
+            }
+            if (buffer.getInt(0) != MAGIC) {
+                migrate(context, buffer);
+            }
+            return transaction.run(buffer);
+        } catch (IOException e) {
+            Log.e("AppUpdater", "The shared state can't be locked.", e);
+            return transaction.run(buffer);
+        } finally {
+            if (lock != null) {
+                try {
+                    lock.release();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    /**
+     * Waits until no other thread or process is checking for updates. <br/>
+     * The caller must release the returned lock once its check has finished and its result has been saved.
+     *
+     * @param timeoutMillis time to wait, 0 for no limit
+     * @return the lock, or null if another check still held it after timeoutMillis or the thread was interrupted
+     */
+    static CheckLock lockCheck(Context context, long timeoutMillis) {
+        long deadline = timeoutMillis > 0 ? System.currentTimeMillis() + timeoutMillis : Long.MAX_VALUE;
+        try {
+            if (!CHECK_LOCK.tryLock(timeoutMillis > 0 ? timeoutMillis : Long.MAX_VALUE, TimeUnit.MILLISECONDS)) {
+                return null;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+
+        CheckLock checkLock = new CheckLock();
+        if (!checkLock.lock(new File(getDir(context), CHECK_LOCK_FILE), deadline)) {
+            CHECK_LOCK.unlock();
+            return null;
+        }
+        return checkLock;
+    }
+
+    private static void open(Context context) {
+        File dir = getDir(context);
+        try {
+            if (!(dir.isDirectory() || dir.mkdirs())) {
+                throw new IOException("Can't create " + dir);
+            }
+            FileChannel fileChannel = new RandomAccessFile(new File(dir, STATE_FILE), "rw").getChannel();
+            // Mapped in shared mode, writes are seen right away by the other processes
+            buffer = fileChannel.map(FileChannel.MapMode.READ_WRITE, 0, SIZE);
+            channel = fileChannel;
+        } catch (IOException e) {
+            Log.e("AppUpdater", "The shared state can't be opened.", e);
+            buffer = ByteBuffer.allocate(SIZE);
+        }
+    }
+
+    /**
+     * Imports the values saved in the default SharedPreferences by previous versions of the library.
+     */
+    @SuppressWarnings("deprecation")
+    private static void migrate(Context context, ByteBuffer state) {
+        SharedPreferences preferences = PreferenceManager.getDefaultSharedPreferences(context);
+        int flags = preferences.getBoolean(LibraryPreferences.KeyAppUpdaterShow, true) ? 0 : FLAG_HIDDEN;
+        float jitter = preferences.contains(LibraryPreferences.KeyCheckJitter) ? preferences.getFloat(LibraryPreferences.KeyCheckJitter, 0f) : new Random().nextFloat();
+
+        state.putInt(OFFSET_FLAGS, flags | FLAG_JITTER_SET);
+        state.putInt(OFFSET_SUCCESSFUL_CHECKS, preferences.getInt(LibraryPreferences.KeySuccessfulChecks, 0));
+        state.putFloat(OFFSET_CHECK_JITTER, jitter);
+        state.putLong(OFFSET_NEXT_CHECK, preferences.getLong(LibraryPreferences.KeyNextCheck, 0));
+        // Written last, a process killed halfway migrates again
+        state.putInt(0, MAGIC);
+    }
+
+    private static File getDir(Context context) {
+        return new File(context.getFilesDir(), Config.CACHE_DIR);
+    }
+
+    /**
+     * Lock held by the process doing the network check.
+     */
+    static class CheckLock {
+        private RandomAccessFile file;
+        private FileLock lock;
+
+        /**
+         * Polls the lock of the file, FileChannel.lock() can't be given a timeout.
+         *
+         * @return false if another process still holds it at the deadline
+         */
+        private boolean lock(File lockFile, long deadline) {
+            try {
+                File dir = lockFile.getParentFile();
+                if (dir != null && (dir.isDirectory() || dir.mkdirs())) {
+                    file = new RandomAccessFile(lockFile, "rw");
+                    while ((lock = file.getChannel().tryLock()) == null) {
+                        long timeLeft = deadline - System.currentTimeMillis();
+                        if (timeLeft <= 0) {
+                            release(false);
+                            return false;
+                        }
+                        Thread.sleep(Math.min(timeLeft, Config.CHECK_LOCK_POLL_INTERVAL));
+                    }
+                }
+            } catch (IOException e) {
+                // Checking without the lock is better than not checking at all
+                Log.e("AppUpdater", "The check lock can't be acquired.", e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                release(false);
+                return false;
+            }
+            return true;
+        }
+
+        /**
+         * Must be called from the thread that acquired the lock.
+         */
+        void release() {
+            release(true);
+        }
+
+        private void release(boolean unlock) {
+            try {
+                if (lock != null) {
+                    lock.release();
+                }
+                if (file != null) {
+                    file.close();
+                }
+            } catch (IOException e) {
+                Log.e("AppUpdater", "The check lock can't be released.", e);
+            } finally {
+                if (unlock) {
+                    CHECK_LOCK.unlock();
+                }
+            }
+        }
+    }
+
+}
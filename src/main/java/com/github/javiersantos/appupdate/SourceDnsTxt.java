@@ -0,0 +1,177 @@
+package com.github.javiersantos.appupdate;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.LinkProperties;
+import android.os.Build;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.github.javiersantos.appupdate.enums.AppUpdaterError;
+import com.github.javiersantos.appupdate.interfaces.UpdateSource;
+import com.github.javiersantos.appupdate.objects.DnsTxt;
+import com.github.javiersantos.appupdate.objects.Update;
+import com.github.javiersantos.appupdate.objects.UpdateSelector;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Latest version read from a DNS TXT record: UpdateFrom.DNS_TXT. <br/>
+ * An up-to-date app only costs a UDP round trip, usually answered by the resolver cache.
+ * The update file is read when the record has a newer version, or when it can't be read.
+ */
+class SourceDnsTxt implements UpdateSource {
+    private static final String KEY_VERSION_CODE = "latestVersionCode";
+    private static final String KEY_VERSION = "latestVersion";
+
+    private DnsTxt dnsTxt;
+    private SourceFile manifest;
+
+    SourceDnsTxt(DnsTxt dnsTxt) {
+        this.dnsTxt = dnsTxt;
+        this.manifest = dnsTxt != null ? new SourceFile(dnsTxt.getManifestFrom(), dnsTxt.getManifestUrl()) : null;
+    }
+
+    @Nullable
+    @Override
+    public AppUpdaterError validate(@NonNull Context context) {
+        if (!DnsTxt.isDnsTxtValid(dnsTxt)) {
+            return AppUpdaterError.DNS_TXT_INVALID;
+        }
+        return manifest.validate(context);
+    }
+
+    @Nullable
+    @Override
+    public URL getCheckUrl(@NonNull Context context) {
+        // Connecting ahead of time to the update file would defeat the purpose
+        return null;
+    }
+
+    @Nullable
+    @Override
+    public Update fetch(@NonNull Context context, @NonNull UpdateSelector selector) throws IOException {
+        Update update = readRecord(context);
+        Update installedUpdate = new Update(UtilsLibrary.getAppInstalledVersion(context), UtilsLibrary.getAppInstalledVersionCode(context));
+        if (update != null && !UtilsLibrary.isUpdateAvailable(installedUpdate, update)) {
+            return update;
+        }
+        return manifest.fetch(context, selector);
+    }
+
+    /**
+     * @return the version in the record, or null if it can't be read
+     */
+    private Update readRecord(Context context) {
+        for (InetAddress server : getServers(context)) {
+            try {
+                List<String> records = new ResolverTxt().query(dnsTxt.getName(), server, dnsTxt.getResolverPort(), getTimeout());
+                for (String record : records) {
+                    Update update = parseRecord(record);
+                    if (update != null) {
+                        return update;
+                    }
+                }
+                Log.e("AppUpdater", "No TXT record of " + dnsTxt.getName() + " has a " + KEY_VERSION_CODE + ".");
+                return null;
+            } catch (IOException e) {
+                Log.e("AppUpdater", "The TXT record can't be read from " + server + ", trying the next server.", e);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Parses {@code latestVersionCode=42 latestVersion=1.2.0}, the pairs separated by spaces or semicolons.
+     */
+    static Update parseRecord(String record) {
+        String versionCode = null;
+        String version = null;
+        for (String pair : record.trim().split("[;\\s]+")) {
+            String[] parts = pair.split("=", 2);
+            if (parts.length != 2) {
+                continue;
+            }
+            if (parts[0].equals(KEY_VERSION_CODE)) {
+                versionCode = parts[1];
+            } else if (parts[0].equals(KEY_VERSION)) {
+                version = parts[1];
+            }
+        }
+
+        if (versionCode == null) {
+            return null;
+        }
+        try {
+            return new Update(version != null ? version : versionCode, Integer.parseInt(versionCode));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private List<InetAddress> getServers(Context context) {
+        try {
+            if (dnsTxt.getResolverHost() != null) {
+                return Collections.singletonList(InetAddress.getByName(dnsTxt.getResolverHost()));
+            }
+        } catch (IOException e) {
+            Log.e("AppUpdater", "The DNS server " + dnsTxt.getResolverHost() + " can't be resolved.", e);
+            return Collections.emptyList();
+        }
+
+        // The DNS servers of the network are only known from API 23
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            ConnectivityManager cm = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+            LinkProperties linkProperties = cm != null ? cm.getLinkProperties(cm.getActiveNetwork()) : null;
+            if (linkProperties != null) {
+                return linkProperties.getDnsServers();
+            }
+        }
+        return new ArrayList<>();
+    }
+
+    private static int getTimeout() {
+        FetchSession session = FetchSession.current();
+        long timeout = session != null ? Math.min(session.getTimeLeft(), Config.DNS_TIMEOUT) : Config.DNS_TIMEOUT;
+        return (int) Math.max(1, timeout);
+    }
+
+    @NonNull
+    @Override
+    public AppUpdaterError getError() {
+        return manifest.getError();
+    }
+
+    @NonNull
+    @Override
+    public String getKey() {
+        if (dnsTxt == null) {
+            return "DNS_TXT";
+        }
+        return "DNS_TXT:" + dnsTxt.getName() + ":" + manifest.getKey();
+    }
+
+    @Override
+    public boolean isCacheable() {
+        return true;
+    }
+
+    @Override
+    public boolean supportsRange() {
+        // The APK of the update file, a static file like the one of SourceFile
+        return true;
+    }
+
+    @Override
+    public boolean supportsHead() {
+        return false;
+    }
+
+}
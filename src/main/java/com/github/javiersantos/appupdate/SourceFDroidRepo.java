@@ -0,0 +1,106 @@
+package com.github.javiersantos.appupdate;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.github.javiersantos.appupdate.enums.AppUpdaterError;
+import com.github.javiersantos.appupdate.interfaces.UpdateSource;
+import com.github.javiersantos.appupdate.objects.FDroidRepo;
+import com.github.javiersantos.appupdate.objects.Update;
+import com.github.javiersantos.appupdate.objects.UpdateSelector;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Locale;
+
+/**
+ * Latest version in the index of an F-Droid repository: UpdateFrom.FDROID_REPO. <br/>
+ * The index is kept in a local mirror shared by every check of the same repository, see {@link FDroidIndex}.
+ * The signature of the index is not verified, so the repository must be served over HTTPS.
+ */
+class SourceFDroidRepo implements UpdateSource {
+    private FDroidRepo fDroidRepo;
+
+    SourceFDroidRepo(FDroidRepo fDroidRepo) {
+        this.fDroidRepo = fDroidRepo;
+    }
+
+    @Nullable
+    @Override
+    public AppUpdaterError validate(@NonNull Context context) {
+        if (!FDroidRepo.isFDroidRepoValid(fDroidRepo) || !UtilsLibrary.isStringAnUrl(fDroidRepo.getIndexUrl())
+                || !fDroidRepo.getIndexUrl().toLowerCase(Locale.US).startsWith("https://")) {
+            return AppUpdaterError.FDROID_REPO_INVALID;
+        }
+        return null;
+    }
+
+    @Nullable
+    @Override
+    public URL getCheckUrl(@NonNull Context context) {
+        if (fDroidRepo == null) {
+            return null;
+        }
+        try {
+            return new URL(fDroidRepo.getIndexUrl());
+        } catch (MalformedURLException e) {
+            return null;
+        }
+    }
+
+    @Nullable
+    @Override
+    public Update fetch(@NonNull Context context, @NonNull UpdateSelector selector) throws IOException {
+        String packageName = getPackageName(context);
+        FDroidIndex.Entry entry = FDroidIndex.get(context, fDroidRepo, selector).find(context, packageName);
+        if (entry == null) {
+            Log.e("AppUpdater", "The F-Droid repository has no version of " + packageName + " for this device.");
+            return null;
+        }
+
+        String repoUrl = fDroidRepo.getRepoUrl().endsWith("/") ? fDroidRepo.getRepoUrl().substring(0, fDroidRepo.getRepoUrl().length() - 1) : fDroidRepo.getRepoUrl();
+        Update update = new Update(entry.versionName != null ? entry.versionName : String.valueOf(entry.versionCode), entry.versionCode, null, new URL(repoUrl + entry.path));
+        update.setSha256(entry.sha256);
+        return update;
+    }
+
+    private String getPackageName(Context context) {
+        return fDroidRepo.getPackageName() != null ? fDroidRepo.getPackageName() : UtilsLibrary.getAppPackageName(context);
+    }
+
+    @NonNull
+    @Override
+    public AppUpdaterError getError() {
+        return AppUpdaterError.FDROID_REPO_ERROR;
+    }
+
+    @NonNull
+    @Override
+    public String getKey() {
+        if (fDroidRepo == null) {
+            return "FDROID_REPO";
+        }
+        return "FDROID_REPO:" + fDroidRepo.getIndexUrl() + ":" + fDroidRepo.getPackageName();
+    }
+
+    @Override
+    public boolean isCacheable() {
+        return true;
+    }
+
+    @Override
+    public boolean supportsRange() {
+        // The APKs of a repo are static files
+        return true;
+    }
+
+    @Override
+    public boolean supportsHead() {
+        return false;
+    }
+
+}
@@ -0,0 +1,109 @@
+package com.github.javiersantos.appupdate;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.github.javiersantos.appupdate.enums.AppUpdaterError;
+import com.github.javiersantos.appupdate.enums.UpdateFrom;
+import com.github.javiersantos.appupdate.interfaces.UpdateSource;
+import com.github.javiersantos.appupdate.objects.Update;
+import com.github.javiersantos.appupdate.objects.UpdateSelector;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+
+/**
+ * Update file published by the app: UpdateFrom.XML, JSON or BINARY.
+ */
+class SourceFile implements UpdateSource {
+    private UpdateFrom format;
+    private String url;
+
+    SourceFile(UpdateFrom format, String url) {
+        this.format = format;
+        this.url = url;
+    }
+
+    @Nullable
+    @Override
+    public AppUpdaterError validate(@NonNull Context context) {
+        if (url != null && UtilsLibrary.isStringAnUrl(url)) {
+            return null;
+        }
+        switch (format) {
+            case XML:
+                return AppUpdaterError.XML_URL_MALFORMED;
+            case BINARY:
+                return AppUpdaterError.BINARY_URL_MALFORMED;
+            default:
+                return AppUpdaterError.JSON_URL_MALFORMED;
+        }
+    }
+
+    @Nullable
+    @Override
+    public URL getCheckUrl(@NonNull Context context) {
+        try {
+            return url != null ? new URL(url) : null;
+        } catch (MalformedURLException e) {
+            return null;
+        }
+    }
+
+    @Nullable
+    @Override
+    public Update fetch(@NonNull Context context, @NonNull UpdateSelector selector) {
+        Update update;
+        switch (format) {
+            case XML:
+                update = new ParserXML(context, url, selector).parse();
+                break;
+            case BINARY:
+                update = new ParserBinary(context, url).parse();
+                break;
+            default:
+                update = new ParserJSON(context, url, selector).parse();
+                break;
+        }
+        UtilsLibrary.setBestArtifact(update, selector);
+        return update;
+    }
+
+    @NonNull
+    @Override
+    public AppUpdaterError getError() {
+        switch (format) {
+            case XML:
+                return AppUpdaterError.XML_ERROR;
+            case BINARY:
+                return AppUpdaterError.BINARY_ERROR;
+            default:
+                return AppUpdaterError.JSON_ERROR;
+        }
+    }
+
+    @NonNull
+    @Override
+    public String getKey() {
+        return format.name() + ":" + url;
+    }
+
+    @Override
+    public boolean isCacheable() {
+        return true;
+    }
+
+    @Override
+    public boolean supportsRange() {
+        // Static files, served by any web server or CDN
+        return true;
+    }
+
+    @Override
+    public boolean supportsHead() {
+        return true;
+    }
+
+}
@@ -0,0 +1,87 @@
+package com.github.javiersantos.appupdate;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.github.javiersantos.appupdate.enums.AppUpdaterError;
+import com.github.javiersantos.appupdate.interfaces.UpdateSource;
+import com.github.javiersantos.appupdate.objects.GitHub;
+import com.github.javiersantos.appupdate.objects.Update;
+import com.github.javiersantos.appupdate.objects.UpdateSelector;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+
+/**
+ * Latest release of a GitHub repo, read from the API: UpdateFrom.GITHUB.
+ */
+class SourceGitHub implements UpdateSource {
+    private GitHub gitHub;
+
+    SourceGitHub(GitHub gitHub) {
+        this.gitHub = gitHub;
+    }
+
+    @Nullable
+    @Override
+    public AppUpdaterError validate(@NonNull Context context) {
+        return GitHub.isGitHubValid(gitHub) ? null : AppUpdaterError.GITHUB_USER_REPO_INVALID;
+    }
+
+    @Nullable
+    @Override
+    public URL getCheckUrl(@NonNull Context context) {
+        try {
+            return new URL(gitHub != null && gitHub.getApiUrl() != null ? gitHub.getApiUrl() : Config.GITHUB_API_URL);
+        } catch (MalformedURLException e) {
+            return null;
+        }
+    }
+
+    @Nullable
+    @Override
+    public Update fetch(@NonNull Context context, @NonNull UpdateSelector selector) throws MalformedURLException {
+        Update update = new ParserGitHub(context, gitHub).parse();
+        if (update == null) {
+            // Same as the other stores when the version can't be retrieved
+            update = new Update("0.0.0.0", new URL(Config.GITHUB_URL + gitHub.getGitHubUser() + "/" + gitHub.getGitHubRepo() + "/releases/latest"));
+        }
+        return update;
+    }
+
+    @NonNull
+    @Override
+    public AppUpdaterError getError() {
+        // Not GITHUB_USER_REPO_INVALID, which is only reported by validate() and thrown by AppUpdate
+        return AppUpdaterError.GITHUB_ERROR;
+    }
+
+    @NonNull
+    @Override
+    public String getKey() {
+        if (gitHub == null) {
+            return "GITHUB";
+        }
+        return "GITHUB:" + (gitHub.getApiUrl() != null ? gitHub.getApiUrl() : "") + gitHub.getGitHubUser() + "/" + gitHub.getGitHubRepo();
+    }
+
+    @Override
+    public boolean isCacheable() {
+        return true;
+    }
+
+    @Override
+    public boolean supportsRange() {
+        // The assets are served by GitHub's CDN
+        return true;
+    }
+
+    @Override
+    public boolean supportsHead() {
+        // The version headers are only sent by self-hosted files
+        return false;
+    }
+
+}
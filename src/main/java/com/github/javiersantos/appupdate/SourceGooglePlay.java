@@ -0,0 +1,122 @@
+package com.github.javiersantos.appupdate;
+
+import android.content.Context;
+import android.text.TextUtils;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.github.javiersantos.appupdate.enums.AppUpdaterError;
+import com.github.javiersantos.appupdate.interfaces.UpdateSource;
+import com.github.javiersantos.appupdate.objects.Update;
+import com.github.javiersantos.appupdate.objects.UpdateSelector;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Locale;
+
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Version shown in the Play Store page of the app: UpdateFrom.GOOGLE_PLAY.
+ */
+class SourceGooglePlay implements UpdateSource {
+
+    @Nullable
+    @Override
+    public AppUpdaterError validate(@NonNull Context context) {
+        return null;
+    }
+
+    @Nullable
+    @Override
+    public URL getCheckUrl(@NonNull Context context) {
+        try {
+            return new URL(String.format(Config.PLAY_STORE_URL, UtilsLibrary.getAppPackageName(context), Locale.getDefault().getLanguage()));
+        } catch (MalformedURLException e) {
+            return null;
+        }
+    }
+
+    @Nullable
+    @Override
+    public Update fetch(@NonNull Context context, @NonNull UpdateSelector selector) {
+        String version = "0.0.0.0";
+        String recentChanges = "";
+
+        URL updateURL = getCheckUrl(context);
+
+        try {
+            String playVersion = getPlayStoreString(context, updateURL, "hAyfc", "htlgb", 7);
+
+            //TODO: Release Notes for Google Play is not working
+            //recentChanges = getPlayStoreString(updateURL, "W4P4ne", "DWPxHb", 1);
+
+            if (TextUtils.isEmpty(playVersion)) {
+                Log.e("AppUpdater", "Cannot retrieve latest version. Is it configured properly?");
+            } else {
+                version = playVersion;
+            }
+        } catch (Exception e) {
+            Log.e("AppUpdater", "App wasn't found in the provided source. Is it published?");
+        }
+
+        return new Update(version, recentChanges, updateURL);
+    }
+
+    /**
+     * Streams the page and stops as soon as the element is found, instead of building the whole document.
+     */
+    private static String getPlayStoreString(Context context, URL url, String ancestorClass, String className, int position) throws IOException {
+        Request request = new Request.Builder()
+                .url(url)
+                .header("User-Agent", Config.PLAY_STORE_USER_AGENT)
+                .build();
+        Response response = UtilsLibrary.getHttpClient(context).newCall(request).execute();
+
+        try {
+            if (!response.isSuccessful()) {
+                throw new FileNotFoundException("HTTP " + response.code());
+            }
+            InputStream inputStream = UtilsLibrary.getBody(response, Config.STORE_PAGE_MAX_BYTES);
+            return new ParserHTML(inputStream).findText(ancestorClass, className, position);
+        } finally {
+            response.close();
+        }
+    }
+
+    @NonNull
+    @Override
+    public AppUpdaterError getError() {
+        return AppUpdaterError.UPDATE_VARIES_BY_DEVICE;
+    }
+
+    @NonNull
+    @Override
+    public String getKey() {
+        return "GOOGLE_PLAY";
+    }
+
+    @Override
+    public boolean isCacheable() {
+        return true;
+    }
+
+    @Override
+    public boolean supportsRange() {
+        // The update is installed from the store
+        return false;
+    }
+
+    @Override
+    public boolean supportsHead() {
+        // The version headers are only sent by self-hosted files
+        return false;
+    }
+
+}
@@ -0,0 +1,120 @@
+package com.github.javiersantos.appupdate;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.github.javiersantos.appupdate.enums.AppUpdaterError;
+import com.github.javiersantos.appupdate.enums.UpdateFrom;
+import com.github.javiersantos.appupdate.interfaces.UpdateSource;
+import com.github.javiersantos.appupdate.objects.Update;
+import com.github.javiersantos.appupdate.objects.UpdateSelector;
+
+import java.io.BufferedReader;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.MalformedURLException;
+import java.net.URL;
+
+import okhttp3.Response;
+
+/**
+ * Version shown in the store page of the app: UpdateFrom.AMAZON or FDROID. <br/>
+ * The page is read line by line and the request is closed at the first line with the version.
+ */
+class SourceStorePage implements UpdateSource {
+    private UpdateFrom store;
+
+    SourceStorePage(UpdateFrom store) {
+        this.store = store;
+    }
+
+    @Nullable
+    @Override
+    public AppUpdaterError validate(@NonNull Context context) {
+        return null;
+    }
+
+    @Nullable
+    @Override
+    public URL getCheckUrl(@NonNull Context context) {
+        try {
+            return new URL((store == UpdateFrom.AMAZON ? Config.AMAZON_URL : Config.FDROID_URL) + UtilsLibrary.getAppPackageName(context));
+        } catch (MalformedURLException e) {
+            return null;
+        }
+    }
+
+    @Nullable
+    @Override
+    public Update fetch(@NonNull Context context, @NonNull UpdateSelector selector) {
+        String tag = store == UpdateFrom.AMAZON ? Config.AMAZON_TAG_RELEASE : Config.FDROID_TAG_RELEASE;
+        String version = "0.0.0.0";
+        Integer maxAge = null;
+        URL url = getCheckUrl(context);
+        Response response = null;
+
+        try {
+            response = UtilsLibrary.get(context, url);
+            maxAge = UtilsLibrary.getMaxAge(response.header("Cache-Control"));
+            BufferedReader reader = new BufferedReader(new InputStreamReader(UtilsLibrary.getBody(response, Config.STORE_PAGE_MAX_BYTES), "UTF-8"), Config.READ_BUFFER_SIZE);
+
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.contains(tag)) {
+                    version = line.split(tag)[1].split("(<)")[0].trim();
+                    break;
+                }
+            }
+
+            if (line == null) {
+                Log.e("AppUpdater", "Cannot retrieve latest version. Is it configured properly?");
+            }
+        } catch (FileNotFoundException e) {
+            Log.e("AppUpdater", "App wasn't found in the provided source. Is it published?");
+        } catch (IOException ignore) {
+
+        } finally {
+            if (response != null) {
+                response.close();
+            }
+        }
+
+        Update update = new Update(version, url);
+        update.setCheckInterval(maxAge);
+        return update;
+    }
+
+    @NonNull
+    @Override
+    public AppUpdaterError getError() {
+        return AppUpdaterError.UPDATE_VARIES_BY_DEVICE;
+    }
+
+    @NonNull
+    @Override
+    public String getKey() {
+        return store.name();
+    }
+
+    @Override
+    public boolean isCacheable() {
+        return true;
+    }
+
+    @Override
+    public boolean supportsRange() {
+        // The update is installed from the store
+        return false;
+    }
+
+    @Override
+    public boolean supportsHead() {
+        // The version headers are only sent by self-hosted files
+        return false;
+    }
+
+}
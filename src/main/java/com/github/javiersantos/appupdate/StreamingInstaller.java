@@ -0,0 +1,73 @@
+package com.github.javiersantos.appupdate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Copies the download stream straight into an install session while hashing it, instead of downloading to a file
+ * that the installer reads again. The session is only committed if the SHA-256 matches.
+ */
+class StreamingInstaller {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private ApkInstaller installer;
+
+    public StreamingInstaller(ApkInstaller installer) {
+        this.installer = installer;
+    }
+
+    /**
+     * @param size           size of the APK in bytes, or -1 if unknown
+     * @param expectedSha256 hex SHA-256 of the APK, or null to install without verifying it
+     * @return hex SHA-256 of the installed APK
+     * @throws IOException if the download or the session fail, or the hash doesn't match. The session is abandoned.
+     */
+    public String install(InputStream in, long size, String expectedSha256) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+
+        ApkInstaller.Session session = installer.openSession(size);
+        try {
+            OutputStream out = session.openWrite(size);
+            try {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    digest.update(buffer, 0, read);
+                    out.write(buffer, 0, read);
+                }
+            } finally {
+                out.close();
+            }
+
+            String sha256 = toHex(digest.digest());
+            if (expectedSha256 != null && !expectedSha256.equalsIgnoreCase(sha256)) {
+                throw new IOException("SHA-256 mismatch, expected " + expectedSha256 + " but got " + sha256);
+            }
+
+            session.commit();
+            return sha256;
+        } catch (IOException | RuntimeException e) {
+            session.abandon();
+            throw e;
+        }
+    }
+
+    static String toHex(byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = HEX[(bytes[i] >> 4) & 0xF];
+            chars[i * 2 + 1] = HEX[bytes[i] & 0xF];
+        }
+        return new String(chars);
+    }
+
+}
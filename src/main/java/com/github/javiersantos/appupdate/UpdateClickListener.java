@@ -16,15 +16,32 @@ public class UpdateClickListener implements DialogInterface.OnClickListener {
     private final Context context;
     private final UpdateFrom updateFrom;
     private final URL apk;
+    private final String sha256;
+    private final Boolean streamingInstall;
 
     public UpdateClickListener(final Context context, final UpdateFrom updateFrom, final URL apk) {
+        this(context, updateFrom, apk, null, false);
+    }
+
+    /**
+     * @param sha256           hex SHA-256 of the APK, verified before a streaming install is committed, or null
+     * @param streamingInstall true to download the APK straight into the package installer
+     */
+    public UpdateClickListener(final Context context, final UpdateFrom updateFrom, final URL apk, final String sha256, final Boolean streamingInstall) {
         this.context = context;
         this.updateFrom = updateFrom;
         this.apk = apk;
+        this.sha256 = sha256;
+        this.streamingInstall = streamingInstall;
     }
 
     @Override
     public void onClick(final DialogInterface dialog, final int which) {
-        UtilsLibrary.goToUpdate(context, updateFrom, apk);
+        // A prefetched APK is already on the device, no need to stream it
+        if (streamingInstall && UtilsLibrary.getPrefetchedApk(context, apk) == null && UtilsLibrary.canStreamInstall(context, updateFrom, apk)) {
+            new UtilsAsync.StreamingInstall(context, updateFrom, apk, sha256).execute();
+        } else {
+            UtilsLibrary.goToUpdate(context, updateFrom, apk);
+        }
     }
 }
@@ -2,32 +2,61 @@ package com.github.javiersantos.appupdate;
 
 import android.content.Context;
 import android.os.AsyncTask;
+import android.text.TextUtils;
+import android.util.Log;
 
 import com.github.javiersantos.appupdate.enums.AppUpdaterError;
 import com.github.javiersantos.appupdate.enums.UpdateFrom;
-import com.github.javiersantos.appupdate.objects.GitHub;
+import com.github.javiersantos.appupdate.interfaces.UpdateSource;
 import com.github.javiersantos.appupdate.objects.Update;
+import com.github.javiersantos.appupdate.objects.UpdateSelector;
 
+import org.json.JSONException;
+
+import java.io.File;
+import java.io.IOException;
 import java.lang.ref.WeakReference;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import okhttp3.Response;
 
 class UtilsAsync {
 
+    interface ChangelogListener {
+        void onSuccess(String changelog);
+    }
+
     static class LatestAppVersion extends AsyncTask<Void, Void, Update> {
         private WeakReference<Context> contextRef;
-        private LibraryPreferences libraryPreferences;
         private Boolean fromUtils;
-        private UpdateFrom updateFrom;
-        private GitHub gitHub;
-        private String xmlOrJsonUrl;
+        private UpdateSource source;
+        private UpdateSelector selector;
+        private Integer checkInterval;
+        private Boolean offlineFirst;
+        private Long checkTimeout;
+        private Boolean headCheck;
+        private long startTime;
+        private boolean offline;
         private AppUpdate.LibraryListener listener;
 
-        public LatestAppVersion(Context context, Boolean fromUtils, UpdateFrom updateFrom, GitHub gitHub, String xmlOrJsonUrl, AppUpdate.LibraryListener listener) {
+        public LatestAppVersion(Context context, Boolean fromUtils, UpdateSource source, UpdateSelector selector, Integer checkInterval, Boolean offlineFirst, Long checkTimeout, Boolean headCheck, AppUpdate.LibraryListener listener) {
             this.contextRef = new WeakReference<>(context);
-            this.libraryPreferences = new LibraryPreferences(context);
             this.fromUtils = fromUtils;
-            this.updateFrom = updateFrom;
-            this.gitHub = gitHub;
-            this.xmlOrJsonUrl = xmlOrJsonUrl;
+            this.source = source;
+            this.selector = selector;
+            this.checkInterval = checkInterval;
+            this.offlineFirst = offlineFirst;
+            this.checkTimeout = checkTimeout;
+            this.headCheck = headCheck;
             this.listener = listener;
         }
 
@@ -38,54 +67,171 @@ class UtilsAsync {
             Context context = contextRef.get();
             if (context == null || listener == null) {
                 cancel(true);
-            } else if (UtilsLibrary.isNetworkAvailable(context)) {
-                if (!fromUtils && !libraryPreferences.getAppUpdaterShow()) {
+            } else if (source == null) {
+                listener.onFailed(AppUpdaterError.UPDATE_SOURCE_MISSING);
+                cancel(true);
+            } else {
+                // Validated first, the offline path also needs the configuration of the source
+                AppUpdaterError error = source.validate(context);
+                if (error != null) {
+                    listener.onFailed(error);
                     cancel(true);
-                } else {
-                    if (updateFrom == UpdateFrom.GITHUB && !GitHub.isGitHubValid(gitHub)) {
-                        listener.onFailed(AppUpdaterError.GITHUB_USER_REPO_INVALID);
-                        cancel(true);
-                    } else if (updateFrom == UpdateFrom.XML && (xmlOrJsonUrl == null || !UtilsLibrary.isStringAnUrl(xmlOrJsonUrl))) {
-                        listener.onFailed(AppUpdaterError.XML_URL_MALFORMED);
-
-                        cancel(true);
-                    } else if (updateFrom == UpdateFrom.JSON && (xmlOrJsonUrl == null || !UtilsLibrary.isStringAnUrl(xmlOrJsonUrl))) {
-                        listener.onFailed(AppUpdaterError.JSON_URL_MALFORMED);
-
+                } else if (!UtilsLibrary.isNetworkAvailable(context)) {
+                    if (offlineFirst && source.isCacheable() && getLastUpdateFile(context).exists()) {
+                        // Served from the last check, see doInBackground
+                        offline = true;
+                    } else {
+                        listener.onFailed(AppUpdaterError.NETWORK_NOT_AVAILABLE);
                         cancel(true);
                     }
                 }
-            } else {
-                listener.onFailed(AppUpdaterError.NETWORK_NOT_AVAILABLE);
-                cancel(true);
             }
         }
 
         @Override
         protected Update doInBackground(Void... voids) {
+            Context context = contextRef.get();
+            if (context == null) {
+                cancel(true);
+                return null;
+            }
+
+            // The deadline also counts the time spent waiting for the lock
+            startTime = System.currentTimeMillis();
+            // Only one process of the app checks at a time, the others wait and reuse its result
+            SharedState.CheckLock checkLock = SharedState.lockCheck(context, getTimeLeft());
             try {
-                if (updateFrom == UpdateFrom.XML || updateFrom == UpdateFrom.JSON) {
-                    Update update = UtilsLibrary.getLatestAppVersion(updateFrom, xmlOrJsonUrl);
-                    if (update != null) {
-                        return update;
-                    } else {
-                        AppUpdaterError error = updateFrom == UpdateFrom.XML ? AppUpdaterError.XML_ERROR
-                                                                             : AppUpdaterError.JSON_ERROR;
+                return getUpdate(context, checkLock != null);
+            } finally {
+                if (checkLock != null) {
+                    checkLock.release();
+                }
+            }
+        }
 
-                        if (listener != null) {
-                            listener.onFailed(error);
-                        }
-                        cancel(true);
-                        return null;
+        /**
+         * @param locked false if the check of another process was still running at the deadline
+         */
+        private Update getUpdate(Context context, boolean locked) {
+            // Read here rather than in onPreExecute, the state file may still be loading from disk
+            LibraryPreferences libraryPreferences = new LibraryPreferences(context);
+            if (isScheduled() && !UtilsLibrary.isCheckDue(System.currentTimeMillis(), libraryPreferences.getNextCheck())) {
+                cancel(true);
+                return null;
+            } else if (!fromUtils && !libraryPreferences.getAppUpdaterShow()) {
+                cancel(true);
+                return null;
+            }
+
+            if (offline) {
+                Update update = UtilsLibrary.loadLastUpdate(getLastUpdateFile(context));
+                if (update == null) {
+                    if (listener != null) {
+                        listener.onFailed(AppUpdaterError.NETWORK_NOT_AVAILABLE);
+                    }
+                    cancel(true);
+                }
+                return update;
+            }
+
+            Update sharedUpdate = getSharedUpdate(context);
+            if (sharedUpdate != null) {
+                return sharedUpdate;
+            } else if (!locked) {
+                // The result of the previous check, if any, rather than checking at the same time as the other process
+                Update update = source.isCacheable() ? UtilsLibrary.loadLastUpdate(getLastUpdateFile(context)) : null;
+                if (update == null) {
+                    if (listener != null) {
+                        listener.onFailed(AppUpdaterError.CHECK_TIMEOUT);
+                    }
+                    cancel(true);
+                }
+                return update;
+            }
+
+            FetchSession session = FetchSession.begin(UtilsLibrary.getFetchProfile(context), getTimeLeft());
+            try {
+                Update update = getLatestUpdate(context, session);
+                if (update != null) {
+                    update.setFetchProfile(session.getProfile());
+                    update.setBytesTransferred(session.getBytes());
+                    // Set before releasing the lock, so the other processes see it
+                    if (isScheduled() && UtilsLibrary.isStringAVersion(update.getLatestVersion())) {
+                        Integer interval = UtilsLibrary.getCheckInterval(checkInterval, update.getCheckInterval());
+                        libraryPreferences.setNextCheck(UtilsLibrary.getNextCheckTime(System.currentTimeMillis(), interval, libraryPreferences.getCheckJitter()));
                     }
+                }
+                return update;
+            } finally {
+                FetchSession.end();
+            }
+        }
+
+        /**
+         * @return the result of the check made by another process of the app a moment ago, or null
+         */
+        private Update getSharedUpdate(Context context) {
+            if (!source.isCacheable()) {
+                return null;
+            }
+            File file = getLastUpdateFile(context);
+            long age = System.currentTimeMillis() - file.lastModified();
+            if (!file.exists() || age < 0 || age >= Config.CHECK_SHARE_WINDOW) {
+                return null;
+            }
+            return UtilsLibrary.loadLastUpdate(file);
+        }
+
+        /**
+         * @return milliseconds left for the network part of the check, 0 for no deadline
+         */
+        private long getTimeLeft() {
+            if (checkTimeout == null || checkTimeout <= 0) {
+                return 0;
+            }
+            // At least 1 ms, so an exhausted budget still means a deadline
+            return Math.max(1, checkTimeout - (System.currentTimeMillis() - startTime));
+        }
+
+        /**
+         * @return the version read from the headers if it is not newer than the installed one, otherwise null
+         * and the whole update has to be read
+         */
+        private Update getHeadUpdate(Context context) {
+            if (!headCheck || !source.supportsHead()) {
+                return null;
+            }
+
+            Update update = UtilsLibrary.getLatestAppVersionHead(context, source.getCheckUrl(context));
+            Update installedUpdate = new Update(UtilsLibrary.getAppInstalledVersion(context), UtilsLibrary.getAppInstalledVersionCode(context));
+            return update != null && !UtilsLibrary.isUpdateAvailable(installedUpdate, update) ? update : null;
+        }
+
+        private Update getLatestUpdate(Context context, FetchSession session) {
+            try {
+                Update update = getHeadUpdate(context);
+                if (update == null) {
+                    update = source.fetch(context, UtilsLibrary.getUpdateSelector(selector));
+                }
+                if (session.isResponseTooLarge()) {
+                    if (listener != null) {
+                        listener.onFailed(AppUpdaterError.RESPONSE_TOO_LARGE);
+                    }
+                    cancel(true);
+                    return null;
+                } else if (update != null) {
+                    // The release notes are optional, they are left out if the time is over
+                    if (!session.isExpired()) {
+                        loadReleaseNotes(update);
+                    }
+                    saveLastUpdate(context, update);
+                    return update;
                 } else {
-                    Context context = contextRef.get();
-                    if (context != null) {
-                        return UtilsLibrary.getLatestAppVersionStore(context, updateFrom, gitHub);
-                    } else {
-                        cancel(true);
-                        return null;
+                    if (listener != null) {
+                        listener.onFailed(source.getError());
                     }
+                    cancel(true);
+                    return null;
                 }
             } catch (Exception ex) {
                 cancel(true);
@@ -105,6 +251,309 @@ class UtilsAsync {
                 }
             }
         }
+
+        private File getLastUpdateFile(Context context) {
+            return UtilsLibrary.getLastUpdateFile(context, source);
+        }
+
+        private void saveLastUpdate(Context context, Update update) {
+            // Always saved, it is shared with the other processes. Stores return 0.0.0.0 when the version can't be retrieved
+            if (source.isCacheable() && UtilsLibrary.isStringAVersion(update.getLatestVersion()) && !update.getLatestVersion().equals("0.0.0.0")) {
+                UtilsLibrary.saveLastUpdate(getLastUpdateFile(context), update);
+            }
+        }
+
+        /**
+         * Downloads the release notes in the user's language, only if they are going to be needed.
+         */
+        private void loadReleaseNotes(Update update) {
+            Context context = contextRef.get();
+            if (context == null || update.getReleaseNotesUrl() == null) {
+                return;
+            }
+
+            Update installedUpdate = new Update(UtilsLibrary.getAppInstalledVersion(context), UtilsLibrary.getAppInstalledVersionCode(context));
+            if (UtilsLibrary.isUpdateAvailable(installedUpdate, update)) {
+                String releaseNotes = new ParserReleaseNotes(context, update.getReleaseNotesUrl(), update.getLatestVersionCode())
+                        .parse(UtilsLibrary.getUpdateSelector(selector).getLocale());
+                if (releaseNotes != null) {
+                    update.setReleaseNotes(releaseNotes);
+                }
+            }
+        }
+
+        private Boolean isScheduled() {
+            return checkInterval != null && checkInterval > 0;
+        }
+    }
+
+    /**
+     * Checks every package of an AppUpdateBatch with a single request, see {@link ParserBatch}.
+     * Each listener is called as soon as the entry of its package has been read.
+     * With delta sync, only the listeners of the packages that changed since the last sync are called.
+     */
+    static class LatestBatch extends AsyncTask<Void, LatestBatch.Result, AppUpdaterError> {
+        private WeakReference<Context> contextRef;
+        private String batchUrl;
+        private Map<String, AppUpdateUtils.UpdateListener> listeners;
+        private UpdateSelector selector;
+        private Long checkTimeout;
+        private Boolean deltaSync;
+        private URL url;
+        // Set in the background, the packages missing from a delta response have not changed
+        private boolean delta;
+        // Only used on the main thread
+        private Set<String> dispatched = new HashSet<>();
+
+        static class Result {
+            private String packageName;
+            private Update update;
+            private Boolean isUpdateAvailable;
+            private AppUpdaterError error;
+
+            Result(String packageName, Update update, Boolean isUpdateAvailable, AppUpdaterError error) {
+                this.packageName = packageName;
+                this.update = update;
+                this.isUpdateAvailable = isUpdateAvailable;
+                this.error = error;
+            }
+        }
+
+        public LatestBatch(Context context, String batchUrl, Map<String, AppUpdateUtils.UpdateListener> listeners, UpdateSelector selector, Long checkTimeout, Boolean deltaSync) {
+            this.contextRef = new WeakReference<>(context);
+            this.batchUrl = batchUrl;
+            this.listeners = new LinkedHashMap<>(listeners);
+            this.selector = selector;
+            this.checkTimeout = checkTimeout;
+            this.deltaSync = deltaSync;
+        }
+
+        @Override
+        protected void onPreExecute() {
+            super.onPreExecute();
+
+            Context context = contextRef.get();
+            if (context == null || listeners.isEmpty()) {
+                cancel(true);
+            } else if (!UtilsLibrary.isStringAnUrl(batchUrl)) {
+                failAll(AppUpdaterError.BATCH_URL_MALFORMED);
+                cancel(true);
+            } else if (!UtilsLibrary.isNetworkAvailable(context)) {
+                failAll(AppUpdaterError.NETWORK_NOT_AVAILABLE);
+                cancel(true);
+            } else {
+                try {
+                    url = new URL(batchUrl);
+                } catch (MalformedURLException e) {
+                    failAll(AppUpdaterError.BATCH_URL_MALFORMED);
+                    cancel(true);
+                }
+            }
+        }
+
+        @Override
+        protected AppUpdaterError doInBackground(Void... voids) {
+            Context context = contextRef.get();
+            if (context == null) {
+                cancel(true);
+                return null;
+            }
+
+            SortedMap<String, Integer> installedVersionCodes = new TreeMap<>();
+            final Map<String, Update> installedUpdates = new HashMap<>();
+            for (String packageName : listeners.keySet()) {
+                Update installedUpdate = UtilsLibrary.getPackageInstalledUpdate(context, packageName);
+                installedUpdates.put(packageName, installedUpdate);
+                installedVersionCodes.put(packageName, installedUpdate.getLatestVersionCode());
+            }
+
+            long timeout = checkTimeout != null && checkTimeout > 0 ? checkTimeout : 0;
+            if (!deltaSync) {
+                return getBatch(context, installedVersionCodes, installedUpdates, null, timeout);
+            }
+
+            // The store is shared by the processes of the app, only one of them syncs at a time
+            long startTime = System.currentTimeMillis();
+            SharedState.CheckLock checkLock = SharedState.lockCheck(context, timeout);
+            if (checkLock == null) {
+                return AppUpdaterError.CHECK_TIMEOUT;
+            }
+            try {
+                // The time spent waiting for the lock is part of the deadline, at least 1 ms is left
+                long timeLeft = timeout > 0 ? Math.max(1, timeout - (System.currentTimeMillis() - startTime)) : 0;
+                return getBatch(context, installedVersionCodes, installedUpdates, new BatchStore(context, batchUrl), timeLeft);
+            } finally {
+                checkLock.release();
+            }
+        }
+
+        private AppUpdaterError getBatch(Context context, SortedMap<String, Integer> installedVersionCodes, final Map<String, Update> installedUpdates, final BatchStore store, long timeout) {
+            final FetchSession session = FetchSession.begin(UtilsLibrary.getFetchProfile(context), timeout);
+            try {
+                ParserBatch parser = new ParserBatch(context, url, installedVersionCodes, selector)
+                        .setSince(store != null ? store.getSyncToken(listeners.keySet()) : null);
+                final Set<String> failed = new HashSet<>();
+                parser.parse(new ParserBatch.Callback() {
+                    @Override
+                    public void onPackage(String packageName, Update update) {
+                        update.setFetchProfile(session.getProfile());
+                        if (store != null) {
+                            store.put(packageName, update);
+                        }
+                        publishProgress(new Result(packageName, update, UtilsLibrary.isUpdateAvailable(installedUpdates.get(packageName), update), null));
+                    }
+
+                    @Override
+                    public void onPackageError(String packageName) {
+                        failed.add(packageName);
+                        publishProgress(new Result(packageName, null, false, AppUpdaterError.BATCH_ERROR));
+                    }
+                });
+                delta = parser.isDelta();
+                if (store != null) {
+                    // Saved once all the packages of the response are. Forgotten if the server has none or an entry
+                    // couldn't be read, a later delta wouldn't have it again
+                    store.setSyncToken(failed.isEmpty() ? parser.getSyncToken() : null);
+                }
+                return null;
+            } catch (IOException e) {
+                Log.e("AppUpdater", "The batch endpoint is down or there isn't an active Internet connection.", e);
+                return session.isResponseTooLarge() ? AppUpdaterError.RESPONSE_TOO_LARGE : AppUpdaterError.BATCH_ERROR;
+            } catch (JSONException e) {
+                Log.e("AppUpdater", "The batch response is mal-formatted. AppUpdate can't check for updates.");
+                return AppUpdaterError.BATCH_ERROR;
+            } finally {
+                FetchSession.end();
+            }
+        }
+
+        @Override
+        protected void onProgressUpdate(Result... results) {
+            super.onProgressUpdate(results);
+
+            for (Result result : results) {
+                AppUpdateUtils.UpdateListener listener = listeners.get(result.packageName);
+                if (listener == null || !dispatched.add(result.packageName)) {
+                    continue;
+                }
+                if (result.error != null) {
+                    listener.onFailed(result.error);
+                } else {
+                    listener.onSuccess(result.update, result.isUpdateAvailable);
+                }
+            }
+        }
+
+        @Override
+        protected void onPostExecute(AppUpdaterError error) {
+            super.onPostExecute(error);
+
+            // The packages already dispatched keep their result, even if the response was cut after them
+            if (error != null) {
+                failAll(error);
+            } else if (!delta) {
+                failAll(AppUpdaterError.BATCH_PACKAGE_MISSING);
+            }
+        }
+
+        private void failAll(AppUpdaterError error) {
+            for (Map.Entry<String, AppUpdateUtils.UpdateListener> entry : listeners.entrySet()) {
+                if (dispatched.add(entry.getKey())) {
+                    entry.getValue().onFailed(error);
+                }
+            }
+        }
+    }
+
+    static class LatestChangelog extends AsyncTask<Void, Void, String> {
+        private ParserChangelog parser;
+        private ChangelogListener listener;
+
+        public LatestChangelog(Context context, Update update, ChangelogListener listener) {
+            this.parser = new ParserChangelog(context, update.getChangelogUrl(), UtilsLibrary.getAppInstalledVersionCode(context), update.getLatestVersionCode());
+            this.listener = listener;
+        }
+
+        @Override
+        protected String doInBackground(Void... voids) {
+            StringBuilder builder = new StringBuilder();
+            Integer page = 1;
+
+            for (int i = 0; i < Config.CHANGELOG_MAX_PAGES && page != null && !isCancelled(); i++) {
+                List<Update> updates = parser.parse(page);
+                if (updates == null) {
+                    break;
+                }
+                for (Update update : updates) {
+                    if (builder.length() > 0) {
+                        builder.append("\n\n");
+                    }
+                    builder.append(update.getLatestVersion());
+                    if (!TextUtils.isEmpty(update.getReleaseNotes())) {
+                        builder.append("\n").append(update.getReleaseNotes());
+                    }
+                }
+                page = parser.getNextPage();
+            }
+
+            return builder.length() > 0 ? builder.toString() : null;
+        }
+
+        @Override
+        protected void onPostExecute(String changelog) {
+            super.onPostExecute(changelog);
+
+            if (listener != null && changelog != null) {
+                listener.onSuccess(changelog);
+            }
+        }
+    }
+
+    /**
+     * Downloads the APK straight into a PackageInstaller session. Falls back to opening the url if it fails.
+     */
+    static class StreamingInstall extends AsyncTask<Void, Void, Boolean> {
+        private Context context;
+        private UpdateFrom updateFrom;
+        private URL apk;
+        private String sha256;
+
+        public StreamingInstall(Context context, UpdateFrom updateFrom, URL apk, String sha256) {
+            this.context = context.getApplicationContext();
+            this.updateFrom = updateFrom;
+            this.apk = apk;
+            this.sha256 = sha256;
+        }
+
+        @Override
+        protected Boolean doInBackground(Void... voids) {
+            try {
+                install(context, apk, sha256, new PackageInstallerApkInstaller(context));
+                return true;
+            } catch (IOException e) {
+                Log.e("AppUpdater", "The update can't be installed from the download stream.", e);
+                return false;
+            }
+        }
+
+        /**
+         * Streams the APK into the installer, the download is not written anywhere else.
+         */
+        static void install(Context context, URL apk, String sha256, ApkInstaller installer) throws IOException {
+            Response response = UtilsLibrary.getNoStore(context, apk);
+            try {
+                new StreamingInstaller(installer).install(response.body().byteStream(), response.body().contentLength(), sha256);
+            } finally {
+                response.close();
+            }
+        }
+
+        @Override
+        protected void onPostExecute(Boolean success) {
+            if (!success) {
+                UtilsLibrary.goToUpdate(context, updateFrom, apk);
+            }
+        }
     }
 
 }
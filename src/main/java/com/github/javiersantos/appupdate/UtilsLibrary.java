@@ -1,38 +1,273 @@
 package com.github.javiersantos.appupdate;
 
+import android.Manifest;
+import android.app.Application;
 import android.content.ActivityNotFoundException;
 import android.content.Context;
 import android.content.Intent;
 import android.content.pm.ApplicationInfo;
 import android.content.pm.PackageManager;
+import android.content.res.Resources;
 import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkCapabilities;
 import android.net.NetworkInfo;
 import android.net.Uri;
+import android.os.AsyncTask;
+import android.os.Build;
 import android.text.TextUtils;
+import android.util.DisplayMetrics;
 import android.util.Log;
 
+import androidx.core.content.FileProvider;
+
 import com.github.javiersantos.appupdate.enums.Duration;
+import com.github.javiersantos.appupdate.enums.FetchProfile;
 import com.github.javiersantos.appupdate.enums.UpdateFrom;
+import com.github.javiersantos.appupdate.interfaces.UpdateSource;
+import com.github.javiersantos.appupdate.objects.Artifact;
+import com.github.javiersantos.appupdate.objects.DnsTxt;
+import com.github.javiersantos.appupdate.objects.FDroidRepo;
 import com.github.javiersantos.appupdate.objects.GitHub;
 import com.github.javiersantos.appupdate.objects.Update;
+import com.github.javiersantos.appupdate.objects.UpdateSelector;
 import com.github.javiersantos.appupdate.objects.Version;
 
-import org.jsoup.Jsoup;
-
-import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Locale;
 
+import okhttp3.Cache;
+import okhttp3.CacheControl;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.Response;
-import okhttp3.ResponseBody;
 
 class UtilsLibrary {
+    private static OkHttpClient httpClient;
+
+    /**
+     * Client shared by every check, so connections and TLS sessions are reused.
+     * Responses are kept in a small disk cache, so checks revalidate them with conditional requests.
+     */
+    static synchronized OkHttpClient getHttpClient(Context context) {
+        if (httpClient == null) {
+            OkHttpClient.Builder builder = new OkHttpClient.Builder()
+                    .addInterceptor(FetchSession.PROFILE_INTERCEPTOR)
+                    .eventListenerFactory(FetchSession.EVENT_LISTENER_FACTORY);
+            File cacheDir = getHttpCacheDir(context, getProcessName());
+            if (cacheDir != null) {
+                builder.cache(new Cache(cacheDir, Config.HTTP_CACHE_SIZE));
+            }
+            httpClient = builder.build();
+        }
+        return httpClient;
+    }
+
+    /**
+     * One directory per process: two caches on the same directory corrupt its journal.
+     *
+     * @return the directory of the HTTP cache of this process, or null if the process is unknown
+     */
+    static File getHttpCacheDir(Context context, String processName) {
+        if (processName == null) {
+            return null;
+        }
+        String name = Config.HTTP_CACHE_DIR;
+        if (!processName.equals(context.getPackageName())) {
+            name += "-" + processName.replaceAll("[^A-Za-z0-9._-]", "_");
+        }
+        return new File(new File(context.getCacheDir(), Config.CACHE_DIR), name);
+    }
+
+    /**
+     * @return the name of the current process, e.g. com.example.app or com.example.app:sync, or null
+     */
+    static String getProcessName() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.P) {
+            return Application.getProcessName();
+        }
+        try {
+            // The arguments of the process, separated by NUL, the first one is its name
+            byte[] cmdline = readAll(new FileInputStream("/proc/self/cmdline"), -1);
+            int end = 0;
+            while (end < cmdline.length && cmdline[end] != 0) {
+                end++;
+            }
+            return end > 0 ? new String(cmdline, 0, end, "UTF-8") : null;
+        } catch (IOException e) {
+            Log.e("AppUpdater", "The name of the process can't be read, the HTTP cache is disabled.", e);
+            return null;
+        }
+    }
+
+    /**
+     * GET through the shared client. The caller must close the response.
+     *
+     * @throws FileNotFoundException if the server returns 404, like HttpURLConnection does
+     */
+    static Response get(Context context, URL url) throws IOException {
+        return execute(context, new Request.Builder().url(url).build());
+    }
+
+    /**
+     * GET through the shared client, without copying the response into the HTTP cache. For the APKs: they are
+     * bigger than the cache and are already written where they are needed. The caller must close the response.
+     *
+     * @throws FileNotFoundException if the server returns 404, like HttpURLConnection does
+     */
+    static Response getNoStore(Context context, URL url) throws IOException {
+        return execute(context, new Request.Builder()
+                .url(url)
+                .cacheControl(new CacheControl.Builder().noStore().build())
+                .build());
+    }
+
+    /**
+     * Executes the request through the shared client. The caller must close the response.
+     *
+     * @throws FileNotFoundException if the server returns 404, like HttpURLConnection does
+     */
+    static Response execute(Context context, Request request) throws IOException {
+        Response response = getHttpClient(context).newCall(request).execute();
+        if (!response.isSuccessful()) {
+            response.close();
+            if (response.code() == 404) {
+                throw new FileNotFoundException(request.url().toString());
+            }
+            throw new IOException("HTTP " + response.code() + " for " + request.url());
+        }
+        return response;
+    }
+
+    /**
+     * Body of the response, limited to maxBytes after decompression.
+     *
+     * @throws ResponseTooLargeException right away if the Content-Length is already bigger, or while reading
+     */
+    static InputStream getBody(Response response, long maxBytes) throws IOException {
+        if (response.body().contentLength() > maxBytes) {
+            throw BoundedInputStream.tooLarge(maxBytes);
+        }
+        return new BoundedInputStream(response.body().byteStream(), maxBytes);
+    }
+
+    /**
+     * @return the built-in source of updateFrom, or null for UpdateFrom.CUSTOM
+     */
+    static UpdateSource getUpdateSource(UpdateFrom updateFrom, GitHub gitHub, DnsTxt dnsTxt, FDroidRepo fDroidRepo, String url) {
+        switch (updateFrom) {
+            case GITHUB:
+                return new SourceGitHub(gitHub);
+            case DNS_TXT:
+                return new SourceDnsTxt(dnsTxt);
+            case FDROID_REPO:
+                return new SourceFDroidRepo(fDroidRepo);
+            case AMAZON:
+            case FDROID:
+                return new SourceStorePage(updateFrom);
+            case XML:
+            case JSON:
+            case BINARY:
+                return new SourceFile(updateFrom, url);
+            case CUSTOM:
+                return null;
+            default:
+                return new SourceGooglePlay();
+        }
+    }
+
+    /**
+     * Reads the latest version from the X-AppUpdater-Version-Code and X-AppUpdater-Version headers
+     * of a HEAD request to the url.
+     *
+     * @return the version, or null if the server doesn't send them
+     */
+    static Update getLatestAppVersionHead(Context context, URL url) {
+        if (url == null) {
+            return null;
+        }
+
+        Request request = new Request.Builder()
+                .url(url)
+                .head()
+                .build();
+        Response response = null;
+        try {
+            response = getHttpClient(context).newCall(request).execute();
+            String versionCode = response.header(Config.HEADER_VERSION_CODE);
+            if (!response.isSuccessful() || versionCode == null) {
+                return null;
+            }
+
+            String version = response.header(Config.HEADER_VERSION);
+            Update update = new Update(version != null ? version.trim() : versionCode.trim(), Integer.parseInt(versionCode.trim()));
+            update.setCheckInterval(getMaxAge(response.header("Cache-Control")));
+            return update;
+        } catch (IOException | NumberFormatException e) {
+            Log.e("AppUpdater", "The version headers can't be read, checking the whole file.", e);
+            return null;
+        } finally {
+            if (response != null) {
+                response.close();
+            }
+        }
+    }
+
+    /**
+     * Resolves the host and opens a connection to it in the background, so the check that follows reuses it
+     * from the connection pool instead of waiting for DNS and the TLS handshake.
+     */
+    static void prewarm(final Context context, UpdateSource source) {
+        // Any answer to the HEAD request opens the connection, even from a server that doesn't send the version headers
+        final URL url = source != null ? source.getCheckUrl(context) : null;
+        if (url == null) {
+            return;
+        }
+
+        AsyncTask.THREAD_POOL_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                Request request = new Request.Builder()
+                        .url(url)
+                        .head()
+                        .build();
+                try {
+                    getHttpClient(context).newCall(request).execute().close();
+                } catch (IOException ignore) {
+                    // The check will report it
+                }
+            }
+        });
+    }
+
+    /**
+     * LITE on metered networks or with Data Saver enabled for the app, FULL otherwise.
+     */
+    static FetchProfile getFetchProfile(Context context) {
+        ConnectivityManager cm = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        if (cm == null) {
+            return FetchProfile.FULL;
+        }
+        if (cm.isActiveNetworkMetered()) {
+            return FetchProfile.LITE;
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N && cm.getRestrictBackgroundStatus() == ConnectivityManager.RESTRICT_BACKGROUND_STATUS_ENABLED) {
+            return FetchProfile.LITE;
+        }
+        return FetchProfile.FULL;
+    }
 
     static String getAppName(Context context) {
         ApplicationInfo applicationInfo = context.getApplicationInfo();
@@ -68,6 +303,15 @@ class UtilsLibrary {
         return versionCode;
     }
 
+    /**
+     * Reads the version of another installed app from the index of installed packages, built on the first call.
+     *
+     * @return version and versionCode of the app, 0.0.0.0 and 0 if it isn't installed
+     */
+    static Update getPackageInstalledUpdate(Context context, String packageName) {
+        return InstalledPackages.get(context).getInstalledUpdate(packageName);
+    }
+
     static Boolean isUpdateAvailable(Update installedVersion, Update latestVersion) {
         if (latestVersion.getLatestVersionCode() != null && latestVersion.getLatestVersionCode() > 0) {
             return latestVersion.getLatestVersionCode() > installedVersion.getLatestVersionCode();
@@ -87,6 +331,180 @@ class UtilsLibrary {
         }
     }
 
+    static UpdateSelector getUpdateSelector(UpdateSelector selector) {
+        UpdateSelector res = selector == null ? new UpdateSelector() : selector;
+        return new UpdateSelector(
+                res.getChannel() != null ? res.getChannel() : UpdateSelector.CHANNEL_STABLE,
+                res.getAbis() != null ? res.getAbis() : getSupportedAbis(),
+                res.getSdk() != null ? res.getSdk() : Build.VERSION.SDK_INT,
+                res.getLocale() != null ? res.getLocale() : Locale.getDefault(),
+                res.getDensity() != null ? res.getDensity() : Resources.getSystem().getDisplayMetrics().densityDpi);
+    }
+
+    @SuppressWarnings("deprecation")
+    static String[] getSupportedAbis() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            return Build.SUPPORTED_ABIS;
+        } else if (TextUtils.isEmpty(Build.CPU_ABI2)) {
+            return new String[]{Build.CPU_ABI};
+        } else {
+            return new String[]{Build.CPU_ABI, Build.CPU_ABI2};
+        }
+    }
+
+    /**
+     * Scores an entry of a multi-variant file against the (resolved) selector.
+     * Attributes missing in the entry match anything, but a matching attribute is worth more than a missing one.
+     *
+     * @return -1 if the entry can't be used on this device, a higher value for a more specific match otherwise
+     */
+    static Integer getVariantScore(UpdateSelector selector, String channel, String abi, Integer minSdk, String locale) {
+        int score = 0;
+
+        if (channel != null) {
+            if (!channel.equalsIgnoreCase(selector.getChannel())) {
+                return -1;
+            }
+            score += 1000;
+        }
+
+        if (abi != null) {
+            int index = getAbiIndex(selector, abi);
+            if (index == -1) {
+                return -1;
+            }
+            // Prefer the ABIs the device lists first
+            score += 100 + Math.max(0, 50 - index);
+        }
+
+        if (minSdk != null) {
+            if (minSdk > selector.getSdk()) {
+                return -1;
+            }
+            score += 10;
+        }
+
+        if (locale != null) {
+            String[] parts = locale.split("[-_]");
+            if (!parts[0].equalsIgnoreCase(selector.getLocale().getLanguage())) {
+                return -1;
+            }
+            if (parts.length > 1) {
+                if (!parts[1].equalsIgnoreCase(selector.getLocale().getCountry())) {
+                    return -1;
+                }
+                score += 1;
+            }
+            score += 1;
+        }
+
+        return score;
+    }
+
+    /**
+     * @return language tags to try for the locale, from the most to the least specific, ending with English
+     */
+    static List<String> getLocaleFallbacks(Locale locale) {
+        List<String> tags = new ArrayList<>();
+        if (!TextUtils.isEmpty(locale.getLanguage())) {
+            if (!TextUtils.isEmpty(locale.getCountry())) {
+                tags.add(locale.getLanguage() + "-" + locale.getCountry());
+            }
+            tags.add(locale.getLanguage());
+        }
+        if (!tags.contains("en")) {
+            tags.add("en");
+        }
+        return tags;
+    }
+
+    static String getDensityBucket(Integer densityDpi) {
+        if (densityDpi <= DisplayMetrics.DENSITY_LOW) {
+            return "ldpi";
+        } else if (densityDpi <= DisplayMetrics.DENSITY_MEDIUM) {
+            return "mdpi";
+        } else if (densityDpi <= DisplayMetrics.DENSITY_HIGH) {
+            return "hdpi";
+        } else if (densityDpi <= DisplayMetrics.DENSITY_XHIGH) {
+            return "xhdpi";
+        } else if (densityDpi <= DisplayMetrics.DENSITY_XXHIGH) {
+            return "xxhdpi";
+        } else {
+            return "xxxhdpi";
+        }
+    }
+
+    /**
+     * @return position of the ABI in the ABIs of the (resolved) selector, compared ignoring case, or -1 if it isn't supported
+     */
+    static int getAbiIndex(UpdateSelector selector, String abi) {
+        String[] abis = selector.getAbis();
+        for (int i = 0; i < abis.length; i++) {
+            if (abi.equalsIgnoreCase(abis[i])) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Chooses the artifact for the ABI the device lists first, and among those the smallest one, that can be installed
+     * with the ABIs and density of the (resolved) selector. Artifacts without ABI run with the first ABI of the device.
+     * Artifacts without a size are only used if no other compatible artifact of the same ABI has one.
+     *
+     * @return the artifact, or null if none is compatible
+     */
+    static Artifact getBestArtifact(List<Artifact> artifacts, UpdateSelector selector) {
+        String densityBucket = getDensityBucket(selector.getDensity());
+        Artifact best = null;
+        int bestAbiIndex = -1;
+
+        for (Artifact artifact : artifacts) {
+            int abiIndex = artifact.getAbi() != null ? getAbiIndex(selector, artifact.getAbi()) : 0;
+            if (abiIndex == -1) {
+                continue;
+            }
+            if (artifact.getDensity() != null && !artifact.getDensity().equalsIgnoreCase(densityBucket)) {
+                continue;
+            }
+            // A 32-bit APK on a 64-bit device runs slower, the size only decides between artifacts of the same ABI
+            if (best == null || abiIndex < bestAbiIndex || (abiIndex == bestAbiIndex
+                    && artifact.getSize() != null && (best.getSize() == null || artifact.getSize() < best.getSize()))) {
+                best = artifact;
+                bestAbiIndex = abiIndex;
+            }
+        }
+
+        return best;
+    }
+
+    static void setBestArtifact(Update update, UpdateSelector selector) {
+        if (update == null || update.getArtifacts() == null || update.getArtifacts().isEmpty()) {
+            return;
+        }
+
+        Artifact universal = null;
+        for (Artifact artifact : update.getArtifacts()) {
+            if (artifact.isUniversal()) {
+                universal = artifact;
+                break;
+            }
+        }
+
+        Artifact best = getBestArtifact(update.getArtifacts(), getUpdateSelector(selector));
+        if (best == null) {
+            Log.e("AppUpdater", "No artifact is compatible with this device, using the default url.");
+            return;
+        }
+
+        update.setUrlToDownload(best.getUrl());
+        update.setDownloadSize(best.getSize());
+        update.setSha256(best.getSha256());
+        if (universal != null && universal.getSize() != null && best.getSize() != null) {
+            update.setDownloadSizeSaved(universal.getSize() - best.getSize());
+        }
+    }
+
     static Boolean isStringAVersion(String version) {
         return version.matches(".*\\d+.*");
     }
@@ -113,181 +531,111 @@ class UtilsLibrary {
         return res;
     }
 
-    private static URL getUpdateURL(Context context, UpdateFrom updateFrom, GitHub gitHub) {
-        String res;
-
-        switch (updateFrom) {
-            default:
-                res = String.format(Config.PLAY_STORE_URL, getAppPackageName(context), Locale.getDefault().getLanguage());
-                break;
-            case GITHUB:
-                res = Config.GITHUB_URL + gitHub.getGitHubUser() + "/" + gitHub.getGitHubRepo() + "/releases/latest";
-                break;
-            case AMAZON:
-                res = Config.AMAZON_URL + getAppPackageName(context);
-                break;
-            case FDROID:
-                res = Config.FDROID_URL + getAppPackageName(context);
-                break;
-        }
-
+    /**
+     * @param expectedSize size of the content if known (Content-Length, file length), otherwise -1
+     */
+    static byte[] readAll(InputStream in, long expectedSize) throws IOException {
         try {
-            return new URL(res);
-        } catch (MalformedURLException e) {
-            throw new RuntimeException(e);
+            // Sized for the content up front, the bounded stream fails before it could grow too much
+            ByteArrayOutputStream out = new ByteArrayOutputStream(expectedSize > 0 && expectedSize <= Integer.MAX_VALUE ? (int) expectedSize : Config.READ_BUFFER_SIZE);
+            byte[] buffer = new byte[Config.READ_BUFFER_SIZE];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
         }
-
     }
 
-    static Update getLatestAppVersionStore(Context context, UpdateFrom updateFrom, GitHub gitHub) {
-        switch (updateFrom) {
-            case GOOGLE_PLAY:
-                return getLatestAppVersionGooglePlay(context);
-            default:
-                return getLatestAppVersionHttp(context, updateFrom, gitHub);
-        }
+    /**
+     * File where the last successful check of a source is kept, for checks made while offline.
+     */
+    static File getLastUpdateFile(Context context, UpdateSource source) {
+        String name = "update_" + Integer.toHexString(source.getKey().hashCode()) + ".bin";
+        return new File(new File(context.getCacheDir(), Config.CACHE_DIR), name);
     }
 
-    private static Update getLatestAppVersionGooglePlay(Context context) {
-        String version = "0.0.0.0";
-        String recentChanges = "";
-
-        URL updateURL = getUpdateURL(context, UpdateFrom.GOOGLE_PLAY, null);
-
-        try {
-            version = getJsoupString(updateURL.toString(), ".hAyfc .htlgb", 7);
-
-            //TODO: Release Notes for Google Play is not working
-            //recentChanges = getJsoupString(updateURL.toString(), ".W4P4ne .DWPxHb", 1);
-
-            if (TextUtils.isEmpty(version)) {
-                Log.e("AppUpdater", "Cannot retrieve latest version. Is it configured properly?");
-            }
-        } catch (Exception e) {
-            Log.e("AppUpdater", "App wasn't found in the provided source. Is it published?");
-        }
-
-        Log.e("Update", version);
-
-        return new Update(version, recentChanges, updateURL);
+    /**
+     * Content of a file written with writeFile, streamed instead of built in memory.
+     */
+    interface FileContent {
+        void write(OutputStream out) throws IOException;
     }
 
-    private static String getJsoupString(String url, String css, int position) throws Exception {
-        return Jsoup.connect(url)
-                .timeout(30000)
-                .userAgent("Mozilla/5.0 (Windows; U; WindowsNT 5.1; en-US; rv1.8.1.6) Gecko/20070725 Firefox/2.0.0.6")
-                .get()
-                .select(css)
-                .get(position)
-                .ownText();
+    /**
+     * Writes the content aside and renames it, so a check that is killed halfway doesn't leave a broken file.
+     */
+    static void writeFile(File file, final byte[] content) throws IOException {
+        writeFile(file, new FileContent() {
+            @Override
+            public void write(OutputStream out) throws IOException {
+                out.write(content);
+            }
+        });
     }
 
-    private static Update getLatestAppVersionHttp(Context context, UpdateFrom updateFrom, GitHub gitHub) {
-        Boolean isAvailable = false;
-        String source = "";
-        OkHttpClient client = new OkHttpClient();
-        URL url = getUpdateURL(context, updateFrom, gitHub);
-        Request request = new Request.Builder()
-                .url(url)
-                .build();
-        ResponseBody body = null;
-
+    static void writeFile(File file, FileContent content) throws IOException {
+        File tmp = new File(file.getParentFile(), file.getName() + ".tmp");
+        OutputStream out = new FileOutputStream(tmp);
+        boolean written = false;
         try {
-            Response response = client.newCall(request).execute();
-            body = response.body();
-            BufferedReader reader = new BufferedReader(new InputStreamReader(body.byteStream(), "UTF-8"));
-            StringBuilder str = new StringBuilder();
-
-            String line;
-            while ((line = reader.readLine()) != null) {
-                switch (updateFrom) {
-                    case GITHUB:
-                        if (line.contains(Config.GITHUB_TAG_RELEASE)) {
-                            str.append(line);
-                            isAvailable = true;
-                        }
-                        break;
-                    case AMAZON:
-                        if (line.contains(Config.AMAZON_TAG_RELEASE)) {
-                            str.append(line);
-                            isAvailable = true;
-                        }
-                        break;
-                    case FDROID:
-                        if (line.contains(Config.FDROID_TAG_RELEASE)) {
-                            str.append(line);
-                            isAvailable = true;
-                        }
-                }
-            }
-
-            if (str.length() == 0) {
-                Log.e("AppUpdater", "Cannot retrieve latest version. Is it configured properly?");
-            }
-
-            response.body().close();
-            source = str.toString();
-        } catch (FileNotFoundException e) {
-            Log.e("AppUpdater", "App wasn't found in the provided source. Is it published?");
-        } catch (IOException ignore) {
-
+            content.write(out);
+            written = true;
         } finally {
-            if (body != null) {
-                body.close();
+            out.close();
+            if (!written) {
+                tmp.delete();
             }
         }
+        if (!tmp.renameTo(file)) {
+            tmp.delete();
+            throw new IOException("The file " + file.getName() + " can't be replaced.");
+        }
+    }
 
-        final String version = getVersion(updateFrom, isAvailable, source);
-        final URL updateUrl = getUpdateURL(context, updateFrom, gitHub);
+    static void saveLastUpdate(File file, Update update) {
+        File dir = file.getParentFile();
+        if (dir == null || !(dir.isDirectory() || dir.mkdirs())) {
+            return;
+        }
 
-        return new Update(version, updateUrl);
+        try {
+            writeFile(file, WriterBinary.write(update));
+        } catch (IOException e) {
+            Log.e("AppUpdater", "The last update can't be saved.", e);
+        }
     }
 
-    private static String getVersion(UpdateFrom updateFrom, Boolean isAvailable, String source) {
-        String version = "0.0.0.0";
-        if (isAvailable) {
-            switch (updateFrom) {
-                case GITHUB:
-                    String[] splitGitHub = source.split(Config.GITHUB_TAG_RELEASE);
-                    if (splitGitHub.length > 1) {
-                        splitGitHub = splitGitHub[1].split("(\")");
-                        version = splitGitHub[0].trim();
-                        if (version.startsWith("v"))
-                        { // Some repo uses vX.X.X
-                            splitGitHub = version.split("(v)", 2);
-                            version = splitGitHub[1].trim();
-                        }
-                    }
-                    break;
-                case AMAZON:
-                    String[] splitAmazon = source.split(Config.AMAZON_TAG_RELEASE);
-                    splitAmazon = splitAmazon[1].split("(<)");
-                    version = splitAmazon[0].trim();
-                    break;
-                case FDROID:
-                    String[] splitFDroid = source.split(Config.FDROID_TAG_RELEASE);
-                    splitFDroid = splitFDroid[1].split("(<)");
-                    version = splitFDroid[0].trim();
-                    break;
-            }
+    static Update loadLastUpdate(File file) {
+        if (!file.exists()) {
+            return null;
         }
-        return version;
-    }
 
-    static Update getLatestAppVersion(UpdateFrom updateFrom, String url) {
-        if (updateFrom == UpdateFrom.XML){
-            ParserXML parser = new ParserXML(url);
-            return parser.parse();
-        } else {
-            return new ParserJSON(url).parse();
+        try {
+            byte[] content = readAll(new FileInputStream(file), file.length());
+            Update update = new ParserBinary().decode(content, content.length);
+            if (update != null) {
+                update.setCached(true);
+            }
+            return update;
+        } catch (IOException e) {
+            Log.e("AppUpdater", "The last update can't be read.", e);
+            return null;
         }
     }
 
-
     static Intent intentToUpdate(Context context, UpdateFrom updateFrom, URL url) {
         Intent intent;
-
-        if (updateFrom.equals(UpdateFrom.GOOGLE_PLAY)) {
+        File apk = updateFrom.equals(UpdateFrom.GOOGLE_PLAY) ? null : getPrefetchedApk(context, url);
+
+        if (apk != null) {
+            Uri uri = FileProvider.getUriForFile(context, context.getPackageName() + Config.FILE_PROVIDER_AUTHORITY_SUFFIX, apk);
+            intent = new Intent(Intent.ACTION_VIEW)
+                    .setDataAndType(uri, "application/vnd.android.package-archive")
+                    .addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION | Intent.FLAG_ACTIVITY_NEW_TASK);
+        } else if (updateFrom.equals(UpdateFrom.GOOGLE_PLAY)) {
             intent = new Intent(Intent.ACTION_VIEW, Uri.parse("market://details?id=" + getAppPackageName(context)));
         } else {
             intent = new Intent(Intent.ACTION_VIEW, Uri.parse(url.toString()));
@@ -311,14 +659,109 @@ class UtilsLibrary {
         }
     }
 
+    /**
+     * @return true if the url is expected to be an APK that can be prefetched, rather than a store or release page
+     */
+    static Boolean isApkUrl(UpdateFrom updateFrom, URL url) {
+        if (url == null) {
+            return false;
+        }
+        switch (updateFrom) {
+            case XML:
+            case JSON:
+            case BINARY:
+            case DNS_TXT:
+            case FDROID_REPO:
+                return true;
+            default:
+                return url.getPath().toLowerCase(Locale.ROOT).endsWith(".apk");
+        }
+    }
+
+    /**
+     * @return the prefetched APK of the url, or null if there is none or the app can't install it
+     */
+    static File getPrefetchedApk(Context context, URL url) {
+        if (url == null || Build.VERSION.SDK_INT < Build.VERSION_CODES.N) {
+            return null;
+        }
+        // Without REQUEST_INSTALL_PACKAGES in the app manifest the installer refuses the file on API 26+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O && !hasPermission(context, Manifest.permission.REQUEST_INSTALL_PACKAGES)) {
+            return null;
+        }
+        return new ApkCache(context).get(url);
+    }
+
+    /**
+     * @return true if the APK can be streamed into a PackageInstaller session
+     */
+    static Boolean canStreamInstall(Context context, UpdateFrom updateFrom, URL url) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP || !isApkUrl(updateFrom, url)) {
+            return false;
+        }
+        return Build.VERSION.SDK_INT < Build.VERSION_CODES.O || hasPermission(context, Manifest.permission.REQUEST_INSTALL_PACKAGES);
+    }
+
+    private static boolean hasPermission(Context context, String permission) {
+        try {
+            String[] permissions = context.getPackageManager().getPackageInfo(context.getPackageName(), PackageManager.GET_PERMISSIONS).requestedPermissions;
+            return permissions != null && Arrays.asList(permissions).contains(permission);
+        } catch (PackageManager.NameNotFoundException e) {
+            return false;
+        }
+    }
+
     static Boolean isAbleToShow(Integer successfulChecks, Integer showEvery) {
         return successfulChecks % showEvery == 0;
     }
 
+    static Integer getMaxAge(String cacheControl) {
+        if (cacheControl == null) {
+            return null;
+        }
+
+        for (String directive : cacheControl.split(",")) {
+            String[] parts = directive.trim().split("=", 2);
+            if (parts.length == 2 && parts[0].trim().equalsIgnoreCase("max-age")) {
+                try {
+                    return Integer.valueOf(parts[1].replace("\"", "").trim());
+                } catch (NumberFormatException ignored) {}
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * @return the interval of the app, raised by the server up to MAX_SERVER_CHECK_INTERVAL
+     */
+    static Integer getCheckInterval(Integer checkInterval, Integer serverInterval) {
+        if (serverInterval != null && serverInterval > checkInterval) {
+            return Math.max(checkInterval, Math.min(serverInterval, Config.MAX_SERVER_CHECK_INTERVAL));
+        }
+
+        return checkInterval;
+    }
+
+    static Long getNextCheckTime(Long now, Integer intervalSeconds, Float jitter) {
+        long intervalMillis = intervalSeconds * 1000L;
+        return now + intervalMillis + (long) (intervalMillis * Config.CHECK_JITTER_RATIO * jitter);
+    }
+
+    static Boolean isCheckDue(Long now, Long nextCheck) {
+        return now >= nextCheck;
+    }
+
     static Boolean isNetworkAvailable(Context context) {
         Boolean res = false;
         ConnectivityManager cm = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
-        if (cm != null) {
+        if (cm != null && Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            Network network = cm.getActiveNetwork();
+            NetworkCapabilities capabilities = network != null ? cm.getNetworkCapabilities(network) : null;
+            if (capabilities != null) {
+                res = capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET);
+            }
+        } else if (cm != null) {
             NetworkInfo networkInfo = cm.getActiveNetworkInfo();
             if (networkInfo != null) {
                 res = networkInfo.isConnected();
@@ -0,0 +1,124 @@
+package com.github.javiersantos.appupdate;
+
+import androidx.annotation.NonNull;
+
+import com.github.javiersantos.appupdate.objects.Artifact;
+import com.github.javiersantos.appupdate.objects.Update;
+
+import org.json.JSONException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+
+/**
+ * Generates the binary update file used by UpdateFrom.BINARY. <br/>
+ * The input is the same JSON used by UpdateFrom.JSON, so both files can be published side by side.
+ */
+public class WriterBinary {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * Converts the content of a JSON updater file into its binary form.
+     *
+     * @param json content of the JSON updater file
+     * @return the binary updater file
+     */
+    public static byte[] fromJSON(@NonNull String json) throws JSONException, IOException {
+        return write(ParserJSON.toUpdate(json));
+    }
+
+    public static byte[] write(@NonNull Update update) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+        write(update, out);
+        return out.toByteArray();
+    }
+
+    public static void write(@NonNull Update update, @NonNull OutputStream out) throws IOException {
+        out.write(ParserBinary.MAGIC);
+        out.write(ParserBinary.FORMAT_VERSION);
+
+        writeString(out, ParserBinary.TAG_LATEST_VERSION, update.getLatestVersion());
+        if (update.getLatestVersionCode() != null && update.getLatestVersionCode() > 0) {
+            writeInt(out, ParserBinary.TAG_LATEST_VERSION_CODE, update.getLatestVersionCode());
+        }
+        if (update.getReleaseNotes() != null) {
+            writeString(out, ParserBinary.TAG_RELEASE_NOTES, update.getReleaseNotes());
+        }
+        if (update.getUrlToDownload() != null) {
+            writeString(out, ParserBinary.TAG_URL, update.getUrlToDownload().toString());
+        }
+        if (update.getCheckInterval() != null) {
+            writeInt(out, ParserBinary.TAG_CHECK_INTERVAL, update.getCheckInterval());
+        }
+        if (update.getChangelogUrl() != null) {
+            writeString(out, ParserBinary.TAG_CHANGELOG_URL, update.getChangelogUrl().toString());
+        }
+        if (update.getReleaseNotesUrl() != null) {
+            writeString(out, ParserBinary.TAG_RELEASE_NOTES_URL, update.getReleaseNotesUrl());
+        }
+        if (update.getSha256() != null) {
+            writeString(out, ParserBinary.TAG_SHA256, update.getSha256());
+        }
+        if (update.getArtifacts() != null) {
+            for (Artifact artifact : update.getArtifacts()) {
+                ByteArrayOutputStream fields = new ByteArrayOutputStream(128);
+                if (artifact.getAbi() != null) {
+                    writeString(fields, ParserBinary.TAG_ARTIFACT_ABI, artifact.getAbi());
+                }
+                if (artifact.getDensity() != null) {
+                    writeString(fields, ParserBinary.TAG_ARTIFACT_DENSITY, artifact.getDensity());
+                }
+                writeString(fields, ParserBinary.TAG_ARTIFACT_URL, artifact.getUrl().toString());
+                if (artifact.getSize() != null) {
+                    writeLong(fields, ParserBinary.TAG_ARTIFACT_SIZE, artifact.getSize());
+                }
+                if (artifact.getSha256() != null) {
+                    writeString(fields, ParserBinary.TAG_ARTIFACT_SHA256, artifact.getSha256());
+                }
+
+                writeVarint(out, ParserBinary.TAG_ARTIFACT);
+                writeVarint(out, fields.size());
+                fields.writeTo(out);
+            }
+        }
+    }
+
+    private static void writeString(OutputStream out, int tag, String value) throws IOException {
+        byte[] bytes = value.getBytes(UTF_8);
+        writeVarint(out, tag);
+        writeVarint(out, bytes.length);
+        out.write(bytes);
+    }
+
+    private static void writeInt(OutputStream out, int tag, int value) throws IOException {
+        writeVarint(out, tag);
+        writeVarint(out, getVarintSize(value));
+        writeVarint(out, value);
+    }
+
+    private static void writeLong(OutputStream out, int tag, long value) throws IOException {
+        writeVarint(out, tag);
+        writeVarint(out, getVarintSize(value));
+        writeVarint(out, value);
+    }
+
+    private static void writeVarint(OutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static int getVarintSize(long value) {
+        int size = 1;
+        while ((value & ~0x7FL) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+}
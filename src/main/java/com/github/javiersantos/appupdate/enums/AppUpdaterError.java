@@ -11,6 +11,11 @@ public enum AppUpdaterError {
      */
     GITHUB_USER_REPO_INVALID,
 
+    /**
+     * GitHub API is down or its latest release can't be read
+     */
+    GITHUB_ERROR,
+
     /**
      * No Internet connection available
      */
@@ -33,7 +38,62 @@ public enum AppUpdaterError {
     /**
      * JSON file is invalid or is down
      */
-    JSON_ERROR
+    JSON_ERROR,
+
+    /**
+     * URL for the binary file is not valid
+     */
+    BINARY_URL_MALFORMED,
+
+    /**
+     * Binary file is invalid or is down
+     */
+    BINARY_ERROR,
+
+    /**
+     * DNS TXT record name is empty or the format of its update file is not XML, JSON or BINARY
+     */
+    DNS_TXT_INVALID,
+
+    /**
+     * UpdateFrom.CUSTOM is used without setting an UpdateSource
+     */
+    UPDATE_SOURCE_MISSING,
+
+    /**
+     * The check of another process of the app was still running at the end of setCheckTimeout(), and there was no
+     * previous result to return instead
+     */
+    CHECK_TIMEOUT,
+    /**
+     * A response is bigger than expected for its source, the url is probably not the right one
+     */
+    RESPONSE_TOO_LARGE,
+
+    /**
+     * URL of the batch endpoint is not valid or no package was added
+     */
+    BATCH_URL_MALFORMED,
+
+    /**
+     * Batch response is invalid or the endpoint is down
+     */
+    BATCH_ERROR,
+
+    /**
+     * The batch response has no entry for the package
+     */
+    BATCH_PACKAGE_MISSING,
+
+    /**
+     * URL of the F-Droid repository is not a valid https url or the index is not index-v1.json or index-v2.json
+     */
+    FDROID_REPO_INVALID,
+
+    /**
+     * F-Droid index is invalid or is down, or it has no version of the package for this device
+     */
+    FDROID_REPO_ERROR
 
 
     }
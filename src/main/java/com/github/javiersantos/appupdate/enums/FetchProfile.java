@@ -0,0 +1,14 @@
+package com.github.javiersantos.appupdate.enums;
+
+public enum FetchProfile {
+    /**
+     * Metered network or Data Saver enabled: responses in the HTTP cache are reused even if they are stale,
+     * otherwise they are revalidated with conditional requests. Nothing is downloaded ahead of time.
+     */
+    LITE,
+
+    /**
+     * Unmetered network: every check is revalidated and the APK may be downloaded ahead of time.
+     */
+    FULL
+}
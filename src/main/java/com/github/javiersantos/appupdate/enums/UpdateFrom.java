@@ -29,6 +29,33 @@ public enum UpdateFrom {
     /**
      * @see <a href="https://github.com/javiersantos/AppUpdater/wiki/UpdateFrom.JSON">Wiki: UpdateFrom.JSON</a>
      */
-    JSON
+    JSON,
+
+    /**
+     * Compact binary version of the JSON file. Generate it with {@link com.github.javiersantos.appupdate.WriterBinary}.
+     */
+    BINARY,
+
+    /**
+     * Latest version in a DNS TXT record, the update file is only read when there is an update. Set it with setDnsTxt.
+     *
+     * @see com.github.javiersantos.appupdate.objects.DnsTxt
+     */
+    DNS_TXT,
+
+    /**
+     * Latest version in the index of an F-Droid repository, read from a local mirror refreshed with conditional
+     * requests. Set it with setFDroidRepo.
+     *
+     * @see com.github.javiersantos.appupdate.objects.FDroidRepo
+     */
+    FDROID_REPO,
+
+    /**
+     * Source implemented by the app, set with setUpdateSource.
+     *
+     * @see com.github.javiersantos.appupdate.interfaces.UpdateSource
+     */
+    CUSTOM
 
 }
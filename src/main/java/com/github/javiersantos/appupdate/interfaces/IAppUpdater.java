@@ -13,7 +13,11 @@ import com.github.javiersantos.appupdate.enums.AppUpdaterError;
 import com.github.javiersantos.appupdate.enums.Display;
 import com.github.javiersantos.appupdate.enums.Duration;
 import com.github.javiersantos.appupdate.enums.UpdateFrom;
+import com.github.javiersantos.appupdate.objects.DnsTxt;
+import com.github.javiersantos.appupdate.objects.FDroidRepo;
+import com.github.javiersantos.appupdate.objects.GitHub;
 import com.github.javiersantos.appupdate.objects.Update;
+import com.github.javiersantos.appupdate.objects.UpdateSelector;
 
 public interface IAppUpdater {
     /**
@@ -53,6 +57,124 @@ public interface IAppUpdater {
      */
     AppUpdate setGitHubUserAndRepo(@NonNull String user, @NonNull String repo);
 
+    /**
+     * Set the GitHub repo where the releases are uploaded, with an optional token and API url (GitHub Enterprise or a local server).
+     *
+     * @param gitHub GitHub user, repo, token and API url
+     * @return this
+     */
+    AppUpdate setGitHub(@NonNull GitHub gitHub);
+
+    /**
+     * Set the DNS TXT record with the latest version and the update file to read when there is an update.
+     * Use it with UpdateFrom.DNS_TXT.
+     *
+     * @param dnsTxt name of the record, format and url of the update file
+     * @return this
+     */
+    AppUpdate setDnsTxt(@NonNull DnsTxt dnsTxt);
+
+    /**
+     * Set the F-Droid repository whose index has the latest version. Use it with UpdateFrom.FDROID_REPO.
+     * The first check downloads the whole index. If it takes longer than the check timeout, the check fails but the
+     * download goes on in the background for the next one. On a metered network the index is only downloaded once it
+     * has been mirrored, until then the check fails. The repository must be served over HTTPS.
+     *
+     * @param fDroidRepo url of the repository, index format and package to check
+     * @return this
+     */
+    AppUpdate setFDroidRepo(@NonNull FDroidRepo fDroidRepo);
+
+    /**
+     * Set a source implemented by the app, to read the latest update in its own way. Sets UpdateFrom.CUSTOM.
+     * The "Update" button opens the url to download of the update.
+     *
+     * @param updateSource source where the latest update is read from
+     * @return this
+     * @see UpdateSource
+     */
+    AppUpdate setUpdateSource(@NonNull UpdateSource updateSource);
+
+    /**
+     * Keep the result of the last check and use it when the device is offline, instead of failing with NETWORK_NOT_AVAILABLE.
+     * A new check is made once, as soon as a working network is available again (API 21+). Default: false.
+     *
+     * @param offlineFirst true to use the last check while offline
+     * @return this
+     * @see Update#isCached()
+     */
+    AppUpdate setOfflineFirst(Boolean offlineFirst);
+
+    /**
+     * Download the APK of an available update in the background, while the device is charging on an unmetered network,
+     * so the "Update" button installs it right away. Only for XML, JSON, BINARY and GitHub releases with an APK asset,
+     * on API 24+. On API 26+ the app must declare the REQUEST_INSTALL_PACKAGES permission. Default: false.
+     *
+     * @param prefetch true to download the update ahead of time
+     * @return this
+     */
+    AppUpdate setPrefetch(Boolean prefetch);
+
+    /**
+     * Set the JobScheduler id of the prefetch job, when the default one is already used by a job of the app.
+     * The ids are shared by every job of the app, the one of the prefetch must not be used by any other job.
+     * Default: 0x41555031.
+     *
+     * @param jobId id of the prefetch job
+     * @return this
+     */
+    AppUpdate setPrefetchJobId(Integer jobId);
+
+    /**
+     * Make the "Update" button download the APK straight into the package installer, instead of opening the url.
+     * The APK is verified against the "sha256" of the XML/JSON file, if any, before it is installed.
+     * Only for XML, JSON, BINARY and GitHub releases with an APK asset, on API 21+.
+     * On API 26+ the app must declare the REQUEST_INSTALL_PACKAGES permission. Default: false.
+     *
+     * @param streamingInstall true to install from the download stream
+     * @return this
+     */
+    AppUpdate setStreamingInstall(Boolean streamingInstall);
+
+    /**
+     * Set the time to wait, once the main thread is idle, before a check started with startWhenIdle() runs. Default: 0.
+     *
+     * @param millis delay in milliseconds
+     * @return this
+     */
+    AppUpdate setStartDelay(Long millis);
+
+    /**
+     * Open the connection to the update host (DNS and TLS) as soon as startWhenIdle() is called,
+     * so the deferred check doesn't have to wait for it. Default: false.
+     *
+     * @param prewarm true to connect ahead of time
+     * @return this
+     */
+    AppUpdate setPrewarm(Boolean prewarm);
+
+    /**
+     * Set the time a whole check can take: waiting for another process, DNS, connection, download and parsing of
+     * every request made through the library. Once it is over the check fails, or goes on without the release notes
+     * if the update was already read. If another process is still checking by then, the result of the previous check
+     * is returned, or CHECK_TIMEOUT if there is none. Default: 30 seconds, 0 for no limit.
+     *
+     * @param millis deadline in milliseconds
+     * @return this
+     */
+    AppUpdate setCheckTimeout(Long millis);
+
+    /**
+     * Ask the server for the latest version with a HEAD request first, and only download the update file if it is
+     * newer than the installed one. The server must answer the HEAD request to the XML, JSON or binary url with the
+     * X-AppUpdater-Version-Code (highest versionCode of all the variants) and X-AppUpdater-Version headers,
+     * otherwise the whole file is read as usual. Default: false.
+     *
+     * @param headCheck true to check the headers first
+     * @return this
+     */
+    AppUpdate setHeadCheck(Boolean headCheck);
+
     /**
      * Set the url to the xml file with the latest version info.
      *
@@ -70,6 +192,25 @@ public interface IAppUpdater {
 
     AppUpdate setUpdateJSON(@NonNull String jsonUrl);
 
+    /**
+     * Set the url to the binary file with the latest version info.
+     *
+     * @param binaryUrl file
+     * @return this
+     * @see com.github.javiersantos.appupdate.WriterBinary
+     */
+    AppUpdate setUpdateBinary(@NonNull String binaryUrl);
+
+    /**
+     * Set which entry of a multi-variant XML/JSON file applies to this installation. Default: "stable" channel
+     * and the ABIs, SDK and locale of the device.
+     *
+     * @param selector channel and device properties to match
+     * @return this
+     * @see com.github.javiersantos.appupdate.objects.UpdateSelector
+     */
+    AppUpdate setUpdateSelector(@NonNull UpdateSelector selector);
+
     /**
      * Set the times the app ascertains that a new update is available and display a dialog, Snackbar or menu_notification. It makes the updates less invasive. Default: 1.
      *
@@ -78,6 +219,16 @@ public interface IAppUpdater {
      */
     AppUpdate showEvery(Integer times);
 
+    /**
+     * Set the minimum time between two checks. Calls to start() before it has elapsed are skipped. <br/>
+     * The server can raise it with a "checkInterval" field in the XML/JSON file or a Cache-Control max-age header,
+     * up to 7 days or this interval if it is longer, and each install adds its own fixed delay so that checks are spread out over time. Default: 0 (check every time).
+     *
+     * @param seconds minimum seconds between checks
+     * @return this
+     */
+    AppUpdate setCheckInterval(Integer seconds);
+
     /**
      * Set if the dialog, Snackbar or menu_notification is displayed although there aren't updates. Default: false.
      *
@@ -379,6 +530,12 @@ public interface IAppUpdater {
      */
     void start();
 
+    /**
+     * Execute AppUpdater in background once the main thread is idle (after the first frame), plus the delay set with
+     * setStartDelay(), instead of competing with the startup of the activity. Must be called from the main thread.
+     */
+    void startWhenIdle();
+
     /**
      * Stops the execution of AppUpdater.
      */
@@ -0,0 +1,78 @@
+package com.github.javiersantos.appupdate.interfaces;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.github.javiersantos.appupdate.enums.AppUpdaterError;
+import com.github.javiersantos.appupdate.objects.Update;
+import com.github.javiersantos.appupdate.objects.UpdateSelector;
+
+import java.io.IOException;
+import java.net.URL;
+
+/**
+ * Where the latest update is read from. <br/>
+ * Each {@link com.github.javiersantos.appupdate.enums.UpdateFrom} is an implementation of this interface,
+ * implement it to read the update in your own way (an API endpoint, conditional or partial requests...)
+ * and set it with setUpdateSource.
+ */
+public interface UpdateSource {
+    /**
+     * Called on the main thread before the check starts.
+     *
+     * @return the error to report if the source is not configured properly, or null
+     */
+    @Nullable
+    AppUpdaterError validate(@NonNull Context context);
+
+    /**
+     * @return the url requested first by {@link #fetch}, so the connection can be opened ahead of the check, or null
+     */
+    @Nullable
+    URL getCheckUrl(@NonNull Context context);
+
+    /**
+     * Reads the latest update, on a background thread. <br/>
+     * The response should be streamed and closed as soon as the update is known, rather than read as a whole.
+     *
+     * @param selector channel, ABIs, SDK, locale and density of this device
+     * @return the latest update, or null if it can't be read, reported with {@link #getError()}
+     */
+    @Nullable
+    Update fetch(@NonNull Context context, @NonNull UpdateSelector selector) throws IOException;
+
+    /**
+     * @return the error reported when {@link #fetch} fails
+     */
+    @NonNull
+    AppUpdaterError getError();
+
+    /**
+     * Also called before {@link #validate}, when the last update is served offline, so it must not fail
+     * with a missing configuration.
+     *
+     * @return a value that identifies this source and its configuration, used to keep its last update
+     */
+    @NonNull
+    String getKey();
+
+    /**
+     * @return true if the last update can be kept and used while offline or by the other processes of the app
+     */
+    boolean isCacheable();
+
+    /**
+     * @return true if the server of the APK answers Range requests, so an interrupted prefetch of the APK is resumed
+     * instead of downloaded again. A server that ignores the Range header only costs a full download
+     */
+    boolean supportsRange();
+
+    /**
+     * @return true if the server of the check url can answer a HEAD request with the X-AppUpdater-Version-Code
+     * and X-AppUpdater-Version headers, so the file is only downloaded when there is an update
+     */
+    boolean supportsHead();
+
+}
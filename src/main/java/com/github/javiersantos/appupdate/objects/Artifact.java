@@ -0,0 +1,60 @@
+package com.github.javiersantos.appupdate.objects;
+
+import java.net.URL;
+
+/**
+ * One downloadable APK of an update. Every artifact must be a complete APK that installs on its own,
+ * artifacts without ABI and density are universal APKs.
+ */
+public class Artifact {
+    private String abi;
+    private String density;
+    private URL url;
+    private Long size;
+    private String sha256;
+
+    public Artifact(String abi, String density, URL url, Long size) {
+        this.abi = abi;
+        this.density = density;
+        this.url = url;
+        this.size = size;
+    }
+
+    public String getAbi() {
+        return abi;
+    }
+
+    /**
+     * @return density bucket of the split, like "xxhdpi"
+     */
+    public String getDensity() {
+        return density;
+    }
+
+    public URL getUrl() {
+        return url;
+    }
+
+    /**
+     * @return size in bytes, or null if the file doesn't provide it
+     */
+    public Long getSize() {
+        return size;
+    }
+
+    /**
+     * @return hex SHA-256 of the APK, or null if the file doesn't provide it
+     */
+    public String getSha256() {
+        return sha256;
+    }
+
+    public void setSha256(String sha256) {
+        this.sha256 = sha256;
+    }
+
+    public Boolean isUniversal() {
+        return abi == null && density == null;
+    }
+
+}
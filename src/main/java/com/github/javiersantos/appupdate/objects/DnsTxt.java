@@ -0,0 +1,75 @@
+package com.github.javiersantos.appupdate.objects;
+
+import com.github.javiersantos.appupdate.enums.UpdateFrom;
+
+/**
+ * DNS TXT record with the latest version, e.g. {@code _appupdate.example.com. TXT "latestVersionCode=42 latestVersion=1.2.0"},
+ * and the update file that is read when that version is newer than the installed one.
+ */
+public class DnsTxt {
+    private String name;
+    private UpdateFrom manifestFrom;
+    private String manifestUrl;
+    private String resolverHost;
+    private int resolverPort = 53;
+
+    /**
+     * @param name         name of the TXT record
+     * @param manifestFrom format of the update file: XML, JSON or BINARY
+     * @param manifestUrl  url of the update file
+     */
+    public DnsTxt(String name, UpdateFrom manifestFrom, String manifestUrl) {
+        this.name = name;
+        this.manifestFrom = manifestFrom;
+        this.manifestUrl = manifestUrl;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public UpdateFrom getManifestFrom() {
+        return manifestFrom;
+    }
+
+    public void setManifestFrom(UpdateFrom manifestFrom) {
+        this.manifestFrom = manifestFrom;
+    }
+
+    public String getManifestUrl() {
+        return manifestUrl;
+    }
+
+    public void setManifestUrl(String manifestUrl) {
+        this.manifestUrl = manifestUrl;
+    }
+
+    /**
+     * @return host of the DNS server to ask, or null for the DNS servers of the active network
+     */
+    public String getResolverHost() {
+        return resolverHost;
+    }
+
+    public int getResolverPort() {
+        return resolverPort;
+    }
+
+    /**
+     * DNS server to ask instead of the ones of the active network, e.g. a local server for tests.
+     */
+    public void setResolver(String host, int port) {
+        this.resolverHost = host;
+        this.resolverPort = port;
+    }
+
+    public static Boolean isDnsTxtValid(DnsTxt dnsTxt) {
+        return dnsTxt != null && dnsTxt.getName() != null && dnsTxt.getName().length() > 0
+                && (dnsTxt.getManifestFrom() == UpdateFrom.XML || dnsTxt.getManifestFrom() == UpdateFrom.JSON || dnsTxt.getManifestFrom() == UpdateFrom.BINARY);
+    }
+
+}
@@ -0,0 +1,70 @@
+package com.github.javiersantos.appupdate.objects;
+
+/**
+ * F-Droid repository, e.g. {@code https://f-droid.org/repo} or a self-hosted one, whose index has the latest version
+ * of the app.
+ */
+public class FDroidRepo {
+    public static final String INDEX_V1 = "index-v1.json";
+    public static final String INDEX_V2 = "index-v2.json";
+
+    private String repoUrl;
+    private String packageName;
+    private String indexName = INDEX_V2;
+
+    /**
+     * @param repoUrl https url of the repository, the directory with the index and the APKs
+     */
+    public FDroidRepo(String repoUrl) {
+        this.repoUrl = repoUrl;
+    }
+
+    public String getRepoUrl() {
+        return repoUrl;
+    }
+
+    public void setRepoUrl(String repoUrl) {
+        this.repoUrl = repoUrl;
+    }
+
+    /**
+     * @return package to check, or null for the app itself
+     */
+    public String getPackageName() {
+        return packageName;
+    }
+
+    /**
+     * Package to check instead of the app itself, e.g. for a catalog of apps of the same repository.
+     */
+    public void setPackageName(String packageName) {
+        this.packageName = packageName;
+    }
+
+    public String getIndexName() {
+        return indexName;
+    }
+
+    /**
+     * Index to read: INDEX_V2 (default) or INDEX_V1 for repositories made with fdroidserver older than 2.0.
+     */
+    public void setIndexName(String indexName) {
+        this.indexName = indexName;
+    }
+
+    /**
+     * @return url of the index, or null if the repository url is not set
+     */
+    public String getIndexUrl() {
+        if (repoUrl == null) {
+            return null;
+        }
+        return (repoUrl.endsWith("/") ? repoUrl : repoUrl + "/") + indexName;
+    }
+
+    public static Boolean isFDroidRepoValid(FDroidRepo fDroidRepo) {
+        return fDroidRepo != null && fDroidRepo.getRepoUrl() != null && fDroidRepo.getRepoUrl().length() > 0
+                && (INDEX_V1.equals(fDroidRepo.getIndexName()) || INDEX_V2.equals(fDroidRepo.getIndexName()));
+    }
+
+}
@@ -3,10 +3,20 @@ package com.github.javiersantos.appupdate.objects;
 public class GitHub {
     private String gitHubUser;
     private String gitHubRepo;
+    private String token;
+    private String apiUrl;
 
     public GitHub(String gitHubUser, String gitHubRepo) {
+        this(gitHubUser, gitHubRepo, null);
+    }
+
+    /**
+     * @param token personal access token, raises the API rate limit and gives access to private repos
+     */
+    public GitHub(String gitHubUser, String gitHubRepo, String token) {
         this.gitHubUser = gitHubUser;
         this.gitHubRepo = gitHubRepo;
+        this.token = token;
     }
 
     public String getGitHubUser() {
@@ -25,6 +35,28 @@ public class GitHub {
         this.gitHubRepo = repo;
     }
 
+    public String getToken() {
+        return token;
+    }
+
+    public void setToken(String token) {
+        this.token = token;
+    }
+
+    /**
+     * @return base url of the API, or null for api.github.com
+     */
+    public String getApiUrl() {
+        return apiUrl;
+    }
+
+    /**
+     * Base url of the API, for GitHub Enterprise or a local server. Default: https://api.github.com/
+     */
+    public void setApiUrl(String apiUrl) {
+        this.apiUrl = apiUrl == null || apiUrl.endsWith("/") ? apiUrl : apiUrl + "/";
+    }
+
     public static Boolean isGitHubValid(GitHub gitHub) {
         if (gitHub == null || gitHub.getGitHubUser().length() == 0 || gitHub.getGitHubRepo().length() == 0) {
             return false;
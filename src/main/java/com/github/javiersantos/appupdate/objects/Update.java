@@ -1,12 +1,25 @@
 package com.github.javiersantos.appupdate.objects;
 
+import com.github.javiersantos.appupdate.enums.FetchProfile;
+
 import java.net.URL;
+import java.util.List;
 
 public class Update {
     private String version;
     private Integer versionCode;
     private String releaseNotes;
     private URL apk;
+    private Integer checkInterval;
+    private List<Artifact> artifacts;
+    private Long downloadSize;
+    private String sha256;
+    private Long downloadSizeSaved;
+    private URL changelogUrl;
+    private String releaseNotesUrl;
+    private boolean cached;
+    private FetchProfile fetchProfile;
+    private Long bytesTransferred;
 
     public Update() {}
 
@@ -62,4 +75,119 @@ public class Update {
     public void setUrlToDownload(URL apk) {
         this.apk = apk;
     }
+
+    /**
+     * Minimum time, in seconds, the server asks clients to wait before checking again.
+     * Taken from the manifest "checkInterval" field or the HTTP Cache-Control max-age, whichever is larger.
+     *
+     * @return seconds to wait, or null if the source didn't provide a hint
+     */
+    public Integer getCheckInterval() {
+        return checkInterval;
+    }
+
+    public void setCheckInterval(Integer checkInterval) {
+        this.checkInterval = checkInterval;
+    }
+
+    /**
+     * @return APKs per ABI and density listed in the file, or null if it only provides a single url
+     */
+    public List<Artifact> getArtifacts() {
+        return artifacts;
+    }
+
+    public void setArtifacts(List<Artifact> artifacts) {
+        this.artifacts = artifacts;
+    }
+
+    /**
+     * @return size in bytes of the APK chosen for this device, or null if unknown
+     */
+    public Long getDownloadSize() {
+        return downloadSize;
+    }
+
+    public void setDownloadSize(Long downloadSize) {
+        this.downloadSize = downloadSize;
+    }
+
+    /**
+     * @return hex SHA-256 of the APK to download, used to verify streaming installs, or null if unknown
+     */
+    public String getSha256() {
+        return sha256;
+    }
+
+    public void setSha256(String sha256) {
+        this.sha256 = sha256;
+    }
+
+    /**
+     * @return bytes saved by downloading the APK chosen for this device instead of the universal one, or null if unknown
+     */
+    public Long getDownloadSizeSaved() {
+        return downloadSizeSaved;
+    }
+
+    public void setDownloadSizeSaved(Long downloadSizeSaved) {
+        this.downloadSizeSaved = downloadSizeSaved;
+    }
+
+    /**
+     * @return url of the changelog covering every version since the installed one, or null if there is none
+     */
+    public URL getChangelogUrl() {
+        return changelogUrl;
+    }
+
+    public void setChangelogUrl(URL changelogUrl) {
+        this.changelogUrl = changelogUrl;
+    }
+
+    /**
+     * @return url template of the release notes per language, containing {locale} or not, or null if the notes are inline
+     */
+    public String getReleaseNotesUrl() {
+        return releaseNotesUrl;
+    }
+
+    public void setReleaseNotesUrl(String releaseNotesUrl) {
+        this.releaseNotesUrl = releaseNotesUrl;
+    }
+
+    /**
+     * @return true if this is the result of the last successful check, because the device was offline
+     * or another process of the app had just checked
+     */
+    public boolean isCached() {
+        return cached;
+    }
+
+    public void setCached(boolean cached) {
+        this.cached = cached;
+    }
+
+    /**
+     * @return profile used by the check, LITE on metered networks or with Data Saver enabled
+     */
+    public FetchProfile getFetchProfile() {
+        return fetchProfile;
+    }
+
+    public void setFetchProfile(FetchProfile fetchProfile) {
+        this.fetchProfile = fetchProfile;
+    }
+
+    /**
+     * @return bytes sent and received over the network by the check, responses served from the cache are not counted
+     */
+    public Long getBytesTransferred() {
+        return bytesTransferred;
+    }
+
+    public void setBytesTransferred(Long bytesTransferred) {
+        this.bytesTransferred = bytesTransferred;
+    }
+
 }
@@ -0,0 +1,84 @@
+package com.github.javiersantos.appupdate.objects;
+
+import java.util.Locale;
+
+/**
+ * Chooses which entry of a multi-variant XML/JSON file applies to this device. <br/>
+ * Only the channel is usually set, the ABIs, SDK and locale are taken from the device when they are null.
+ */
+public class UpdateSelector {
+    public static final String CHANNEL_STABLE = "stable";
+
+    private String channel;
+    private String[] abis;
+    private Integer sdk;
+    private Locale locale;
+    private Integer density;
+
+    public UpdateSelector() {
+        this(CHANNEL_STABLE);
+    }
+
+    public UpdateSelector(String channel) {
+        this.channel = channel;
+    }
+
+    public UpdateSelector(String channel, String[] abis, Integer sdk, Locale locale) {
+        this(channel, abis, sdk, locale, null);
+    }
+
+    public UpdateSelector(String channel, String[] abis, Integer sdk, Locale locale, Integer density) {
+        this.channel = channel;
+        this.abis = abis;
+        this.sdk = sdk;
+        this.locale = locale;
+        this.density = density;
+    }
+
+    public String getChannel() {
+        return channel;
+    }
+
+    public void setChannel(String channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * @return supported ABIs, most preferred first
+     */
+    public String[] getAbis() {
+        return abis;
+    }
+
+    public void setAbis(String[] abis) {
+        this.abis = abis;
+    }
+
+    public Integer getSdk() {
+        return sdk;
+    }
+
+    public void setSdk(Integer sdk) {
+        this.sdk = sdk;
+    }
+
+    public Locale getLocale() {
+        return locale;
+    }
+
+    public void setLocale(Locale locale) {
+        this.locale = locale;
+    }
+
+    /**
+     * @return screen density in dpi, used to choose between density splits
+     */
+    public Integer getDensity() {
+        return density;
+    }
+
+    public void setDensity(Integer density) {
+        this.density = density;
+    }
+
+}
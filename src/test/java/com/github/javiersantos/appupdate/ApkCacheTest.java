@@ -0,0 +1,120 @@
+package com.github.javiersantos.appupdate;
+
+import android.content.Context;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okhttp3.mockwebserver.SocketPolicy;
+import okio.Buffer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+@RunWith(RobolectricTestRunner.class)
+public class ApkCacheTest {
+    private MockWebServer server;
+    private Context context;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new MockWebServer();
+        server.start();
+        context = ApplicationProvider.getApplicationContext();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    public void downloadIsOnlyWrittenToTheApkCache() throws IOException {
+        server.enqueue(new MockResponse().setBody(new Buffer().write(new byte[100 * 1024])).setHeader("Cache-Control", "public, max-age=3600"));
+        URL url = new URL(server.url("/app-release.apk").toString());
+
+        File apk = new ApkCache(context).download(context, url, 100 * 1024L, false);
+
+        assertEquals(100 * 1024, apk.length());
+        for (Iterator<String> cached = UtilsLibrary.getHttpClient(context).cache().urls(); cached.hasNext(); ) {
+            assertNotEquals(url.toString(), cached.next());
+        }
+    }
+
+    @Test
+    public void wrongSizeIsDeleted() throws IOException {
+        server.enqueue(new MockResponse().setBody(new Buffer().write(new byte[1000])));
+        URL url = new URL(server.url("/app-release.apk").toString());
+        ApkCache apkCache = new ApkCache(context);
+
+        try {
+            apkCache.download(context, url, 2000L, false);
+            fail();
+        } catch (IOException expected) {
+        }
+
+        assertNull(apkCache.get(url));
+    }
+
+    @Test
+    public void interruptedDownloadIsResumed() throws IOException {
+        final byte[] apk = new byte[100 * 1024];
+        new Random(36).nextBytes(apk);
+        final List<String> ranges = Collections.synchronizedList(new ArrayList<String>());
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                String range = request.getHeader("Range");
+                ranges.add(String.valueOf(range));
+                if (range == null) {
+                    // Cut halfway through the body
+                    return new MockResponse().setBody(new Buffer().write(apk)).setSocketPolicy(SocketPolicy.DISCONNECT_DURING_RESPONSE_BODY);
+                }
+                int offset = Integer.parseInt(range.substring("bytes=".length(), range.length() - 1));
+                return new MockResponse()
+                        .setResponseCode(206)
+                        .setHeader("Content-Range", "bytes " + offset + "-" + (apk.length - 1) + "/" + apk.length)
+                        .setBody(new Buffer().write(Arrays.copyOfRange(apk, offset, apk.length)));
+            }
+        });
+        URL url = new URL(server.url("/app-release.apk").toString());
+        ApkCache apkCache = new ApkCache(context);
+
+        try {
+            apkCache.download(context, url, (long) apk.length, true);
+            fail();
+        } catch (IOException expected) {
+        }
+        File file = apkCache.download(context, url, (long) apk.length, true);
+
+        assertArrayEquals(apk, UtilsLibrary.readAll(new FileInputStream(file), file.length()));
+        assertEquals(2, ranges.size());
+        assertEquals("null", ranges.get(0));
+        assertTrue(ranges.get(1).startsWith("bytes="));
+    }
+
+}
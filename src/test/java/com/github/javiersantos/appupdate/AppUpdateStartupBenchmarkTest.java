@@ -0,0 +1,128 @@
+package com.github.javiersantos.appupdate;
+
+import android.content.Context;
+import android.content.ContextWrapper;
+import android.content.SharedPreferences;
+import android.content.res.Resources;
+import android.preference.PreferenceManager;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.File;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Cost of building an AppUpdate in onCreate, compared with the resources and preferences the constructor used
+ * to read eagerly. The timings are printed, only the work done is asserted: they depend on the machine.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class AppUpdateStartupBenchmarkTest {
+    private static final int WARMUP = 1000;
+    private static final int ITERATIONS = 10000;
+
+    private CountingContext context;
+
+    @Before
+    public void setUp() {
+        context = new CountingContext(ApplicationProvider.<Context>getApplicationContext());
+    }
+
+    @Test
+    public void constructorReadsNoResourcesNorPreferences() {
+        new AppUpdate(context)
+                .setTitleOnUpdateAvailable(R.string.appupdater_update_available)
+                .setButtonUpdate(R.string.appupdater_btn_update);
+
+        assertEquals(0, context.resources);
+        assertEquals(0, context.preferences);
+        assertEquals(0, context.files);
+    }
+
+    @Test
+    public void constructorBenchmark() {
+        for (int i = 0; i < WARMUP; i++) {
+            new AppUpdate(context);
+            buildEagerly(context);
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            new AppUpdate(context);
+        }
+        long lazy = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            new AppUpdate(context);
+            buildEagerly(context);
+        }
+        long eager = System.nanoTime() - start;
+
+        System.out.println(String.format("AppUpdate(Context): %d ns, with the eager resources and preferences: %d ns",
+                lazy / ITERATIONS, eager / ITERATIONS));
+    }
+
+    /**
+     * What the constructor did before: five string resources and the default preferences with an editor.
+     */
+    private static void buildEagerly(Context context) {
+        Resources resources = context.getResources();
+        if (resources != null) {
+            resources.getString(R.string.appupdater_update_available);
+            resources.getString(R.string.appupdater_update_not_available);
+            resources.getString(R.string.appupdater_btn_update);
+            resources.getString(R.string.appupdater_btn_dismiss);
+            resources.getString(R.string.appupdater_btn_disable);
+        }
+        SharedPreferences preferences = PreferenceManager.getDefaultSharedPreferences(context);
+        if (preferences != null) {
+            preferences.edit();
+        }
+    }
+
+    private static class CountingContext extends ContextWrapper {
+        int resources;
+        int preferences;
+        int files;
+
+        CountingContext(Context base) {
+            super(base);
+        }
+
+        @Override
+        public Context getApplicationContext() {
+            return this;
+        }
+
+        @Override
+        public Resources getResources() {
+            resources++;
+            return super.getResources();
+        }
+
+        @Override
+        public SharedPreferences getSharedPreferences(String name, int mode) {
+            preferences++;
+            return super.getSharedPreferences(name, mode);
+        }
+
+        @Override
+        public File getFilesDir() {
+            files++;
+            return super.getFilesDir();
+        }
+
+        @Override
+        public File getNoBackupFilesDir() {
+            files++;
+            return super.getNoBackupFilesDir();
+        }
+    }
+
+}
@@ -0,0 +1,142 @@
+package com.github.javiersantos.appupdate;
+
+import android.content.Context;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.github.javiersantos.appupdate.objects.Update;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.Comparator;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Request rate of a local update server for N virtual installs, launched at random times over two weeks.
+ * Every install checks on the first launch after its next check time, with the interval of the app raised by the
+ * max-age of the server and the jitter of the install. The hourly curve is printed.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class CheckScheduleSimulationTest {
+    private static final int CLIENTS = 500;
+    private static final int DAYS = 14;
+    private static final int LAUNCHES_PER_DAY = 4;
+    private static final long HOUR = 60 * 60 * 1000L;
+    private static final long DAY = 24 * HOUR;
+
+    private MockWebServer server;
+    private Context context;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new MockWebServer();
+        server.start();
+        context = ApplicationProvider.getApplicationContext();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    public void dailyInterval() throws IOException {
+        int[] curve = simulate(24 * 60 * 60, 24 * 60 * 60);
+
+        // After the release day, the checks of each day are spread over the jitter instead of all at the same hour
+        int peak = 0;
+        for (int hour = 48; hour < curve.length; hour++) {
+            peak = Math.max(peak, curve[hour]);
+        }
+        assertTrue("peak of " + peak + " requests per hour", peak < CLIENTS / 10);
+    }
+
+    @Test
+    public void wrongMaxAgeIsCapped() throws IOException {
+        // One year: without the cap, every install would only check once in the two weeks
+        int[] curve = simulate(60 * 60, 365 * 24 * 60 * 60);
+
+        int requests = 0;
+        for (int count : curve) {
+            requests += count;
+        }
+        assertTrue(requests + " requests", requests >= CLIENTS * 3 / 2);
+    }
+
+    /**
+     * @return requests received by the server in each hour
+     */
+    private int[] simulate(int checkInterval, final int maxAge) throws IOException {
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                return new MockResponse()
+                        .setHeader(Config.HEADER_VERSION_CODE, 2)
+                        .setHeader(Config.HEADER_VERSION, "1.1")
+                        .setHeader("Cache-Control", "max-age=" + maxAge);
+            }
+        });
+        URL url = server.url("/update.json").url();
+
+        Random random = new Random(26);
+        float[] jitters = new float[CLIENTS];
+        long[] nextChecks = new long[CLIENTS];
+        // Launch times of every install, in order
+        PriorityQueue<long[]> launches = new PriorityQueue<>(CLIENTS * DAYS * LAUNCHES_PER_DAY, new Comparator<long[]>() {
+            @Override
+            public int compare(long[] a, long[] b) {
+                return Long.compare(a[0], b[0]);
+            }
+        });
+        for (int client = 0; client < CLIENTS; client++) {
+            jitters[client] = random.nextFloat();
+            for (int i = 0; i < DAYS * LAUNCHES_PER_DAY; i++) {
+                launches.add(new long[]{(long) (random.nextDouble() * DAYS * DAY), client});
+            }
+        }
+
+        int[] curve = new int[DAYS * 24];
+        while (!launches.isEmpty()) {
+            long[] launch = launches.poll();
+            long now = launch[0];
+            int client = (int) launch[1];
+            if (!UtilsLibrary.isCheckDue(now, nextChecks[client])) {
+                continue;
+            }
+
+            Update update = UtilsLibrary.getLatestAppVersionHead(context, url);
+            assertNotNull(update);
+            curve[(int) (now / HOUR)]++;
+            int interval = UtilsLibrary.getCheckInterval(checkInterval, update.getCheckInterval());
+            nextChecks[client] = UtilsLibrary.getNextCheckTime(now, interval, jitters[client]);
+        }
+
+        StringBuilder out = new StringBuilder("Requests per hour, interval " + checkInterval + " s, max-age " + maxAge + " s\n");
+        for (int hour = 0; hour < curve.length; hour++) {
+            out.append(String.format(Locale.US, "%4d %5d ", hour, curve[hour]));
+            for (int i = 0; i < curve[hour] * 60 / CLIENTS; i++) {
+                out.append('#');
+            }
+            out.append('\n');
+        }
+        System.out.println(out);
+        return curve;
+    }
+
+}
@@ -0,0 +1,101 @@
+package com.github.javiersantos.appupdate;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.lang.reflect.Method;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Classes of the library loaded by an app that only checks a JSON file, measured with a class loader
+ * that loads the library again and records each class it defines.
+ */
+public class ClassLoadingTest {
+    private static final String PACKAGE = "com.github.javiersantos.appupdate.";
+
+    @Test
+    public void jsoupIsNotADependency() {
+        try {
+            Class.forName("org.jsoup.Jsoup");
+            fail("jsoup is on the classpath");
+        } catch (ClassNotFoundException expected) {
+        }
+    }
+
+    @Test
+    public void jsonSourceLoadsNoStoreClasses() throws Exception {
+        RecordingClassLoader loader = new RecordingClassLoader(getClassPath(), getClass().getClassLoader());
+        Class<?> updateFrom = loader.loadClass(PACKAGE + "enums.UpdateFrom");
+        Class<?> utils = loader.loadClass(PACKAGE + "UtilsLibrary");
+        Method getUpdateSource = null;
+        for (Method method : utils.getDeclaredMethods()) {
+            if (method.getName().equals("getUpdateSource")) {
+                getUpdateSource = method;
+            }
+        }
+        getUpdateSource.setAccessible(true);
+
+        long start = System.nanoTime();
+        Object source = getUpdateSource.invoke(null, updateFrom.getField("JSON").get(null), null, null, null, "https://example.com/update.json");
+        long elapsed = System.nanoTime() - start;
+
+        assertTrue(loader.loaded.contains(PACKAGE + "SourceFile"));
+        assertFalse(loader.loaded.contains(PACKAGE + "SourceGooglePlay"));
+        assertFalse(loader.loaded.contains(PACKAGE + "SourceStorePage"));
+        assertFalse(loader.loaded.contains(PACKAGE + "ParserHTML"));
+        assertFalse(loader.loaded.contains(PACKAGE + "SourceGitHub"));
+        assertFalse(loader.loaded.contains(PACKAGE + "ParserGitHub"));
+        assertFalse(loader.loaded.contains(PACKAGE + "SourceFDroidRepo"));
+        assertFalse(loader.loaded.contains(PACKAGE + "FDroidIndex"));
+        assertFalse(loader.loaded.contains(PACKAGE + "SourceDnsTxt"));
+        assertFalse(loader.loaded.contains(PACKAGE + "ResolverTxt"));
+        System.out.println(String.format("%s: %d library classes loaded in %d us %s",
+                source.getClass().getSimpleName(), loader.loaded.size(), elapsed / 1000, loader.loaded));
+    }
+
+    private static URL[] getClassPath() throws MalformedURLException {
+        List<URL> urls = new ArrayList<>();
+        for (String path : System.getProperty("java.class.path").split(File.pathSeparator)) {
+            urls.add(new File(path).toURI().toURL());
+        }
+        return urls.toArray(new URL[0]);
+    }
+
+    /**
+     * Defines the classes of the library itself, so they are loaded again and recorded, the rest comes from the parent.
+     */
+    private static class RecordingClassLoader extends URLClassLoader {
+        final Set<String> loaded = new TreeSet<>();
+
+        RecordingClassLoader(URL[] urls, ClassLoader parent) {
+            super(urls, parent);
+        }
+
+        @Override
+        protected synchronized Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            if (!name.startsWith(PACKAGE)) {
+                return super.loadClass(name, resolve);
+            }
+            Class<?> c = findLoadedClass(name);
+            if (c == null) {
+                c = findClass(name);
+                loaded.add(name);
+            }
+            if (resolve) {
+                resolveClass(c);
+            }
+            return c;
+        }
+    }
+
+}
@@ -0,0 +1,153 @@
+package com.github.javiersantos.appupdate;
+
+import android.content.Context;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.github.javiersantos.appupdate.enums.FetchProfile;
+import com.github.javiersantos.appupdate.objects.FDroidRepo;
+import com.github.javiersantos.appupdate.objects.UpdateSelector;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Locale;
+import java.util.Map;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+@RunWith(RobolectricTestRunner.class)
+public class FDroidIndexTest {
+    private static final String[] ABIS = {"arm64-v8a", "armeabi-v7a"};
+
+    private MockWebServer server;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new MockWebServer();
+        server.start();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    public void indexV1() throws IOException {
+        Map<String, FDroidIndex.Entry> entries = parse("/fdroid/index-v1.json", UpdateSelector.CHANNEL_STABLE);
+
+        // 30 is above the suggested version and 20 is x86 only
+        FDroidIndex.Entry app = entries.get("com.example.app");
+        assertEquals(15, app.versionCode);
+        assertEquals("1.5", app.versionName);
+        assertEquals("/com.example.app_15.apk", app.path);
+        assertEquals("15", app.sha256);
+
+        // 3 needs a newer SDK, 2 has no native code
+        FDroidIndex.Entry nativeApp = entries.get("com.example.native");
+        assertEquals(2, nativeApp.versionCode);
+        assertNull(nativeApp.versionName);
+        assertNull(nativeApp.sha256);
+
+        assertFalse(entries.containsKey("com.example.unsupported"));
+    }
+
+    @Test
+    public void indexV1Beta() throws IOException {
+        assertEquals(30, parse("/fdroid/index-v1.json", "beta").get("com.example.app").versionCode);
+    }
+
+    @Test
+    public void indexV2() throws IOException {
+        Map<String, FDroidIndex.Entry> entries = parse("/fdroid/index-v2.json", UpdateSelector.CHANNEL_STABLE);
+
+        // 13 is a beta and 14 needs a newer SDK
+        FDroidIndex.Entry app = entries.get("com.example.app");
+        assertEquals(12, app.versionCode);
+        assertEquals("1.2", app.versionName);
+        assertEquals("/com.example.app_12.apk", app.path);
+        assertEquals("aa", app.sha256);
+
+        FDroidIndex.Entry relative = entries.get("com.example.relative");
+        assertEquals(5, relative.versionCode);
+        assertEquals("/com.example.relative_5.apk", relative.path);
+    }
+
+    @Test
+    public void indexV2Beta() throws IOException {
+        assertEquals(13, parse("/fdroid/index-v2.json", "beta").get("com.example.app").versionCode);
+    }
+
+    @Test(expected = IOException.class)
+    public void malformedIndex() throws IOException {
+        String json = "{\"packages\": {\"com.example.app\": [{\"versionCode\": \"x\", \"apkName\": \"a.apk\"}]}}";
+        getIndex(FDroidRepo.INDEX_V1, UpdateSelector.CHANNEL_STABLE).parse(new ByteArrayInputStream(json.getBytes("UTF-8")));
+    }
+
+    @Test
+    public void liteCheckWithoutMirrorDownloadsNothing() {
+        Context context = ApplicationProvider.getApplicationContext();
+        FDroidIndex index = getIndex(server.url("/repo").toString(), FDroidRepo.INDEX_V1, UpdateSelector.CHANNEL_STABLE);
+
+        FetchSession.begin(FetchProfile.LITE, 10000);
+        try {
+            index.find(context, "com.example.app");
+            fail("The index was downloaded on a metered network.");
+        } catch (IOException expected) {
+        } finally {
+            FetchSession.end();
+        }
+        assertEquals(0, server.getRequestCount());
+    }
+
+    @Test
+    public void downloadIsCountedInTheCheck() throws IOException {
+        Context context = ApplicationProvider.getApplicationContext();
+        String json = "{\"packages\": {\"com.example.app\": [{\"versionCode\": 3, \"apkName\": \"a.apk\"}]}}";
+        server.enqueue(new MockResponse().setBody(json));
+        FDroidIndex index = getIndex(server.url("/repo").toString(), FDroidRepo.INDEX_V1, UpdateSelector.CHANNEL_STABLE);
+
+        FetchSession session = FetchSession.begin(FetchProfile.FULL, 10000);
+        try {
+            assertEquals(3, index.find(context, "com.example.app").versionCode);
+        } finally {
+            FetchSession.end();
+        }
+        assertTrue(session.getBytes() > json.length());
+    }
+
+    private Map<String, FDroidIndex.Entry> parse(String resource, String channel) throws IOException {
+        InputStream in = getClass().getResourceAsStream(resource);
+        try {
+            return getIndex(resource.endsWith("v1.json") ? FDroidRepo.INDEX_V1 : FDroidRepo.INDEX_V2, channel).parse(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    private FDroidIndex getIndex(String indexName, String channel) {
+        return getIndex("https://example.org/repo", indexName, channel);
+    }
+
+    private FDroidIndex getIndex(String repoUrl, String indexName, String channel) {
+        Context context = ApplicationProvider.getApplicationContext();
+        FDroidRepo repo = new FDroidRepo(repoUrl);
+        repo.setIndexName(indexName);
+        return FDroidIndex.get(context, repo, new UpdateSelector(channel, ABIS, 24, Locale.US));
+    }
+
+}
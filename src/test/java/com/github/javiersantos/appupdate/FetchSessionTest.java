@@ -0,0 +1,284 @@
+package com.github.javiersantos.appupdate;
+
+import android.content.Context;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.github.javiersantos.appupdate.enums.AppUpdaterError;
+import com.github.javiersantos.appupdate.enums.FetchProfile;
+import com.github.javiersantos.appupdate.enums.UpdateFrom;
+import com.github.javiersantos.appupdate.interfaces.UpdateSource;
+import com.github.javiersantos.appupdate.objects.Update;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.SocketPolicy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * The check deadline against a local server that stalls, or another process that holds the check lock.
+ * The client's own read timeout is 10 seconds, the calls must fail at the deadline well before it.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class FetchSessionTest {
+    private static final long DEADLINE = 500;
+    // Deadline plus the time the timer and the cancelled socket can take
+    private static final long MAX_ELAPSED = 3000;
+
+    private MockWebServer server;
+    private Context context;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new MockWebServer();
+        server.start();
+        context = ApplicationProvider.getApplicationContext();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        FetchSession.end();
+        server.shutdown();
+    }
+
+    @Test
+    public void stallMidBodyFailsAtTheDeadline() throws IOException {
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            body.append("{\"latestVersion\": \"1.2.0\"}\n");
+        }
+        // The first bytes arrive right away, then 64 bytes every 10 seconds
+        server.enqueue(new MockResponse().setBody(body.toString()).throttleBody(64, 10, TimeUnit.SECONDS));
+        FetchSession session = FetchSession.begin(FetchProfile.FULL, DEADLINE);
+        long start = System.currentTimeMillis();
+
+        Response response = UtilsLibrary.get(context, new URL(server.url("/update.json").toString()));
+        InputStream in = response.body().byteStream();
+        try {
+            byte[] buffer = new byte[1024];
+            while (in.read(buffer) != -1) {
+                // Read until the stall
+            }
+            fail("The body was read past the deadline");
+        } catch (IOException expected) {
+        } finally {
+            response.close();
+        }
+
+        assertTrue(System.currentTimeMillis() - start < MAX_ELAPSED);
+        assertTrue(session.isExpired());
+    }
+
+    @Test
+    public void stallBeforeHeadersFailsAtTheDeadline() throws IOException {
+        server.enqueue(new MockResponse().setSocketPolicy(SocketPolicy.NO_RESPONSE));
+        FetchSession session = FetchSession.begin(FetchProfile.FULL, DEADLINE);
+        long start = System.currentTimeMillis();
+
+        try {
+            UtilsLibrary.get(context, new URL(server.url("/update.json").toString())).close();
+            fail("The response arrived past the deadline");
+        } catch (IOException expected) {
+        }
+
+        assertTrue(System.currentTimeMillis() - start < MAX_ELAPSED);
+        assertTrue(session.isExpired());
+    }
+
+    @Test
+    public void callAfterTheDeadlineIsNotSent() throws Exception {
+        server.enqueue(new MockResponse().setBody("{}"));
+        FetchSession session = FetchSession.begin(FetchProfile.FULL, 1);
+        Thread.sleep(50);
+        assertTrue(session.isExpired());
+        assertEquals(0, session.getTimeLeft());
+
+        try {
+            UtilsLibrary.get(context, new URL(server.url("/update.json").toString())).close();
+            fail("A call was made after the deadline");
+        } catch (IOException expected) {
+        }
+
+        assertEquals(0, server.getRequestCount());
+    }
+
+    @Test
+    public void noDeadline() throws Exception {
+        server.enqueue(new MockResponse().setBody("{}"));
+        FetchSession session = FetchSession.begin(FetchProfile.FULL, 0);
+
+        Response response = UtilsLibrary.get(context, new URL(server.url("/update.json").toString()));
+        assertEquals("{}", response.body().string());
+
+        assertFalse(session.isExpired());
+        assertTrue(session.getTimeLeft() > TimeUnit.DAYS.toMillis(365));
+        assertTrue(session.getBytes() > 0);
+    }
+
+    @Test
+    public void checkLockHeldByAnotherThread() throws Exception {
+        final SharedState.CheckLock[] held = new SharedState.CheckLock[1];
+        final Object done = new Object();
+        Thread other = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (done) {
+                    held[0] = SharedState.lockCheck(context, 0);
+                    done.notifyAll();
+                    try {
+                        done.wait();
+                    } catch (InterruptedException ignored) {
+                    }
+                    held[0].release();
+                }
+            }
+        });
+        synchronized (done) {
+            other.start();
+            done.wait();
+        }
+
+        long start = System.currentTimeMillis();
+        assertNull(SharedState.lockCheck(context, DEADLINE));
+        long elapsed = System.currentTimeMillis() - start;
+        assertTrue(elapsed >= DEADLINE - 50 && elapsed < MAX_ELAPSED);
+
+        synchronized (done) {
+            done.notifyAll();
+        }
+        other.join();
+        SharedState.CheckLock checkLock = SharedState.lockCheck(context, DEADLINE);
+        assertNotNull(checkLock);
+        checkLock.release();
+    }
+
+    @Test
+    public void checkLockHeldByAnotherProcess() throws Exception {
+        Process process = holdCheckLock();
+        try {
+            long start = System.currentTimeMillis();
+            assertNull(SharedState.lockCheck(context, DEADLINE));
+            long elapsed = System.currentTimeMillis() - start;
+            assertTrue(elapsed >= DEADLINE - 50 && elapsed < MAX_ELAPSED);
+        } finally {
+            process.destroy();
+            process.waitFor();
+        }
+
+        SharedState.CheckLock checkLock = SharedState.lockCheck(context, DEADLINE);
+        assertNotNull(checkLock);
+        checkLock.release();
+    }
+
+    @Test
+    public void checkWaitingForAnotherProcessReturnsThePreviousResult() throws Exception {
+        UpdateSource source = new SourceFile(UpdateFrom.JSON, server.url("/update.json").toString());
+        File lastUpdate = UtilsLibrary.getLastUpdateFile(context, source);
+        UtilsLibrary.saveLastUpdate(lastUpdate, new Update("1.2.0", 42));
+        // Older than the results shared right away
+        lastUpdate.setLastModified(System.currentTimeMillis() - 10 * Config.CHECK_SHARE_WINDOW);
+        List<AppUpdaterError> errors = new ArrayList<>();
+
+        Process process = holdCheckLock();
+        Update update;
+        try {
+            update = newCheck(source, errors).doInBackground();
+        } finally {
+            process.destroy();
+            process.waitFor();
+        }
+
+        assertEquals("1.2.0", update.getLatestVersion());
+        assertTrue(update.isCached());
+        assertTrue(errors.isEmpty());
+        assertEquals(0, server.getRequestCount());
+    }
+
+    @Test
+    public void checkWaitingForAnotherProcessFails() throws Exception {
+        UpdateSource source = new SourceFile(UpdateFrom.JSON, server.url("/update.json").toString());
+        List<AppUpdaterError> errors = new ArrayList<>();
+
+        Process process = holdCheckLock();
+        Update update;
+        try {
+            update = newCheck(source, errors).doInBackground();
+        } finally {
+            process.destroy();
+            process.waitFor();
+        }
+
+        assertNull(update);
+        assertEquals(1, errors.size());
+        assertEquals(AppUpdaterError.CHECK_TIMEOUT, errors.get(0));
+        assertEquals(0, server.getRequestCount());
+    }
+
+    private UtilsAsync.LatestAppVersion newCheck(UpdateSource source, final List<AppUpdaterError> errors) {
+        return new UtilsAsync.LatestAppVersion(context, true, source, null, 0, false, DEADLINE, false, new AppUpdate.LibraryListener() {
+            @Override
+            public void onSuccess(Update update) {
+            }
+
+            @Override
+            public void onFailed(AppUpdaterError error) {
+                errors.add(error);
+            }
+        });
+    }
+
+    /**
+     * Starts another JVM that holds the check lock of the context until it is destroyed.
+     */
+    private Process holdCheckLock() throws IOException {
+        File lockFile = new File(new File(context.getFilesDir(), Config.CACHE_DIR), "check.lock");
+        lockFile.getParentFile().mkdirs();
+        Process process = new ProcessBuilder(
+                new File(new File(System.getProperty("java.home"), "bin"), "java").getPath(),
+                "-cp", System.getProperty("java.class.path"),
+                HoldLock.class.getName(), lockFile.getPath())
+                .redirectErrorStream(true)
+                .start();
+        String line = new BufferedReader(new InputStreamReader(process.getInputStream(), "UTF-8")).readLine();
+        if (!"locked".equals(line)) {
+            process.destroy();
+            throw new IOException("The lock can't be held by another process: " + line);
+        }
+        return process;
+    }
+
+    public static class HoldLock {
+        public static void main(String[] args) throws Exception {
+            RandomAccessFile file = new RandomAccessFile(args[0], "rw");
+            file.getChannel().lock();
+            System.out.println("locked");
+            System.out.flush();
+            Thread.sleep(Long.MAX_VALUE);
+        }
+    }
+
+}
@@ -0,0 +1,128 @@
+package com.github.javiersantos.appupdate;
+
+import android.content.Context;
+import android.content.Intent;
+import android.content.pm.PackageInfo;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.shadows.ShadowPackageManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.robolectric.Shadows.shadowOf;
+
+@RunWith(RobolectricTestRunner.class)
+public class InstalledPackagesTest {
+    private Context context;
+    private ShadowPackageManager packageManager;
+
+    @Before
+    public void setUp() {
+        context = ApplicationProvider.getApplicationContext();
+        packageManager = shadowOf(context.getPackageManager());
+    }
+
+    @Test
+    public void changesDuringLoadWinOverTheSnapshot() {
+        InstalledPackages installed = new InstalledPackages(context);
+        installed.beginLoad();
+        // Broadcasts received while the list was being built, the snapshot still has the old versions
+        installed.onPackageChanged("com.example.removed", Intent.ACTION_PACKAGE_REMOVED, false);
+        install("com.example.updated", 2, "2.0");
+        installed.onPackageChanged("com.example.updated", Intent.ACTION_PACKAGE_REPLACED, false);
+        installed.endLoad(Arrays.asList(
+                packageInfo("com.example.removed", 1, "1.0"),
+                packageInfo("com.example.updated", 1, "1.0"),
+                packageInfo("com.example.other", 3, "3.0")));
+
+        assertEquals(Integer.valueOf(0), installed.getInstalledUpdate("com.example.removed").getLatestVersionCode());
+        assertEquals(Integer.valueOf(2), installed.getInstalledUpdate("com.example.updated").getLatestVersionCode());
+        assertEquals("2.0", installed.getInstalledUpdate("com.example.updated").getLatestVersion());
+        assertEquals(Integer.valueOf(3), installed.getInstalledUpdate("com.example.other").getLatestVersionCode());
+    }
+
+    @Test
+    public void broadcastBeforeLoad() {
+        InstalledPackages installed = new InstalledPackages(context);
+        install("com.example.app", 5, "5.0");
+        installed.onPackageChanged("com.example.app", Intent.ACTION_PACKAGE_ADDED, false);
+
+        assertEquals(Integer.valueOf(5), installed.getInstalledUpdate("com.example.app").getLatestVersionCode());
+        assertEquals(1, installed.size());
+    }
+
+    @Test
+    public void updateIsNotRemoved() {
+        InstalledPackages installed = new InstalledPackages(context);
+        installed.beginLoad();
+        installed.endLoad(Arrays.asList(packageInfo("com.example.app", 1, "1.0")));
+        install("com.example.app", 2, "2.0");
+        installed.onPackageChanged("com.example.app", Intent.ACTION_PACKAGE_REMOVED, true);
+        installed.onPackageChanged("com.example.app", Intent.ACTION_PACKAGE_REPLACED, true);
+
+        assertEquals(Integer.valueOf(2), installed.getInstalledUpdate("com.example.app").getLatestVersionCode());
+    }
+
+    @Test
+    public void matchesTheInstalledPackages() {
+        Random random = new Random(42);
+        Map<String, Integer> expected = new HashMap<>();
+        List<PackageInfo> snapshot = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            String packageName = "com.example.app" + i;
+            install(packageName, i + 1, null);
+            snapshot.add(packageInfo(packageName, i + 1, null));
+            expected.put(packageName, i + 1);
+        }
+        InstalledPackages installed = new InstalledPackages(context);
+        installed.beginLoad();
+        installed.endLoad(snapshot);
+
+        // Installs, updates and removals grow the table and fill it with removed entries
+        for (int i = 0; i < 5000; i++) {
+            String packageName = "com.example.app" + random.nextInt(2000);
+            if (random.nextInt(3) == 0) {
+                packageManager.removePackage(packageName);
+                installed.onPackageChanged(packageName, Intent.ACTION_PACKAGE_REMOVED, false);
+                expected.remove(packageName);
+            } else {
+                int versionCode = random.nextInt(1000) + 1;
+                install(packageName, versionCode, null);
+                installed.onPackageChanged(packageName, Intent.ACTION_PACKAGE_ADDED, false);
+                expected.put(packageName, versionCode);
+            }
+        }
+
+        for (int i = 0; i < 2000; i++) {
+            String packageName = "com.example.app" + i;
+            Integer versionCode = expected.get(packageName);
+            assertEquals(packageName, versionCode != null ? versionCode : Integer.valueOf(0),
+                    installed.getInstalledUpdate(packageName).getLatestVersionCode());
+        }
+        assertEquals(expected.size(), installed.size());
+    }
+
+    private void install(String packageName, int versionCode, String versionName) {
+        packageManager.installPackage(packageInfo(packageName, versionCode, versionName));
+    }
+
+    private static PackageInfo packageInfo(String packageName, int versionCode, String versionName) {
+        PackageInfo packageInfo = new PackageInfo();
+        packageInfo.packageName = packageName;
+        packageInfo.versionCode = versionCode;
+        packageInfo.versionName = versionName;
+        return packageInfo;
+    }
+
+}
@@ -0,0 +1,160 @@
+package com.github.javiersantos.appupdate;
+
+import android.content.Context;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.github.javiersantos.appupdate.objects.Update;
+import com.github.javiersantos.appupdate.objects.UpdateSelector;
+
+import org.json.JSONException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+public class ParserBatchTest {
+    private MockWebServer server;
+    private Context context;
+    private Map<String, Update> updates;
+    private List<String> errors;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new MockWebServer();
+        server.start();
+        context = ApplicationProvider.getApplicationContext();
+        updates = new LinkedHashMap<>();
+        errors = new ArrayList<>();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    public void readsEveryPackage() throws Exception {
+        server.enqueue(new MockResponse().setBody("{\"syncToken\": \"t2\", \"packages\": {"
+                + "\"com.example.a\": {\"latestVersion\": \"1.2.0\", \"latestVersionCode\": 12, \"url\": \"https://example.org/a.apk\"},"
+                + "\"com.example.unknown\": {\"latestVersion\": \"9.0\", \"url\": \"https://example.org/u.apk\"},"
+                + "\"com.example.b\": {\"latestVersion\": \"2.0\", \"url\": \"https://example.org/b.apk\", \"releaseNotes\": [\"Fixes\"]}}}"));
+
+        ParserBatch parser = parse(packages("com.example.b", 1, "com.example.a", 11));
+
+        RecordedRequest request = server.takeRequest();
+        assertEquals("GET", request.getMethod());
+        // Sorted, so the same packages are always the same cached url
+        assertEquals("com.example.a:11,com.example.b:1", request.getRequestUrl().queryParameter("packages"));
+        assertEquals(2, updates.size());
+        assertEquals(Integer.valueOf(12), updates.get("com.example.a").getLatestVersionCode());
+        assertEquals("Fixes", updates.get("com.example.b").getReleaseNotes());
+        assertTrue(errors.isEmpty());
+        assertEquals("t2", parser.getSyncToken());
+        assertFalse(parser.isDelta());
+    }
+
+    @Test
+    public void malformedEntriesDontStopTheOthers() throws Exception {
+        server.enqueue(new MockResponse().setBody("{\"packages\": {"
+                // Wrong type in a nested array, the reader must skip the rest of the entry
+                + "\"com.example.a\": {\"latestVersion\": \"1.0\", \"artifacts\": [{\"abi\": \"x86\", \"size\": \"big\", \"url\": \"https://example.org/x.apk\"}], \"url\": \"https://example.org/a.apk\"},"
+                + "\"com.example.b\": {\"latestVersion\": \"1.0\", \"url\": \"not a url\"},"
+                + "\"com.example.c\": {\"latestVersion\": \"1.0\", \"latestVersionCode\": \"abc\", \"url\": \"https://example.org/c.apk\"},"
+                + "\"com.example.d\": {\"latestVersion\": [\"1.0\"], \"url\": \"https://example.org/d.apk\"},"
+                + "\"com.example.e\": {\"url\": \"https://example.org/e.apk\"},"
+                + "\"com.example.f\": {\"latestVersion\": \"3.0\", \"url\": \"https://example.org/f.apk\"}}}"));
+
+        parse(packages("com.example.a", 0, "com.example.b", 0, "com.example.c", 0, "com.example.d", 0, "com.example.e", 0, "com.example.f", 0));
+
+        assertEquals(5, errors.size());
+        assertEquals(1, updates.size());
+        assertEquals("3.0", updates.get("com.example.f").getLatestVersion());
+    }
+
+    @Test
+    public void delta() throws Exception {
+        server.enqueue(new MockResponse().setBody("{\"delta\": true, \"syncToken\": \"t3\", \"packages\": {}}"));
+
+        ParserBatch parser = new ParserBatch(context, server.url("/batch").url(), packages("com.example.a", 1), selector()).setSince("t2");
+        parser.parse(callback());
+
+        assertEquals("t2", server.takeRequest().getRequestUrl().queryParameter("since"));
+        assertTrue(parser.isDelta());
+        assertEquals("t3", parser.getSyncToken());
+    }
+
+    @Test
+    public void longListIsPosted() throws Exception {
+        server.enqueue(new MockResponse().setBody("{\"packages\": {}}"));
+        SortedMap<String, Integer> packages = new TreeMap<>();
+        for (int i = 0; i < 200; i++) {
+            packages.put("com.example.package" + i, i);
+        }
+
+        parse(packages);
+
+        RecordedRequest request = server.takeRequest();
+        assertEquals("POST", request.getMethod());
+        assertTrue(request.getBody().readUtf8().startsWith("packages=com.example.package0%3A0%2C"));
+    }
+
+    @Test(expected = JSONException.class)
+    public void malformedResponse() throws Exception {
+        server.enqueue(new MockResponse().setBody("{\"packages\": [\"com.example.a\"]}"));
+
+        parse(packages("com.example.a", 1));
+    }
+
+    private ParserBatch parse(SortedMap<String, Integer> packages) throws IOException, JSONException {
+        ParserBatch parser = new ParserBatch(context, server.url("/batch").url(), packages, selector());
+        parser.parse(callback());
+        return parser;
+    }
+
+    private ParserBatch.Callback callback() {
+        return new ParserBatch.Callback() {
+            @Override
+            public void onPackage(String packageName, Update update) {
+                updates.put(packageName, update);
+            }
+
+            @Override
+            public void onPackageError(String packageName) {
+                errors.add(packageName);
+            }
+        };
+    }
+
+    private static UpdateSelector selector() {
+        return new UpdateSelector(UpdateSelector.CHANNEL_STABLE, new String[]{"arm64-v8a"}, 24, Locale.US, 480);
+    }
+
+    private static SortedMap<String, Integer> packages(Object... packageVersionCodes) {
+        SortedMap<String, Integer> packages = new TreeMap<>();
+        for (int i = 0; i < packageVersionCodes.length; i += 2) {
+            packages.put((String) packageVersionCodes[i], (Integer) packageVersionCodes[i + 1]);
+        }
+        return packages;
+    }
+
+}
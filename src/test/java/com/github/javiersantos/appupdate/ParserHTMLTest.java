@@ -0,0 +1,66 @@
+package com.github.javiersantos.appupdate;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class ParserHTMLTest {
+
+    @Test
+    public void findTextInsideAncestor() throws IOException {
+        // Scripts, styles and comments are skipped, and so are the matches outside the ancestor
+        assertEquals("", findText("hAyfc", "htlgb", 0));
+        assertEquals("March 3, 2021", findText("hAyfc", "htlgb", 1));
+        assertEquals("12M", findText("hAyfc", "htlgb", 3));
+        assertEquals("1.2.0\u00a0beta", findText("hAyfc", "htlgb", 5));
+        assertNull(findText("hAyfc", "htlgb", 6));
+    }
+
+    @Test
+    public void findTextWithoutAncestor() throws IOException {
+        assertEquals("Outside the ancestor", findText(null, "htlgb", 0));
+        assertEquals("Current Version", findText(null, "BgcNfc", 2));
+    }
+
+    @Test
+    public void findTextDecodesReferences() throws IOException {
+        assertEquals("Fixes <crash> on \"start\" \u2013 \u2713 it's done &amp; more &unknown; &#xZZ;", findText(null, "recent-change", 0));
+    }
+
+    @Test
+    public void decodeEntities() {
+        assertEquals("a & b", ParserHTML.decodeEntities("a &amp; b"));
+        assertEquals("<'\">", ParserHTML.decodeEntities("&lt;&apos;&quot;&gt;"));
+        assertEquals("A A \uD83D\uDE00", ParserHTML.decodeEntities("&#65; &#x41; &#128512;"));
+        assertEquals("&#0; &#-1; &#1114112; & ;", ParserHTML.decodeEntities("&#0; &#-1; &#1114112; & ;"));
+        assertEquals("no entities", ParserHTML.decodeEntities("no entities"));
+    }
+
+    @Test
+    public void unclosedElements() throws IOException {
+        String html = "<ul class=list><li><span class=item>One<li><span class=item>Two</ul><span class=item>Three";
+
+        assertEquals("Two", findText("list", "item", 1, html));
+        assertNull(findText("list", "item", 2, html));
+        assertEquals("Three", findText(null, "item", 2, html));
+    }
+
+    private String findText(String ancestorClass, String className, int position) throws IOException {
+        InputStream in = getClass().getResourceAsStream("/html/store_page.html");
+        try {
+            return new ParserHTML(in).findText(ancestorClass, className, position);
+        } finally {
+            in.close();
+        }
+    }
+
+    private static String findText(String ancestorClass, String className, int position, String html) throws IOException {
+        return new ParserHTML(new ByteArrayInputStream(html.getBytes("UTF-8"))).findText(ancestorClass, className, position);
+    }
+
+}
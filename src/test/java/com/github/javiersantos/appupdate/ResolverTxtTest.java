@@ -0,0 +1,275 @@
+package com.github.javiersantos.appupdate;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * ResolverTxt against a local stub DNS server that answers each query with a built response.
+ */
+public class ResolverTxtTest {
+    private static final String NAME = "_appupdate.example.com";
+    private static final int TIMEOUT = 2000;
+
+    private DatagramSocket server;
+    private InetAddress address;
+
+    @Before
+    public void setUp() throws IOException {
+        address = InetAddress.getByName("127.0.0.1");
+        server = new DatagramSocket(0, address);
+    }
+
+    @After
+    public void tearDown() {
+        server.close();
+    }
+
+    @Test
+    public void txtRecordsAfterCname() throws IOException {
+        answer(new Answers() {
+            @Override
+            public void write(ByteArrayOutputStream out, byte[] query) throws IOException {
+                header(out, query, 0x8180, 3);
+                // CNAME to cdn.example.com, pointing back at "example.com" in the question
+                record(out, 5, new byte[]{3, 'c', 'd', 'n', (byte) 0xC0, 23});
+                record(out, 16, concat(text("latestVersionCode=42 "), text("latestVersion=1.2.0")));
+                record(out, 16, text("v=spf1 -all"));
+            }
+        });
+
+        List<String> records = query();
+
+        assertEquals(Arrays.asList("latestVersionCode=42 latestVersion=1.2.0", "v=spf1 -all"), records);
+    }
+
+    @Test
+    public void noRecords() throws IOException {
+        answer(new Answers() {
+            @Override
+            public void write(ByteArrayOutputStream out, byte[] query) throws IOException {
+                header(out, query, 0x8180, 0);
+            }
+        });
+
+        assertEquals(0, query().size());
+    }
+
+    @Test
+    public void answersToOtherQueriesAreIgnored() throws IOException {
+        answer(new Answers() {
+            @Override
+            public void write(ByteArrayOutputStream out, byte[] query) throws IOException {
+                byte[] other = query.clone();
+                other[1] ^= 1;
+                header(out, other, 0x8180, 1);
+                record(out, 16, text("latestVersionCode=1"));
+            }
+        }, new Answers() {
+            @Override
+            public void write(ByteArrayOutputStream out, byte[] query) throws IOException {
+                header(out, query, 0x8180, 1);
+                record(out, 16, text("latestVersionCode=42"));
+            }
+        });
+
+        assertEquals(Arrays.asList("latestVersionCode=42"), query());
+    }
+
+    @Test
+    public void truncated() {
+        answer(new Answers() {
+            @Override
+            public void write(ByteArrayOutputStream out, byte[] query) throws IOException {
+                header(out, query, 0x8380, 0);
+            }
+        });
+
+        assertFails();
+    }
+
+    @Test
+    public void nameError() {
+        answer(new Answers() {
+            @Override
+            public void write(ByteArrayOutputStream out, byte[] query) throws IOException {
+                header(out, query, 0x8183, 0);
+            }
+        });
+
+        assertFails();
+    }
+
+    @Test
+    public void recordPastTheEnd() {
+        answer(new Answers() {
+            @Override
+            public void write(ByteArrayOutputStream out, byte[] query) throws IOException {
+                header(out, query, 0x8180, 1);
+                out.write(new byte[]{(byte) 0xC0, 12, 0, 16, 0, 1, 0, 0, 0, 60, 0, 100});
+                out.write(text("latestVersionCode=42"));
+            }
+        });
+
+        assertFails();
+    }
+
+    @Test
+    public void characterStringPastTheRecord() {
+        answer(new Answers() {
+            @Override
+            public void write(ByteArrayOutputStream out, byte[] query) throws IOException {
+                header(out, query, 0x8180, 1);
+                byte[] data = text("latestVersionCode=42");
+                data[0] = 40;
+                record(out, 16, data);
+            }
+        });
+
+        assertFails();
+    }
+
+    @Test
+    public void noAnswer() {
+        // Nothing is sent back, the query times out
+        try {
+            new ResolverTxt().query(NAME, address, server.getLocalPort(), 200);
+            fail();
+        } catch (IOException expected) {
+        }
+    }
+
+    @Test
+    public void ignoredPacketsDontExtendTheTimeout() {
+        // Answers to another query keep coming for longer than the timeout
+        final Answers other = new Answers() {
+            @Override
+            public void write(ByteArrayOutputStream out, byte[] query) throws IOException {
+                byte[] copy = query.clone();
+                copy[1] ^= 1;
+                header(out, copy, 0x8180, 0);
+            }
+        };
+        Answers[] responses = new Answers[40];
+        Arrays.fill(responses, new Answers() {
+            @Override
+            public void write(ByteArrayOutputStream out, byte[] query) throws IOException {
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+                other.write(out, query);
+            }
+        });
+        answer(responses);
+
+        long start = System.currentTimeMillis();
+        try {
+            new ResolverTxt().query(NAME, address, server.getLocalPort(), 200);
+            fail();
+        } catch (IOException expected) {
+        }
+        assertTrue(System.currentTimeMillis() - start < 1000);
+    }
+
+    private List<String> query() throws IOException {
+        return new ResolverTxt().query(NAME, address, server.getLocalPort(), TIMEOUT);
+    }
+
+    private void assertFails() {
+        try {
+            query();
+            fail();
+        } catch (IOException expected) {
+        }
+    }
+
+    private interface Answers {
+        void write(ByteArrayOutputStream out, byte[] query) throws IOException;
+    }
+
+    /**
+     * Answers the next query with each of the responses, in order.
+     */
+    private void answer(final Answers... responses) {
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    DatagramPacket packet = new DatagramPacket(new byte[512], 512);
+                    server.receive(packet);
+                    byte[] query = Arrays.copyOf(packet.getData(), packet.getLength());
+                    for (Answers response : responses) {
+                        ByteArrayOutputStream out = new ByteArrayOutputStream();
+                        response.write(out, query);
+                        byte[] bytes = out.toByteArray();
+                        server.send(new DatagramPacket(bytes, bytes.length, packet.getSocketAddress()));
+                    }
+                } catch (IOException e) {
+                    // Closed by tearDown()
+                }
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Header and question of the response, copied from the query.
+     */
+    private static void header(ByteArrayOutputStream out, byte[] query, int flags, int answers) {
+        out.write(query, 0, 2);
+        writeShort(out, flags);
+        writeShort(out, 1);
+        writeShort(out, answers);
+        writeShort(out, 0);
+        writeShort(out, 0);
+        out.write(query, 12, query.length - 12);
+    }
+
+    /**
+     * Record of the name in the question, which starts at offset 12.
+     */
+    private static void record(ByteArrayOutputStream out, int type, byte[] data) throws IOException {
+        writeShort(out, 0xC00C);
+        writeShort(out, type);
+        writeShort(out, 1);
+        writeShort(out, 0);
+        writeShort(out, 300);
+        writeShort(out, data.length);
+        out.write(data);
+    }
+
+    private static byte[] text(String s) throws IOException {
+        byte[] bytes = s.getBytes("UTF-8");
+        byte[] data = new byte[bytes.length + 1];
+        data[0] = (byte) bytes.length;
+        System.arraycopy(bytes, 0, data, 1, bytes.length);
+        return data;
+    }
+
+    private static byte[] concat(byte[] a, byte[] b) {
+        byte[] data = Arrays.copyOf(a, a.length + b.length);
+        System.arraycopy(b, 0, data, a.length, b.length);
+        return data;
+    }
+
+    private static void writeShort(ByteArrayOutputStream out, int value) {
+        out.write((value >> 8) & 0xFF);
+        out.write(value & 0xFF);
+    }
+
+}
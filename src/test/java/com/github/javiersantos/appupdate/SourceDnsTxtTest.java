@@ -0,0 +1,57 @@
+package com.github.javiersantos.appupdate;
+
+import com.github.javiersantos.appupdate.objects.Update;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class SourceDnsTxtTest {
+
+    @Test
+    public void spaceSeparated() {
+        Update update = SourceDnsTxt.parseRecord("latestVersionCode=42 latestVersion=1.2.0");
+
+        assertEquals(Integer.valueOf(42), update.getLatestVersionCode());
+        assertEquals("1.2.0", update.getLatestVersion());
+    }
+
+    @Test
+    public void semicolonSeparated() {
+        Update update = SourceDnsTxt.parseRecord(" latestVersion=1.2.0;latestVersionCode=42; ");
+
+        assertEquals(Integer.valueOf(42), update.getLatestVersionCode());
+        assertEquals("1.2.0", update.getLatestVersion());
+    }
+
+    @Test
+    public void otherPairsAreIgnored() {
+        Update update = SourceDnsTxt.parseRecord("v=1 latestVersionCode=42 channel latestVersion=1.2.0=beta");
+
+        assertEquals(Integer.valueOf(42), update.getLatestVersionCode());
+        assertEquals("1.2.0=beta", update.getLatestVersion());
+    }
+
+    @Test
+    public void versionDefaultsToTheVersionCode() {
+        Update update = SourceDnsTxt.parseRecord("latestVersionCode=42");
+
+        assertEquals(Integer.valueOf(42), update.getLatestVersionCode());
+        assertEquals("42", update.getLatestVersion());
+    }
+
+    @Test
+    public void noVersionCode() {
+        assertNull(SourceDnsTxt.parseRecord("latestVersion=1.2.0"));
+        assertNull(SourceDnsTxt.parseRecord("v=spf1 -all"));
+        assertNull(SourceDnsTxt.parseRecord(""));
+    }
+
+    @Test
+    public void invalidVersionCode() {
+        assertNull(SourceDnsTxt.parseRecord("latestVersionCode=4x2 latestVersion=1.2.0"));
+        assertNull(SourceDnsTxt.parseRecord("latestVersionCode= latestVersion=1.2.0"));
+    }
+
+}
@@ -0,0 +1,142 @@
+package com.github.javiersantos.appupdate;
+
+import android.content.Context;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.github.javiersantos.appupdate.enums.AppUpdaterError;
+import com.github.javiersantos.appupdate.objects.GitHub;
+import com.github.javiersantos.appupdate.objects.Update;
+import com.github.javiersantos.appupdate.objects.UpdateSelector;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.IOException;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * UpdateFrom.GITHUB against a local server standing in for the GitHub API.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class SourceGitHubTest {
+    private static final String RELEASE = "{\"url\": \"https://api.github.com/repos/user/repo/releases/1\","
+            + " \"html_url\": \"https://github.com/user/repo/releases/tag/v1.4.0\", \"tag_name\": \"v1.4.0\","
+            + " \"author\": {\"login\": \"user\", \"id\": 1}, \"draft\": false, \"body\": \" Fixes \","
+            + " \"assets\": [{\"name\": \"mapping.txt\", \"size\": 10, \"browser_download_url\": \"https://github.com/user/repo/releases/download/v1.4.0/mapping.txt\"},"
+            + " {\"name\": \"app-release.APK\", \"size\": 4096, \"uploader\": null, \"browser_download_url\": \"https://github.com/user/repo/releases/download/v1.4.0/app-release.APK\"}],"
+            + " \"tarball_url\": null}";
+
+    private MockWebServer server;
+    private Context context;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new MockWebServer();
+        server.start();
+        context = ApplicationProvider.getApplicationContext();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    public void latestRelease() throws Exception {
+        server.enqueue(new MockResponse().setBody(RELEASE).setHeader("Cache-Control", "public, max-age=60"));
+        GitHub gitHub = gitHub();
+        gitHub.setToken("secret");
+
+        Update update = fetch(gitHub);
+
+        RecordedRequest request = server.takeRequest();
+        assertEquals("/repos/user/repo/releases/latest", request.getPath());
+        assertEquals("application/vnd.github.v3+json", request.getHeader("Accept"));
+        assertEquals("token secret", request.getHeader("Authorization"));
+        assertEquals("1.4.0", update.getLatestVersion());
+        assertEquals("Fixes", update.getReleaseNotes());
+        assertEquals("https://github.com/user/repo/releases/download/v1.4.0/app-release.APK", update.getUrlToDownload().toString());
+        assertEquals(Long.valueOf(4096), update.getDownloadSize());
+        assertEquals(Integer.valueOf(60), update.getCheckInterval());
+    }
+
+    @Test
+    public void releaseWithoutApk() throws Exception {
+        server.enqueue(new MockResponse().setBody("{\"tag_name\": \"2.0\", \"body\": null, \"html_url\": \"https://github.com/user/repo/releases/tag/2.0\", \"assets\": []}"));
+
+        Update update = fetch(gitHub());
+
+        assertEquals("2.0", update.getLatestVersion());
+        assertNull(update.getReleaseNotes());
+        assertEquals("https://github.com/user/repo/releases/tag/2.0", update.getUrlToDownload().toString());
+        assertNull(server.takeRequest().getHeader("Authorization"));
+    }
+
+    @Test
+    public void revalidatedWithEtag() throws Exception {
+        server.enqueue(new MockResponse().setBody(RELEASE).setHeader("ETag", "\"abc\"").setHeader("Cache-Control", "no-cache"));
+        server.enqueue(new MockResponse().setResponseCode(304).setHeader("ETag", "\"abc\""));
+
+        fetch(gitHub());
+        Update update = fetch(gitHub());
+
+        server.takeRequest();
+        assertEquals("\"abc\"", server.takeRequest().getHeader("If-None-Match"));
+        assertEquals("1.4.0", update.getLatestVersion());
+    }
+
+    @Test
+    public void notFound() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(404).setBody("{\"message\": \"Not Found\"}"));
+
+        assertUnknownVersion(fetch(gitHub()));
+    }
+
+    @Test
+    public void rateLimited() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(403).setHeader("X-RateLimit-Remaining", 0));
+
+        assertUnknownVersion(fetch(gitHub()));
+    }
+
+    @Test
+    public void malformedRelease() throws Exception {
+        server.enqueue(new MockResponse().setBody("{\"name\": \"No tag\", \"assets\": []}"));
+
+        assertUnknownVersion(fetch(gitHub()));
+    }
+
+    @Test
+    public void fetchErrorIsNotAConfigurationError() {
+        // AppUpdate throws GITHUB_USER_REPO_INVALID to the app, a failed request must not
+        assertEquals(AppUpdaterError.GITHUB_ERROR, new SourceGitHub(gitHub()).getError());
+        assertNull(new SourceGitHub(gitHub()).validate(context));
+        assertEquals(AppUpdaterError.GITHUB_USER_REPO_INVALID, new SourceGitHub(new GitHub("", "repo")).validate(context));
+    }
+
+    private GitHub gitHub() {
+        GitHub gitHub = new GitHub("user", "repo");
+        gitHub.setApiUrl(server.url("/").toString());
+        return gitHub;
+    }
+
+    private Update fetch(GitHub gitHub) throws Exception {
+        return new SourceGitHub(gitHub).fetch(context, new UpdateSelector());
+    }
+
+    private static void assertUnknownVersion(Update update) {
+        assertEquals("0.0.0.0", update.getLatestVersion());
+        assertEquals("https://github.com/user/repo/releases/latest", update.getUrlToDownload().toString());
+    }
+
+}
@@ -0,0 +1,194 @@
+package com.github.javiersantos.appupdate;
+
+import android.content.Context;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import okhttp3.Cache;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okio.Buffer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+@RunWith(RobolectricTestRunner.class)
+public class StreamingInstallerTest {
+    // SHA-256 of "abc"
+    private static final String ABC_SHA256 = "ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad";
+
+    @Test
+    public void installsWhenTheHashMatches() throws IOException {
+        FakeInstaller installer = new FakeInstaller();
+
+        String sha256 = new StreamingInstaller(installer).install(new ByteArrayInputStream("abc".getBytes("UTF-8")), 3, ABC_SHA256.toUpperCase());
+
+        assertEquals(ABC_SHA256, sha256);
+        assertEquals(3, installer.size);
+        assertArrayEquals("abc".getBytes("UTF-8"), installer.written.toByteArray());
+        assertTrue(installer.closed);
+        assertTrue(installer.committed);
+        assertFalse(installer.abandoned);
+    }
+
+    @Test
+    public void installsWithoutHash() throws IOException {
+        byte[] apk = new byte[300 * 1024];
+        new Random(37).nextBytes(apk);
+        FakeInstaller installer = new FakeInstaller();
+
+        new StreamingInstaller(installer).install(new ByteArrayInputStream(apk), -1, null);
+
+        assertArrayEquals(apk, installer.written.toByteArray());
+        assertTrue(installer.committed);
+    }
+
+    @Test
+    public void abandonsOnHashMismatch() throws IOException {
+        FakeInstaller installer = new FakeInstaller();
+        char[] wrong = ABC_SHA256.toCharArray();
+        wrong[0] = '0';
+
+        try {
+            new StreamingInstaller(installer).install(new ByteArrayInputStream("abc".getBytes("UTF-8")), 3, new String(wrong));
+            fail();
+        } catch (IOException expected) {
+        }
+
+        assertTrue(installer.closed);
+        assertFalse(installer.committed);
+        assertTrue(installer.abandoned);
+    }
+
+    @Test
+    public void abandonsWhenTheDownloadFails() {
+        FakeInstaller installer = new FakeInstaller();
+        InputStream cut = new InputStream() {
+            private int count;
+
+            @Override
+            public int read() throws IOException {
+                if (count++ >= 1000) {
+                    throw new IOException("Connection reset");
+                }
+                return 1;
+            }
+        };
+
+        try {
+            new StreamingInstaller(installer).install(cut, 5000, null);
+            fail();
+        } catch (IOException expected) {
+        }
+
+        assertFalse(installer.committed);
+        assertTrue(installer.abandoned);
+    }
+
+    @Test
+    public void downloadIsNotCached() throws IOException {
+        byte[] apk = new byte[300 * 1024];
+        new Random(37).nextBytes(apk);
+        MockWebServer server = new MockWebServer();
+        server.enqueue(new MockResponse().setBody(new Buffer().write(apk)).setHeader("Cache-Control", "public, max-age=3600"));
+        server.enqueue(new MockResponse().setBody("{}").setHeader("Cache-Control", "public, max-age=3600"));
+        server.start();
+        try {
+            Context context = ApplicationProvider.getApplicationContext();
+            FakeInstaller installer = new FakeInstaller();
+            String apkUrl = server.url("/app-release.apk").toString();
+
+            UtilsAsync.StreamingInstall.install(context, new URL(apkUrl), null, installer);
+            // Same headers, stored by a regular request
+            String jsonUrl = server.url("/update.json").toString();
+            UtilsLibrary.get(context, new URL(jsonUrl)).close();
+
+            assertArrayEquals(apk, installer.written.toByteArray());
+            List<String> cached = getCachedUrls(UtilsLibrary.getHttpClient(context).cache());
+            assertFalse(cached.contains(apkUrl));
+            assertTrue(cached.contains(jsonUrl));
+        } finally {
+            server.shutdown();
+        }
+    }
+
+    @Test
+    public void toHex() {
+        assertEquals("00ff7f80", StreamingInstaller.toHex(new byte[]{0, (byte) 0xFF, 0x7F, (byte) 0x80}));
+        assertEquals("", StreamingInstaller.toHex(new byte[0]));
+    }
+
+    private static List<String> getCachedUrls(Cache cache) throws IOException {
+        List<String> urls = new ArrayList<>();
+        for (Iterator<String> iterator = cache.urls(); iterator.hasNext(); ) {
+            urls.add(iterator.next());
+        }
+        return urls;
+    }
+
+    private static class FakeInstaller implements ApkInstaller, ApkInstaller.Session {
+        final ByteArrayOutputStream written = new ByteArrayOutputStream();
+        long size;
+        boolean closed;
+        boolean committed;
+        boolean abandoned;
+
+        @Override
+        public Session openSession(long size) {
+            this.size = size;
+            return this;
+        }
+
+        @Override
+        public OutputStream openWrite(long size) {
+            return new OutputStream() {
+                @Override
+                public void write(int b) {
+                    written.write(b);
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) {
+                    written.write(b, off, len);
+                }
+
+                @Override
+                public void close() {
+                    closed = true;
+                }
+            };
+        }
+
+        @Override
+        public void commit() {
+            if (!closed) {
+                throw new IllegalStateException("Committed before the stream was closed");
+            }
+            committed = true;
+        }
+
+        @Override
+        public void abandon() {
+            abandoned = true;
+        }
+    }
+
+}
@@ -0,0 +1,127 @@
+package com.github.javiersantos.appupdate;
+
+import android.content.Context;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.github.javiersantos.appupdate.objects.Artifact;
+import com.github.javiersantos.appupdate.objects.UpdateSelector;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.File;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+public class UtilsLibraryTest {
+    private static final UpdateSelector SELECTOR = new UpdateSelector(UpdateSelector.CHANNEL_STABLE,
+            new String[]{"arm64-v8a", "armeabi-v7a", "armeabi"}, 24, new Locale("pt", "BR"), 480);
+
+    @Test
+    public void bestArtifactPrefersTheFirstAbi() throws MalformedURLException {
+        Artifact arm64 = artifact("arm64-v8a", null, 12000L);
+        Artifact arm = artifact("armeabi-v7a", null, 9000L);
+        Artifact x86 = artifact("x86", null, 1000L);
+
+        assertEquals(arm64, UtilsLibrary.getBestArtifact(Arrays.asList(arm, x86, arm64), SELECTOR));
+        assertEquals(arm, UtilsLibrary.getBestArtifact(Arrays.asList(x86, arm), SELECTOR));
+    }
+
+    @Test
+    public void bestArtifactComparesAbisIgnoringCase() throws MalformedURLException {
+        Artifact arm64 = artifact("ARM64-V8A", null, 12000L);
+
+        assertEquals(arm64, UtilsLibrary.getBestArtifact(Collections.singletonList(arm64), SELECTOR));
+    }
+
+    @Test
+    public void bestArtifactSizeBreaksTies() throws MalformedURLException {
+        Artifact universal = artifact(null, null, 20000L);
+        Artifact arm64 = artifact("arm64-v8a", null, 12000L);
+        Artifact arm64Density = artifact("arm64-v8a", "xxhdpi", 8000L);
+        Artifact arm64OtherDensity = artifact("arm64-v8a", "mdpi", 7000L);
+        Artifact arm64NoSize = artifact("arm64-v8a", null, null);
+
+        assertEquals(arm64Density, UtilsLibrary.getBestArtifact(
+                Arrays.asList(arm64NoSize, universal, arm64, arm64OtherDensity, arm64Density), SELECTOR));
+        // Without ABI, it runs with the first ABI of the device
+        assertEquals(universal, UtilsLibrary.getBestArtifact(
+                Arrays.asList(artifact("armeabi-v7a", null, 9000L), universal), SELECTOR));
+    }
+
+    @Test
+    public void bestArtifactNoneCompatible() throws MalformedURLException {
+        assertNull(UtilsLibrary.getBestArtifact(Arrays.asList(artifact("x86", null, 1L), artifact("arm64-v8a", "ldpi", 1L)), SELECTOR));
+    }
+
+    @Test
+    public void variantScore() {
+        assertEquals(Integer.valueOf(-1), UtilsLibrary.getVariantScore(SELECTOR, "beta", null, null, null));
+        assertEquals(Integer.valueOf(-1), UtilsLibrary.getVariantScore(SELECTOR, null, "x86", null, null));
+        assertEquals(Integer.valueOf(-1), UtilsLibrary.getVariantScore(SELECTOR, null, null, 26, null));
+        assertEquals(Integer.valueOf(-1), UtilsLibrary.getVariantScore(SELECTOR, null, null, null, "es"));
+
+        int firstAbi = UtilsLibrary.getVariantScore(SELECTOR, null, "ARM64-V8A", null, null);
+        int secondAbi = UtilsLibrary.getVariantScore(SELECTOR, null, "armeabi-v7a", null, null);
+        int noAbi = UtilsLibrary.getVariantScore(SELECTOR, null, null, null, null);
+        assertTrue(firstAbi > secondAbi);
+        assertTrue(secondAbi > noAbi);
+
+        int country = UtilsLibrary.getVariantScore(SELECTOR, null, null, null, "pt-BR");
+        int language = UtilsLibrary.getVariantScore(SELECTOR, null, null, null, "pt");
+        assertTrue(country > language);
+        assertTrue(UtilsLibrary.getVariantScore(SELECTOR, "stable", null, 21, null) > UtilsLibrary.getVariantScore(SELECTOR, null, null, 21, null));
+    }
+
+    @Test
+    public void checkIntervalRaisedByTheServer() {
+        int day = 24 * 60 * 60;
+
+        assertEquals(Integer.valueOf(day), UtilsLibrary.getCheckInterval(day, null));
+        assertEquals(Integer.valueOf(day), UtilsLibrary.getCheckInterval(day, 60));
+        assertEquals(Integer.valueOf(2 * day), UtilsLibrary.getCheckInterval(day, 2 * day));
+        // A wrong max-age is capped, unless the app asked for longer
+        assertEquals(Integer.valueOf(Config.MAX_SERVER_CHECK_INTERVAL), UtilsLibrary.getCheckInterval(day, 365 * day));
+        assertEquals(Integer.valueOf(30 * day), UtilsLibrary.getCheckInterval(30 * day, 365 * day));
+        assertEquals(Integer.valueOf(Config.MAX_SERVER_CHECK_INTERVAL), UtilsLibrary.getCheckInterval(0, Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void maxAge() {
+        assertEquals(Integer.valueOf(3600), UtilsLibrary.getMaxAge("public, max-age=3600"));
+        assertEquals(Integer.valueOf(60), UtilsLibrary.getMaxAge("MAX-AGE=\"60\", no-transform"));
+        assertNull(UtilsLibrary.getMaxAge("no-cache"));
+        assertNull(UtilsLibrary.getMaxAge(null));
+    }
+
+    private static Artifact artifact(String abi, String density, Long size) throws MalformedURLException {
+        return new Artifact(abi, density, new URL("https://example.org/app-" + abi + "-" + density + ".apk"), size);
+    }
+
+    @Test
+    public void httpCacheDirPerProcess() {
+        Context context = ApplicationProvider.getApplicationContext();
+        File main = UtilsLibrary.getHttpCacheDir(context, context.getPackageName());
+        File sync = UtilsLibrary.getHttpCacheDir(context, context.getPackageName() + ":sync");
+        File other = UtilsLibrary.getHttpCacheDir(context, context.getPackageName() + ":other/..");
+
+        assertEquals(Config.HTTP_CACHE_DIR, main.getName());
+        assertEquals(main.getParentFile(), sync.getParentFile());
+        assertEquals(main.getParentFile(), other.getParentFile());
+        assertNotEquals(main, sync);
+        assertNotEquals(sync, other);
+        assertNull(UtilsLibrary.getHttpCacheDir(context, null));
+    }
+
+}
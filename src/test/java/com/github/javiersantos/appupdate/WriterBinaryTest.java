@@ -0,0 +1,159 @@
+package com.github.javiersantos.appupdate;
+
+import com.github.javiersantos.appupdate.objects.Artifact;
+import com.github.javiersantos.appupdate.objects.Update;
+
+import org.json.JSONException;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+@RunWith(RobolectricTestRunner.class)
+public class WriterBinaryTest {
+
+    @Test
+    public void roundTrip() throws IOException {
+        Update update = new Update("1.2.0", 120, "Fixes\nNew screen \u2713", new URL("https://example.org/app.apk"));
+        update.setCheckInterval(86400);
+        update.setChangelogUrl(new URL("https://example.org/changelog"));
+        update.setReleaseNotesUrl("https://example.org/notes/{locale}.json");
+        update.setSha256("ab12");
+        Artifact arm64 = new Artifact("arm64-v8a", "xxhdpi", new URL("https://example.org/app-arm64.apk"), 5000000000L);
+        arm64.setSha256("cd34");
+        Artifact universal = new Artifact(null, null, new URL("https://example.org/app-universal.apk"), null);
+        update.setArtifacts(Arrays.asList(arm64, universal));
+
+        Update decoded = decode(WriterBinary.write(update));
+
+        assertEquals("1.2.0", decoded.getLatestVersion());
+        assertEquals(Integer.valueOf(120), decoded.getLatestVersionCode());
+        assertEquals("Fixes\nNew screen \u2713", decoded.getReleaseNotes());
+        assertEquals("https://example.org/app.apk", decoded.getUrlToDownload().toString());
+        assertEquals(Integer.valueOf(86400), decoded.getCheckInterval());
+        assertEquals("https://example.org/changelog", decoded.getChangelogUrl().toString());
+        assertEquals("https://example.org/notes/{locale}.json", decoded.getReleaseNotesUrl());
+        assertEquals("ab12", decoded.getSha256());
+
+        assertEquals(2, decoded.getArtifacts().size());
+        Artifact decodedArm64 = decoded.getArtifacts().get(0);
+        assertEquals("arm64-v8a", decodedArm64.getAbi());
+        assertEquals("xxhdpi", decodedArm64.getDensity());
+        assertEquals("https://example.org/app-arm64.apk", decodedArm64.getUrl().toString());
+        assertEquals(Long.valueOf(5000000000L), decodedArm64.getSize());
+        assertEquals("cd34", decodedArm64.getSha256());
+        Artifact decodedUniversal = decoded.getArtifacts().get(1);
+        assertNull(decodedUniversal.getAbi());
+        assertNull(decodedUniversal.getSize());
+        assertNull(decodedUniversal.getSha256());
+    }
+
+    @Test
+    public void minimalUpdate() throws IOException {
+        Update decoded = decode(WriterBinary.write(new Update("2.0", new URL("https://example.org/app.apk"))));
+
+        assertEquals("2.0", decoded.getLatestVersion());
+        assertNull(decoded.getReleaseNotes());
+        assertNull(decoded.getCheckInterval());
+        assertNull(decoded.getArtifacts());
+    }
+
+    @Test
+    public void unknownFieldsAreSkipped() throws IOException {
+        byte[] binary = WriterBinary.write(new Update("2.0", 20));
+        byte[] withUnknown = Arrays.copyOf(binary, binary.length + 4);
+        // Tag 99 with a 2 byte payload, written by a newer version of the writer
+        withUnknown[binary.length] = 99;
+        withUnknown[binary.length + 1] = 2;
+
+        assertEquals(Integer.valueOf(20), decode(withUnknown).getLatestVersionCode());
+    }
+
+    @Test
+    public void truncatedFile() throws IOException {
+        byte[] binary = WriterBinary.write(new Update("2.0", new URL("https://example.org/app.apk")));
+
+        assertNull(new ParserBinary().decode(binary, binary.length - 3));
+        assertNull(new ParserBinary().decode(new byte[]{'A', 'U'}, 2));
+    }
+
+    @Test
+    public void everyTruncationIsHandled() throws IOException {
+        Update update = new Update("1.2.0", 120, "Fixes", new URL("https://example.org/app.apk"));
+        update.setArtifacts(Arrays.asList(new Artifact("arm64-v8a", null, new URL("https://example.org/app-arm64.apk"), 5000000000L)));
+        byte[] binary = WriterBinary.write(update);
+
+        for (int length = 0; length < binary.length; length++) {
+            // Either null or the fields before the cut, never an exception
+            Update decoded = new ParserBinary().decode(binary, length);
+            if (decoded != null) {
+                assertEquals("1.2.0", decoded.getLatestVersion());
+            }
+        }
+    }
+
+    @Test
+    public void oversizedLength() throws IOException {
+        byte[] binary = WriterBinary.write(new Update("2.0", 20));
+        // Tag 3 (release notes) with a length close to Integer.MAX_VALUE, position + length overflows
+        byte[] field = {3, (byte) 0xF0, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07, 'a'};
+        byte[] oversized = Arrays.copyOf(binary, binary.length + field.length);
+        System.arraycopy(field, 0, oversized, binary.length, field.length);
+        // Same length written as a 10 byte varint, negative once cast to an int
+        byte[] negative = Arrays.copyOf(binary, binary.length + 12);
+        negative[binary.length] = 3;
+        for (int i = 1; i < 10; i++) {
+            negative[binary.length + i] = (byte) 0xFF;
+        }
+        negative[binary.length + 10] = 0x01;
+
+        assertNull(decode(oversized));
+        assertNull(decode(negative));
+    }
+
+    @Test
+    public void oversizedArtifactFieldLength() throws IOException {
+        byte[] binary = WriterBinary.write(new Update("2.0", 20));
+        // An artifact of 7 bytes whose url claims a length close to Integer.MAX_VALUE
+        byte[] field = {6, 7, 3, (byte) 0xF0, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07, 'a'};
+        byte[] oversized = Arrays.copyOf(binary, binary.length + field.length);
+        System.arraycopy(field, 0, oversized, binary.length, field.length);
+
+        assertNull(decode(oversized));
+    }
+
+    @Test
+    public void fromJSON() throws Exception {
+        Update decoded = decode(WriterBinary.fromJSON("{\"latestVersion\": \" 1.3 \", \"latestVersionCode\": 13,"
+                + " \"releaseNotes\": [\"- First\", \"- Second \"], \"url\": \"https://example.org/app.apk\", \"checkInterval\": 3600,"
+                + " \"artifacts\": [{\"abi\": \"x86\", \"url\": \"https://example.org/x86.apk\", \"size\": 42}], \"unknown\": {\"a\": 1}}"));
+
+        assertEquals("1.3", decoded.getLatestVersion());
+        assertEquals(Integer.valueOf(13), decoded.getLatestVersionCode());
+        assertEquals("- First" + System.getProperty("line.separator") + "- Second", decoded.getReleaseNotes());
+        assertEquals(Integer.valueOf(3600), decoded.getCheckInterval());
+        assertEquals("x86", decoded.getArtifacts().get(0).getAbi());
+        assertEquals(Long.valueOf(42), decoded.getArtifacts().get(0).getSize());
+    }
+
+    @Test(expected = JSONException.class)
+    public void fromJSONWithoutUrl() throws Exception {
+        WriterBinary.fromJSON("{\"latestVersion\": \"1.3\"}");
+    }
+
+    @Test(expected = JSONException.class)
+    public void fromJSONWithWrongType() throws Exception {
+        WriterBinary.fromJSON("{\"latestVersion\": \"1.3\", \"latestVersionCode\": [13], \"url\": \"https://example.org/app.apk\"}");
+    }
+
+    private static Update decode(byte[] binary) {
+        return new ParserBinary().decode(binary, binary.length);
+    }
+
+}